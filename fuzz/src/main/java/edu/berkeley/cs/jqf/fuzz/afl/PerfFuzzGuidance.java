@@ -36,8 +36,6 @@ import java.io.PrintWriter;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.Map;
 
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.util.Counter;
@@ -50,6 +48,7 @@ import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
 
 /**
  * A front-end that uses AFL for increasing performance counters
@@ -333,12 +332,14 @@ public class PerfFuzzGuidance extends AFLGuidance {
 
         protected class Frame {
             final CallEvent call;
+            final int methodId;
             final Frame parent;
             boolean firstInvocation;
             int aecHash;
 
             Frame(CallEvent call, Frame parent) {
                 this.call = call;
+                this.methodId = call.getInvokedMethodId();
                 this.parent = parent;
             }
 
@@ -348,7 +349,8 @@ public class PerfFuzzGuidance extends AFLGuidance {
 
         }
 
-        Map<String, Frame> firstInvocations = new HashMap<>();
+        /** First invocation frames, by ID of the invoked method */
+        IntObjectHashMap<Frame> firstInvocations = new IntObjectHashMap<>();
 
         Deque<Frame> callStack = new ArrayDeque<>();
 
@@ -361,14 +363,12 @@ public class PerfFuzzGuidance extends AFLGuidance {
 
             // If this is the first invocation of a method,
             // then remember this frame (and mark it as a first)
-            String methodName = callEvent.getInvokedMethodName();
-            if (!firstInvocations.containsKey(methodName)) {
-                firstInvocations.put(methodName, frame);
+            if (!firstInvocations.containsKey(frame.methodId)) {
+                firstInvocations.put(frame.methodId, frame);
                 frame.firstInvocation = true;
                 // Pre-compute AEC hash
                 if (frame.parent != null) {
-                    String callingMethod = frame.parent.call.getInvokedMethodName();
-                    frame.precomputeAecHash(firstInvocations.get(callingMethod));
+                    frame.precomputeAecHash(firstInvocations.get(frame.parent.methodId));
                 }
             }
 
@@ -388,7 +388,7 @@ public class PerfFuzzGuidance extends AFLGuidance {
             // If this was the first invocation of the method, remove
             // the entry from the `firstInvoker` map too
             if (frame.firstInvocation) {
-                firstInvocations.remove(frame.call.getInvokedMethodName());
+                firstInvocations.remove(frame.methodId);
             }
 
             // Sanity check: We can't have more first invokers than actual frames
@@ -430,7 +430,7 @@ public class PerfFuzzGuidance extends AFLGuidance {
             while (frame != null) {
                 str += String.format("%s(%s:%d)\n",
                         trimMethodNameOfDesc(frame.call.getInvokedMethodName()), e.getFileName(), e.getLineNumber());
-                Frame firstInvocationFrame = firstInvocations.get(frame.call.getInvokedMethodName());
+                Frame firstInvocationFrame = firstInvocations.get(frame.methodId);
                 e = firstInvocationFrame.call;
                 frame = firstInvocationFrame.parent;
             }
@@ -445,7 +445,7 @@ public class PerfFuzzGuidance extends AFLGuidance {
 
             // Get the stack frame corresponding to the first call of the current method
             Frame top = callStack.peek();
-            Frame firstInvocationOfTopMethod = firstInvocations.get(top.call.getInvokedMethodName());
+            Frame firstInvocationOfTopMethod = firstInvocations.get(top.methodId);
 
             // Compute AEC hash of current event
             return firstInvocationOfTopMethod.aecHash * 31 + e.getIid();
@@ -462,7 +462,7 @@ public class PerfFuzzGuidance extends AFLGuidance {
             Deque<Integer> iids = new ArrayDeque<>();
             while (frame != null) {
                 iids.addFirst(e.getIid());
-                Frame firstInvocationFrame = firstInvocations.get(frame.call.getInvokedMethodName());
+                Frame firstInvocationFrame = firstInvocations.get(frame.methodId);
                 e = firstInvocationFrame.call;
                 frame = firstInvocationFrame.parent;
             }
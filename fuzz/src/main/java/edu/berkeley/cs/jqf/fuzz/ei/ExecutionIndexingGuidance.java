@@ -54,10 +54,13 @@ import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.FuzzStatement;
 import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageSnapshot;
 import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
 import edu.berkeley.cs.jqf.fuzz.util.ProducerHashMap;
 import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.MethodRegistry;
 import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import janala.instrument.FastCoverageListener;
@@ -191,6 +194,12 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
         return new MappedInput();
     }
 
+    /** Creates an input from a corpus file of another instance */
+    @Override
+    protected Input<?> createSyncedInput(File file) throws IOException {
+        return new MappedSeedInput(file);
+    }
+
     /**
      * Returns an InputStream that delivers parameters to the generators.
      *
@@ -204,6 +213,11 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
             @Override
             public int read() throws IOException {
 
+                // Trace events may be buffered; the execution index must reflect all of them
+                if (eiState instanceof JanalaExecutionIndexingState) {
+                    SingleSnoop.flush();
+                }
+
                 // lastEvent must not be null
                 if (eiState.getLastEventIid() == -1) {
                     throw new GuidanceException("Could not compute execution index; no instrumentation?");
@@ -302,7 +316,7 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
                         // Third, store basic book-keeping data
                         currentInput.id = otherIdx;
                         currentInput.saveFile = otherInput.saveFile;
-                        currentInput.coverage = runCoverage.copy();
+                        currentInput.coverage = new CoverageSnapshot(runCoverage);
                         currentInput.nonZeroCoverage = runCoverage.getNonZeroCount();
                         currentInput.offspring = 0;
                         savedInputs.get(currentParentInputIdx).offspring += 1;
@@ -365,6 +379,18 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
 
     @Override
     public Consumer<TraceEvent> generateCallBack(Thread thread) {
+        registerAppThread(thread);
+        return this::handleEvent;
+
+    }
+
+    @Override
+    public Consumer<TraceEventBatch> generateBatchCallBack(Thread thread) {
+        registerAppThread(thread);
+        return super.generateBatchCallBack(thread);
+    }
+
+    private void registerAppThread(Thread thread) {
         if (appThread != null) {
             throw new IllegalStateException(ExecutionIndexingGuidance.class +
                     " only supports single-threaded apps at the moment");
@@ -372,9 +398,6 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
         appThread = thread;
         entryPoint = SingleSnoop.entryPoints.get(thread).replace('.', '/');
         assert entryPoint != null : ExecutionIndexingGuidance.class + " must be able to determine an entry point";
-
-        return this::handleEvent;
-
     }
 
     /** Handles a trace event generated during test execution */
@@ -406,6 +429,39 @@ public class ExecutionIndexingGuidance extends ZestGuidance {
 
     }
 
+    /** Handles an event of a batch generated during test execution */
+    @Override
+    protected void handleEvent(TraceEventBatch batch, int i) {
+        if (eiState instanceof JanalaExecutionIndexingState) {
+            // Update execution indexing logic regardless of whether we are in generator or test method
+            ((JanalaExecutionIndexingState) eiState).handleEvent(batch, i);
+        }
+
+        // Do not handle code coverage unless test has been entered
+        if (!testEntered) {
+            // Check if this event enters the test method
+            if (batch.kind(i) == TraceEventBatch.CALL) {
+                MethodRegistry.Entry invoked = MethodRegistry.get(batch.value(i));
+                if (invoked != null && invoked.toString().startsWith(entryPoint)) {
+                    testEntered = true;
+                }
+            } else if (batch.kind(i) == TraceEventBatch.EVENT) {
+                TraceEvent e = batch.event(i);
+                if (e instanceof CallEvent && ((CallEvent) e).getInvokedMethodName().startsWith(entryPoint)) {
+                    testEntered = true;
+                }
+            }
+
+            // If test method has not yet been entered, then ignore code coverage
+            if (!testEntered) {
+                return;
+            }
+        }
+
+        // Delegate to ZestGuidance for handling code coverage
+        super.handleEvent(batch, i);
+    }
+
 
     /**
      * A candidate test input represented as a map from execution indices
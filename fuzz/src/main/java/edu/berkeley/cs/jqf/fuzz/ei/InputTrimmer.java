@@ -0,0 +1,90 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+/**
+ * A schedule of smaller versions of an input, as tried by AFL's trimming
+ * stage.
+ *
+ * <p>Chunks of bytes are removed one at a time, starting with chunks of
+ * 1/16th of the input (rounded up to a power of two) and halving the
+ * chunk size after each pass over the input, down to 1/1024th of the
+ * input. Chunks are never smaller than 4 bytes. The caller executes each
+ * candidate and tells the trimmer whether to {@linkplain #keep keep} it
+ * or {@linkplain #reject() reject} it.</p>
+ */
+class InputTrimmer {
+
+    private static final int START_STEPS = 16;
+    private static final int END_STEPS = 1024;
+    private static final int MIN_BYTES = 4;
+
+    private final int originalLength;
+    private final int minChunk;
+    private byte[] bytes;
+    private int chunk;
+    private int position = 0;
+
+    /**
+     * Creates a trimmer for an input.
+     *
+     * @param bytes the bytes of the input, which are not modified
+     */
+    InputTrimmer(byte[] bytes) {
+        this.bytes = bytes;
+        this.originalLength = bytes.length;
+        int lengthP2 = Integer.highestOneBit(Math.max(bytes.length - 1, 1)) << 1;
+        this.chunk = Math.max(lengthP2 / START_STEPS, MIN_BYTES);
+        this.minChunk = Math.max(lengthP2 / END_STEPS, MIN_BYTES);
+    }
+
+    /**
+     * Returns the next candidate, which is the current bytes without the
+     * next chunk.
+     *
+     * @return the bytes of the candidate, or <code>null</code> if there
+     *         are no more candidates
+     */
+    byte[] next() {
+        while (chunk >= minChunk) {
+            if (position < bytes.length) {
+                int removed = Math.min(chunk, bytes.length - position);
+                if (removed < bytes.length) {
+                    byte[] candidate = new byte[bytes.length - removed];
+                    System.arraycopy(bytes, 0, candidate, 0, position);
+                    System.arraycopy(bytes, position + removed, candidate, position, candidate.length - position);
+                    return candidate;
+                }
+                // Inputs must not become empty
+                position += chunk;
+            } else {
+                chunk /= 2;
+                position = 0;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the last candidate; later candidates are derived from it.
+     *
+     * @param bytes the bytes that the candidate was reduced to, which
+     *              may be shorter than the candidate if not all of it
+     *              was used
+     */
+    void keep(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /** Rejects the last candidate; the removed chunk is kept. */
+    void reject() {
+        position += chunk;
+    }
+
+    /**
+     * Returns the length of the input that was trimmed.
+     *
+     * @return the length of the input before trimming
+     */
+    int getOriginalLength() {
+        return originalLength;
+    }
+}
@@ -0,0 +1,364 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import edu.berkeley.cs.jqf.fuzz.util.Counter;
+import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingArrayCounter;
+import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCounter;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import janala.instrument.InstrumentedClasses;
+import org.eclipse.collections.api.list.primitive.IntList;
+
+/**
+ * A persisted index of the saved inputs of a fuzzing campaign.
+ *
+ * <p>The index is written next to the <code>corpus</code> directory and
+ * records the book-keeping data of each saved input (whether it is
+ * favored, its responsibilities, the size of its coverage and its number
+ * of offspring) together with the cumulative coverage maps. A campaign
+ * that is restarted with the corpus as seed inputs can then restore its
+ * queue from the index instead of executing every input again.</p>
+ *
+ * <p>Coverage keys only mean the same thing in another JVM if the classes
+ * are instrumented in the same way, so the index also records the
+ * {@linkplain InstrumentedClasses#configFingerprint() instrumentation
+ * fingerprint} and a hash of each instrumented class; see
+ * {@link #checkCompatible}.</p>
+ */
+class QueueIndex {
+
+    /** The name of the index file in the output directory. */
+    static final String FILE_NAME = "queue_index";
+
+    private static final int MAGIC = 0x4a514649; // "JQFI"
+    private static final int VERSION = 1;
+
+    /* The smallest number of bytes of a recorded class and of an entry */
+    private static final int MIN_CLASS_BYTES = 2 + Long.BYTES;
+    private static final int MIN_ENTRY_BYTES = 5 * Integer.BYTES + Long.BYTES + 1;
+
+    /** The book-keeping data of a saved input. */
+    static final class Entry {
+        final int id;
+        final int length;
+        final long checksum;
+        final boolean favored;
+        final int nonZeroCoverage;
+        final int offspring;
+        final int[] responsibilities;
+
+        Entry(int id, int length, long checksum, boolean favored,
+              int nonZeroCoverage, int offspring, int[] responsibilities) {
+            this.id = id;
+            this.length = length;
+            this.checksum = checksum;
+            this.favored = favored;
+            this.nonZeroCoverage = nonZeroCoverage;
+            this.offspring = offspring;
+            this.responsibilities = responsibilities;
+        }
+
+        /**
+         * Returns whether the given bytes are the bytes of this input.
+         *
+         * @param bytes the bytes of a corpus file
+         * @return whether the length and checksum match
+         */
+        boolean matches(byte[] bytes) {
+            return bytes.length == length && checksum(bytes, bytes.length) == checksum;
+        }
+    }
+
+    final String guidance;
+    final String configFingerprint;
+    final int mapSize;
+    final SortedMap<String, Long> classes;
+    final List<Entry> entries = new ArrayList<>();
+    private int[][] totalCoverage;
+    private int[][] validCoverage;
+
+    private QueueIndex(String guidance, String configFingerprint, int mapSize, SortedMap<String, Long> classes) {
+        this.guidance = guidance;
+        this.configFingerprint = configFingerprint;
+        this.mapSize = mapSize;
+        this.classes = classes;
+    }
+
+    /**
+     * Creates an empty index for the classes instrumented so far.
+     *
+     * @param guidance the name of the guidance that saved the inputs
+     * @param totalCoverage the cumulative coverage of all inputs
+     * @param validCoverage the cumulative coverage of valid inputs
+     */
+    QueueIndex(String guidance, ICoverage totalCoverage, ICoverage validCoverage) {
+        this(guidance, InstrumentedClasses.configFingerprint(), totalCoverage.size(),
+                InstrumentedClasses.snapshot());
+        this.totalCoverage = counts(totalCoverage);
+        this.validCoverage = counts(validCoverage);
+    }
+
+    /**
+     * Adds a saved input to the index.
+     *
+     * @param id the ID of the input
+     * @param bytes the bytes of the input, of which only the first <code>length</code> are used
+     * @param length the length of the input
+     * @param favored whether the input is favored
+     * @param nonZeroCoverage the number of keys covered by the input
+     * @param offspring the number of saved children of the input
+     * @param responsibilities the keys that the input is responsible for
+     */
+    void add(int id, byte[] bytes, int length, boolean favored, int nonZeroCoverage,
+             int offspring, int[] responsibilities) {
+        entries.add(new Entry(id, length, checksum(bytes, length), favored,
+                nonZeroCoverage, offspring, responsibilities));
+    }
+
+    /**
+     * Checks whether the coverage keys in this index mean the same as in
+     * this JVM.
+     *
+     * <p>The instrumentation fingerprints must be equal, and every class
+     * that was instrumented when the index was written must have the same
+     * bytes as the class file that the given loader finds for it. Classes
+     * without a class file (e.g. generated classes) are not checked.</p>
+     *
+     * @param guidance the name of the guidance that wants to restore the queue
+     * @param mapSize the size of its coverage maps
+     * @param loader the loader of the classes under test
+     * @return null if the index is compatible, or else the reason why not
+     * @throws IOException if a class file could not be read
+     */
+    String checkCompatible(String guidance, int mapSize, ClassLoader loader) throws IOException {
+        if (!this.guidance.equals(guidance)) {
+            return "written by " + this.guidance;
+        }
+        if (!InstrumentedClasses.hasStableKeys()) {
+            return "coverage keys depend on class loading order";
+        }
+        if (!this.configFingerprint.equals(InstrumentedClasses.configFingerprint())) {
+            return "instrumentation settings have changed";
+        }
+        if (this.mapSize != mapSize) {
+            return "coverage map size has changed";
+        }
+        for (Map.Entry<String, Long> cls : classes.entrySet()) {
+            try (InputStream in = loader.getResourceAsStream(cls.getKey() + ".class")) {
+                if (in != null && InstrumentedClasses.hash(in.readAllBytes()) != cls.getValue()) {
+                    return "class " + cls.getKey().replace('/', '.') + " has changed";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restores the cumulative coverage maps recorded in this index.
+     *
+     * <p>The coverage maps are left unchanged if the index records a key
+     * that they cannot hold.</p>
+     *
+     * @param totalCoverage the (empty) cumulative coverage of all inputs
+     * @param validCoverage the (empty) cumulative coverage of valid inputs
+     * @throws IOException if a recorded key is out of the range of the maps
+     */
+    void restoreCoverage(ICoverage totalCoverage, ICoverage validCoverage) throws IOException {
+        checkKeys(totalCoverage, this.totalCoverage);
+        checkKeys(validCoverage, this.validCoverage);
+        restore(totalCoverage, this.totalCoverage);
+        restore(validCoverage, this.validCoverage);
+    }
+
+    /**
+     * Writes this index, replacing the file atomically.
+     *
+     * @param file the index file
+     * @throws IOException if the file could not be written
+     */
+    void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(guidance);
+            out.writeUTF(configFingerprint);
+            out.writeInt(mapSize);
+            out.writeInt(classes.size());
+            for (Map.Entry<String, Long> cls : classes.entrySet()) {
+                out.writeUTF(cls.getKey());
+                out.writeLong(cls.getValue());
+            }
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeInt(entry.id);
+                out.writeInt(entry.length);
+                out.writeLong(entry.checksum);
+                out.writeBoolean(entry.favored);
+                out.writeInt(entry.nonZeroCoverage);
+                out.writeInt(entry.offspring);
+                writeInts(out, entry.responsibilities);
+            }
+            for (int[][] coverage : new int[][][]{totalCoverage, validCoverage}) {
+                writeInts(out, coverage[0]);
+                writeInts(out, coverage[1]);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file could not be read or is not an index
+     */
+    static QueueIndex read(File file) throws IOException {
+        // Read the whole file, so that every length can be checked against the bytes that remain
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a queue index: " + file);
+            }
+            String guidance = in.readUTF();
+            String configFingerprint = in.readUTF();
+            int mapSize = in.readInt();
+            if (mapSize < 0) {
+                throw new IOException("Corrupt queue index: negative map size " + mapSize);
+            }
+            SortedMap<String, Long> classes = new TreeMap<>();
+            int numClasses = readLength(in, MIN_CLASS_BYTES);
+            for (int i = 0; i < numClasses; i++) {
+                classes.put(in.readUTF(), in.readLong());
+            }
+            QueueIndex index = new QueueIndex(guidance, configFingerprint, mapSize, classes);
+            int numEntries = readLength(in, MIN_ENTRY_BYTES);
+            for (int i = 0; i < numEntries; i++) {
+                index.entries.add(new Entry(in.readInt(), readLength(in, 0), in.readLong(), in.readBoolean(),
+                        in.readInt(), in.readInt(), readKeys(in)));
+            }
+            index.totalCoverage = readCounts(in);
+            index.validCoverage = readCounts(in);
+            if (in.available() > 0) {
+                throw new IOException("Corrupt queue index: " + in.available() + " trailing bytes");
+            }
+            return index;
+        }
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    /** Returns the covered keys of a coverage map and their counts. */
+    private static int[][] counts(ICoverage coverage) {
+        IntList covered = coverage.getCovered();
+        Counter counter = coverage.getCounter();
+        int[] keys = covered.toArray();
+        int[] values = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            // Non-colliding counters are keyed directly and do not support index lookups
+            values[i] = counter instanceof FastNonCollidingCounter ?
+                    counter.get(keys[i]) : counter.getAtIndex(keys[i]);
+        }
+        return new int[][]{keys, values};
+    }
+
+    private static void restore(ICoverage coverage, int[][] counts) {
+        Counter counter = coverage.getCounter();
+        int[] keys = counts[0];
+        int[] values = counts[1];
+        for (int i = 0; i < keys.length; i++) {
+            if (counter instanceof FastNonCollidingCounter) {
+                counter.increment(keys[i], values[i]);
+            } else {
+                counter.setAtIndex(keys[i], values[i]);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /** Checks that a coverage map can hold the keys of recorded counts. */
+    private static void checkKeys(ICoverage coverage, int[][] counts) throws IOException {
+        Counter counter = coverage.getCounter();
+        if (counter instanceof FastNonCollidingCounter || counter instanceof FastNonCollidingArrayCounter) {
+            // Keyed directly by probe ID, and grown as needed
+            return;
+        }
+        int size = counter.size();
+        for (int key : counts[0]) {
+            if (key >= size) {
+                throw new IOException("Corrupt queue index: key " + key + " exceeds map size " + size);
+            }
+        }
+    }
+
+    /**
+     * Reads a length, which must be non-negative and, for lengths of
+     * sequences, not exceed what the rest of the input can hold.
+     *
+     * @param in the input, which is backed by an array
+     * @param minBytesPerElement the smallest number of bytes of an element
+     *                           of the sequence, or 0 for other lengths
+     */
+    private static int readLength(DataInputStream in, int minBytesPerElement) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || (long) length * minBytesPerElement > in.available()) {
+            throw new IOException("Corrupt queue index: invalid length " + length);
+        }
+        return length;
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[readLength(in, Integer.BYTES)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /** Reads coverage keys, which must be non-negative. */
+    private static int[] readKeys(DataInputStream in) throws IOException {
+        int[] keys = readInts(in);
+        for (int key : keys) {
+            if (key < 0) {
+                throw new IOException("Corrupt queue index: negative key " + key);
+            }
+        }
+        return keys;
+    }
+
+    /** Reads the covered keys of a coverage map and their counts. */
+    private static int[][] readCounts(DataInputStream in) throws IOException {
+        int[] keys = readKeys(in);
+        int[] values = readInts(in);
+        if (values.length != keys.length) {
+            throw new IOException("Corrupt queue index: " + keys.length + " keys but " + values.length + " counts");
+        }
+        return new int[][]{keys, values};
+    }
+}
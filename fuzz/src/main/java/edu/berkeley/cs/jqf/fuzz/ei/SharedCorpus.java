@@ -0,0 +1,290 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.collections.api.iterator.IntIterator;
+import org.eclipse.collections.api.list.primitive.IntList;
+
+/**
+ * A corpus shared by several {@link ZestGuidance} workers fuzzing the
+ * same test in one JVM.
+ *
+ * <p>Each worker keeps its own queue and coverage maps. When a worker
+ * saves an input that covers branches that no worker has covered yet,
+ * it publishes the input here, and the other workers import it as a
+ * seed. The shared coverage is only used to decide which inputs to
+ * publish.</p>
+ *
+ * <p>Workers never lock the corpus: covered branches are set directly
+ * in bitmaps indexed by coverage key, and published inputs are appended
+ * to a paged log with compare-and-set, which each worker scans from the
+ * position it last reached.</p>
+ */
+public class SharedCorpus {
+
+    /** An input published by a worker. */
+    public static final class Entry {
+        private final int worker;
+        private final int id;
+        private final byte[] bytes;
+
+        private Entry(int worker, int id, byte[] bytes) {
+            this.worker = worker;
+            this.id = id;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the worker that published this input.
+         *
+         * @return the index of the worker
+         */
+        public int getWorker() {
+            return worker;
+        }
+
+        /**
+         * Returns the ID of this input in the corpus of its worker.
+         *
+         * @return the input ID
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the bytes of this input, which must not be modified.
+         *
+         * @return the bytes
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * A set of coverage keys, as a bitmap that workers update with
+     * compare-and-set.
+     *
+     * <p>Keys are indices into the coverage map of a worker, which may
+     * grow while fuzzing (e.g. with fast coverage), so the bitmap is split
+     * into pages that are allocated when a key of the page is first
+     * added.</p>
+     */
+    private static final class CoverageBitmap {
+        /** The number of keys per page is 2 to the power of this. */
+        private static final int PAGE_BITS = 16;
+
+        private final AtomicReferenceArray<AtomicLongArray> pages =
+                new AtomicReferenceArray<>(1 << (Integer.SIZE - 1 - PAGE_BITS));
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Adds a key to this set.
+         *
+         * @param key a non-negative coverage key
+         * @return whether the key was not in the set before
+         */
+        boolean add(int key) {
+            int p = key >>> PAGE_BITS;
+            AtomicLongArray page = pages.get(p);
+            if (page == null) {
+                pages.compareAndSet(p, null, new AtomicLongArray(1 << (PAGE_BITS - 6)));
+                page = pages.get(p);
+            }
+            int word = (key & ((1 << PAGE_BITS) - 1)) >>> 6;
+            long bit = 1L << key;
+            long bits;
+            do {
+                bits = page.get(word);
+                if ((bits & bit) != 0) {
+                    return false;
+                }
+            } while (!page.compareAndSet(word, bits, bits | bit));
+            count.incrementAndGet();
+            return true;
+        }
+
+        int size() {
+            return count.get();
+        }
+    }
+
+    /**
+     * A list of published inputs that is only appended to.
+     *
+     * <p>Entries are stored in pages that are allocated when their first
+     * entry is appended, so appending never copies earlier entries. An
+     * appender reserves an index, stores its entry, and then publishes
+     * it by advancing the size once all entries before it have been
+     * published, so readers see every entry below the size.</p>
+     */
+    private static final class EntryLog {
+        /** The number of entries per page is 2 to the power of this. */
+        private static final int PAGE_BITS = 10;
+
+        private final AtomicReferenceArray<AtomicReferenceArray<Entry>> pages =
+                new AtomicReferenceArray<>(1 << (Integer.SIZE - 1 - PAGE_BITS));
+
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final AtomicInteger published = new AtomicInteger();
+
+        void add(Entry entry) {
+            int index = reserved.getAndIncrement();
+            int p = index >>> PAGE_BITS;
+            AtomicReferenceArray<Entry> page = pages.get(p);
+            if (page == null) {
+                pages.compareAndSet(p, null, new AtomicReferenceArray<>(1 << PAGE_BITS));
+                page = pages.get(p);
+            }
+            page.set(index & ((1 << PAGE_BITS) - 1), entry);
+            // Wait for appenders that reserved earlier indices to publish theirs
+            while (!published.compareAndSet(index, index + 1)) {
+                Thread.yield();
+            }
+        }
+
+        int size() {
+            return published.get();
+        }
+
+        Entry get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return pages.get(index >>> PAGE_BITS).get(index & ((1 << PAGE_BITS) - 1));
+        }
+    }
+
+    private final int numWorkers;
+
+    private final CoverageBitmap totalCoverage = new CoverageBitmap();
+    private final CoverageBitmap validCoverage = new CoverageBitmap();
+
+    private final EntryLog entries = new EntryLog();
+
+    private final LongAdder numTrials = new LongAdder();
+
+    /**
+     * Creates an empty shared corpus.
+     *
+     * @param numWorkers the number of workers sharing the corpus
+     */
+    public SharedCorpus(int numWorkers) {
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + numWorkers);
+        }
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Returns the output directory of a worker.
+     *
+     * <p>The first worker writes to the given output directory, and worker
+     * N to a sibling directory with the suffix <code>-worker-N</code>, so
+     * that the output directories of workers do not contain each other.</p>
+     *
+     * @param outputDirectory the output directory of the fuzzing session
+     * @param worker the index of the worker
+     * @return the output directory of the worker
+     */
+    public static File getWorkerDirectory(File outputDirectory, int worker) {
+        if (worker == 0) {
+            return outputDirectory;
+        }
+        File dir = outputDirectory.getAbsoluteFile();
+        return new File(dir.getParentFile(), dir.getName() + "-worker-" + worker);
+    }
+
+    /**
+     * Returns the number of workers sharing this corpus.
+     *
+     * @return the number of workers
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * Publishes an input if it covers branches that no worker has
+     * covered so far.
+     *
+     * @param worker the index of the worker that saved the input
+     * @param id the ID of the input in the corpus of the worker
+     * @param bytes the bytes of the input
+     * @param covered the coverage keys covered by the input, which are non-negative
+     * @param valid whether the input is valid
+     * @return whether the input was published
+     */
+    public boolean offer(int worker, int id, byte[] bytes, IntList covered, boolean valid) {
+        boolean isNew = false;
+        IntIterator iter = covered.intIterator();
+        while (iter.hasNext()) {
+            int key = iter.next();
+            isNew |= totalCoverage.add(key);
+            if (valid) {
+                isNew |= validCoverage.add(key);
+            }
+        }
+        if (isNew) {
+            entries.add(new Entry(worker, id, bytes));
+        }
+        return isNew;
+    }
+
+    /**
+     * Returns the number of inputs published so far.
+     *
+     * @return the number of published inputs
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a published input.
+     *
+     * @param index the index of the input, less than {@link #size()}
+     * @return the input
+     */
+    public Entry get(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * Returns the number of branches covered by the published inputs.
+     *
+     * @return the number of covered branches
+     */
+    public int getNonZeroCount() {
+        return totalCoverage.size();
+    }
+
+    /**
+     * Returns the number of branches covered by the published valid inputs.
+     *
+     * @return the number of branches covered by valid inputs
+     */
+    public int getNonZeroValidCount() {
+        return validCoverage.size();
+    }
+
+    /** Counts a trial executed by any worker. */
+    public void countTrial() {
+        numTrials.increment();
+    }
+
+    /**
+     * Returns the number of trials executed by all workers.
+     *
+     * @return the total number of trials
+     */
+    public long getNumTrials() {
+        return numTrials.sum();
+    }
+}
@@ -41,6 +41,7 @@ import java.io.File;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -92,6 +93,21 @@ public class ZestCLI implements Runnable{
             description = "Blind fuzzing: do not use coverage feedback (default: false)")
     private boolean blindFuzzing;
 
+    @Option(names = { "-s", "--sync-dir" },
+            description = "Directory containing the output directories of other fuzzing instances, " +
+                    "whose corpora are imported periodically (e.g. the parent of the output directory; default: none)")
+    private File syncDirectory;
+
+    @Option(names = { "-w", "--workers" },
+            description = "Number of fuzzing threads sharing a corpus; workers other than the first " +
+                    "write to sibling directories of the output directory, with the suffix -worker-N (default: 1)")
+    private int workers = Integer.getInteger("workers", 1);
+
+    @Option(names = { "--trim-fraction" },
+            description = "Fraction of the fuzzing time spent on removing bytes from saved inputs " +
+                    "while preserving their coverage (default: 0, i.e. no trimming)")
+    private Double trimFraction;
+
     @Parameters(index = "0", paramLabel = "PACKAGE", description = "package containing the fuzz target and all dependencies")
     private String testPackageName;
 
@@ -140,6 +156,23 @@ public class ZestCLI implements Runnable{
             System.setProperty("jqf.ei.LIBFUZZER_COMPAT_OUTPUT", "true");
         }
 
+        if (this.syncDirectory != null) {
+            System.setProperty("jqf.ei.SYNC_DIR", this.syncDirectory.getPath());
+        }
+
+        if (this.trimFraction != null) {
+            System.setProperty("jqf.ei.TRIM_FRACTION", String.valueOf(this.trimFraction));
+        }
+
+
+        if (workers < 1) {
+            throw new CommandLine.ParameterException(new CommandLine(this),
+                    "Number of workers must be positive: " + workers);
+        }
+        if (workers > 1) {
+            runParallel(seedFiles);
+            return;
+        }
 
         try {
             ClassLoader loader = new InstrumentingClassLoader(
@@ -170,6 +203,49 @@ public class ZestCLI implements Runnable{
         }
 
     }
+
+    private void runParallel(File[] seedFiles) {
+        try {
+            SharedCorpus sharedCorpus = new SharedCorpus(workers);
+            List<ClassLoader> loaders = new ArrayList<>();
+            List<ZestGuidance> guidances = new ArrayList<>();
+            String title = this.testClassName+"#"+this.testMethodName;
+            for (int i = 0; i < workers; i++) {
+                // Each worker gets its own copy of the application's classes
+                loaders.add(new InstrumentingClassLoader(
+                        this.testPackageName.split(File.pathSeparator),
+                        ZestCLI.class.getClassLoader()));
+
+                // Only the first worker runs the seeds; others import them once they add coverage
+                File workerDirectory = SharedCorpus.getWorkerDirectory(this.outputDirectory, i);
+                Long workerTrials = trials == null ? null : trials / workers + (i < trials % workers ? 1 : 0);
+                Random rnd = det ? new Random(i) : new Random();
+                ZestGuidance guidance =
+                    i > 0 ?
+                    new ZestGuidance(title, duration, workerTrials, workerDirectory, rnd) :
+                    seedFiles.length > 0 ?
+                    new ZestGuidance(title, duration, workerTrials, workerDirectory, seedFiles, rnd) :
+                    new ZestGuidance(title, duration, workerTrials, workerDirectory, inputDirectory, rnd);
+                guidance.setBlind(blindFuzzing);
+                guidance.setSharedCorpus(sharedCorpus, i);
+                guidances.add(guidance);
+            }
+
+            // Run the Junit test on all workers
+            Result res = GuidedFuzzing.runParallel(testClassName, testMethodName, loaders, guidances, System.out);
+            if (Boolean.getBoolean("jqf.logCoverage")) {
+                System.out.println(String.format("Covered %d edges.",
+                        sharedCorpus.getNonZeroCount()));
+            }
+            if (Boolean.getBoolean("jqf.ei.EXIT_ON_CRASH") && !res.wasSuccessful()) {
+                System.exit(3);
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
     public static void main(String[] args) {
         int exitCode = new CommandLine(new ZestCLI())
                 .registerConverter(Duration.class, v -> {
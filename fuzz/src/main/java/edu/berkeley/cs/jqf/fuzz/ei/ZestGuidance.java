@@ -39,22 +39,34 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -63,13 +75,18 @@ import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
 import edu.berkeley.cs.jqf.fuzz.guidance.Result;
 import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
 import edu.berkeley.cs.jqf.fuzz.util.Coverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageEvaluation;
 import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
-import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCoverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageSnapshot;
 import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
 import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.fuzz.util.SaturatedProbeRemover;
 import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import janala.instrument.FastCoverageListener;
+import janala.instrument.InstrumentedClasses;
+import janala.instrument.RemovedProbes;
 import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.api.list.primitive.IntList;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
@@ -155,7 +172,7 @@ public class ZestGuidance implements Guidance {
     protected int numSavedInputs = 0;
 
     /** Coverage statistics for a single run. */
-    protected ICoverage runCoverage = CoverageFactory.newInstance();
+    protected ICoverage runCoverage = CoverageFactory.newRunInstance();
 
     /** Cumulative coverage statistics. */
     protected ICoverage totalCoverage = CoverageFactory.newInstance();
@@ -163,6 +180,9 @@ public class ZestGuidance implements Guidance {
     /** Cumulative coverage for valid inputs. */
     protected ICoverage validCoverage = CoverageFactory.newInstance();
 
+    /** The result of evaluating the coverage of the current run, reused across runs. */
+    protected CoverageEvaluation coverageEvaluation = new CoverageEvaluation();
+
     /** The maximum number of keys covered by any single input found so far. */
     protected int maxCoverage = 0;
 
@@ -241,6 +261,102 @@ public class ZestGuidance implements Guidance {
     /** Whether the application has more than one thread running coverage-instrumented code */
     protected boolean multiThreaded = false;
 
+    /** Batches of trace events from threads other than the first, to be merged into the run coverage. */
+    private final Queue<TraceEventBatch> otherThreadBatches = new ConcurrentLinkedQueue<>();
+
+    // ------------- PARALLEL FUZZING ------------
+
+    /** The corpus shared with other workers in this JVM, or null if this guidance fuzzes alone. */
+    protected SharedCorpus sharedCorpus = null;
+
+    /** The index of this worker; only worker 0 displays the status screen. */
+    protected int workerId = 0;
+
+    /** The number of inputs of the shared corpus that have been seen so far. */
+    private int sharedCorpusPosition = 0;
+
+    // ------------- CORPUS SYNCHRONIZATION ------------
+
+    /**
+     * The directory containing the output directories of other fuzzing
+     * instances, whose corpora are imported periodically; null if not syncing.
+     */
+    protected File syncDirectory;
+
+    /** Minimum amount of time (in millis) between two syncs. */
+    protected final long SYNC_INTERVAL = Long.getLong("jqf.ei.SYNC_INTERVAL", 30_000L);
+
+    /** Time (in millis) of the last sync. */
+    protected long lastSyncTime = 0;
+
+    /** The ID of the next corpus file to import, for each synced instance. */
+    protected Map<String, Integer> nextSyncIds = new HashMap<>();
+
+    /**
+     * The name of the file in the output directory that identifies the
+     * current run of an instance; it changes whenever the instance
+     * restarts and numbers its corpus from zero again.
+     */
+    public static final String SYNC_EPOCH_FILE_NAME = "sync_epoch";
+
+    /** The epoch of each synced instance when its corpus was last imported. */
+    protected Map<String, String> syncEpochs = new HashMap<>();
+
+    /** Number of inputs imported from other instances so far. */
+    protected int numSyncedInputs = 0;
+
+    // ------------- QUEUE INDEX ------------
+
+    /** Whether to skip writing and restoring the queue index. */
+    protected final boolean DISABLE_QUEUE_INDEX = Boolean.getBoolean("jqf.ei.DISABLE_QUEUE_INDEX");
+
+    /** Minimum amount of time (in millis) between two writes of the queue index. */
+    protected final long QUEUE_INDEX_INTERVAL = Long.getLong("jqf.ei.QUEUE_INDEX_INTERVAL", 60_000L);
+
+    /** The file where the queue index is written. */
+    protected File queueIndexFile;
+
+    /** Time (in millis) when the queue index was last written. */
+    protected long lastQueueIndexTime = 0;
+
+    /** The number of saved inputs when the queue index was last written. */
+    protected int numIndexedInputs = 0;
+
+    /** The queue index of a previous campaign whose corpus is used as seeds, to be restored by the first trial. */
+    protected File resumeQueueIndexFile;
+
+    // ------------- INPUT TRIMMING ------------
+
+    /** The fraction of the fuzzing time to spend on making saved inputs smaller (0 disables trimming). */
+    protected final double TRIM_FRACTION = Double.parseDouble(System.getProperty("jqf.ei.TRIM_FRACTION", "0"));
+
+    /** Index in savedInputs of the next input to trim. */
+    protected int nextTrimInputIdx = 0;
+
+    /** The saved input that is being trimmed, or null if none. */
+    protected LinearInput trimTarget;
+
+    /** The candidates for trimming trimTarget. */
+    private InputTrimmer trimmer;
+
+    /** The result of executing trimTarget before trimming it, or null if it has not been executed yet. */
+    protected Result trimBaselineResult;
+
+    /** Current trimming candidate -- non-null after getInput() and before handleResult() of a trimming trial. */
+    protected LinearInput trimCandidate;
+
+    /** Time (in nanos) spent on trimming trials so far. */
+    protected long trimNanos = 0;
+
+    /** Time (in nanos) when the current trimming trial was started. */
+    private long trimStartNanos;
+
+    /** Number of saved inputs that were made smaller. */
+    protected int numTrimmedInputs = 0;
+
+    /** Number of bytes removed from saved inputs. */
+    protected long numTrimmedBytes = 0;
+
     // ------------- FUZZING HEURISTICS ------------
 
     /** Whether to save only valid inputs **/
@@ -270,6 +386,18 @@ public class ZestGuidance implements Guidance {
     /** Whether to steal responsibility from old inputs (this increases computation cost). */
     protected final boolean STEAL_RESPONSIBILITY = Boolean.getBoolean("jqf.ei.STEAL_RESPONSIBILITY");
 
+    /** Whether to remove probes whose coverage is saturated from the instrumented classes. */
+    protected final boolean REMOVE_SATURATED_PROBES = Boolean.getBoolean("jqf.ei.REMOVE_SATURATED_PROBES");
+
+    /** The number of trials between checks for saturated probes. */
+    protected final long SATURATION_CHECK_INTERVAL = Long.getLong("jqf.ei.SATURATION_CHECK_INTERVAL", 100_000L);
+
+    /** The number of checks for which a probe's count bits must be unchanged for it to be saturated. */
+    protected final int SATURATION_STABLE_CHECKS = Integer.getInteger("jqf.ei.SATURATION_STABLE_CHECKS", 10);
+
+    /** The policy that removes saturated probes, or null if disabled or unsupported. */
+    protected SaturatedProbeRemover saturatedProbeRemover;
+
     /**
      * Creates a new Zest guidance instance with optional duration,
      * optional trial limit, and possibly deterministic PRNG.
@@ -291,12 +419,18 @@ public class ZestGuidance implements Guidance {
         this.outputDirectory = outputDirectory;
         this.blind = Boolean.getBoolean("jqf.ei.TOTALLY_RANDOM");
         this.validityFuzzing = !Boolean.getBoolean("jqf.ei.DISABLE_VALIDITY_FUZZING");
+        String syncDir = System.getProperty("jqf.ei.SYNC_DIR");
+        this.syncDirectory = syncDir != null && !syncDir.isEmpty() ? new File(syncDir) : null;
         prepareOutputDirectory();
 
         if(this.runCoverage instanceof FastCoverageListener){
             FastCoverageSnoop.setFastCoverageListener((FastCoverageListener) this.runCoverage);
         }
 
+        if (REMOVE_SATURATED_PROBES && SaturatedProbeRemover.isSupported()) {
+            this.saturatedProbeRemover = new SaturatedProbeRemover(SATURATION_CHECK_INTERVAL, SATURATION_STABLE_CHECKS);
+        }
+
         // Try to parse the single-run timeout
         String timeout = System.getProperty("jqf.ei.TIMEOUT");
         if (timeout != null && !timeout.isEmpty()) {
@@ -307,6 +441,10 @@ public class ZestGuidance implements Guidance {
                 throw new IllegalArgumentException("Invalid timeout duration: " + timeout);
             }
         }
+
+        if (TRIM_FRACTION < 0 || TRIM_FRACTION >= 1) {
+            throw new IllegalArgumentException("Invalid trim fraction: " + TRIM_FRACTION);
+        }
     }
 
     /**
@@ -329,6 +467,15 @@ public class ZestGuidance implements Guidance {
             for (File seedInputFile : seedInputFiles) {
                 seedInputs.add(new SeedInput(seedInputFile));
             }
+
+            // If the seeds are the corpus of an earlier campaign, its queue can be restored without replaying it
+            if (seedInputFiles.length > 0 && !DISABLE_QUEUE_INDEX) {
+                File previousOutputDirectory = seedInputFiles[0].getAbsoluteFile().getParentFile().getParentFile();
+                File indexFile = new File(previousOutputDirectory, QueueIndex.FILE_NAME);
+                if (indexFile.isFile()) {
+                    resumeQueueIndexFile = indexFile;
+                }
+            }
         }
     }
 
@@ -410,6 +557,7 @@ public class ZestGuidance implements Guidance {
         this.logFile = new File(outputDirectory, "fuzz.log");
         this.currentInputFile = new File(outputDirectory, ".cur_input");
         this.coverageFile = new File(outputDirectory, "coverage_hash");
+        this.queueIndexFile = new File(outputDirectory, QueueIndex.FILE_NAME);
 
         // Delete everything that we may have created in a previous run.
         // Trying to stay away from recursive delete of parent output directory in case there was a
@@ -418,6 +566,7 @@ public class ZestGuidance implements Guidance {
         statsFile.delete();
         logFile.delete();
         coverageFile.delete();
+        queueIndexFile.delete();
         for (File file : savedCorpusDirectory.listFiles()) {
             file.delete();
         }
@@ -425,6 +574,12 @@ public class ZestGuidance implements Guidance {
             file.delete();
         }
 
+        // Let syncing instances know that the corpus is numbered from zero again
+        File epochFile = new File(outputDirectory, SYNC_EPOCH_FILE_NAME);
+        File tmp = new File(epochFile.getPath() + ".tmp");
+        Files.write(tmp.toPath(), UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), epochFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
         appendLineToFile(statsFile, getStatNames());
     }
 
@@ -516,7 +671,7 @@ public class ZestGuidance implements Guidance {
         int nonZeroValidCount = validCoverage.getNonZeroCount();
         double nonZeroValidFraction = nonZeroValidCount * 100.0 / validCoverage.size();
 
-        if (console != null) {
+        if (console != null && workerId == 0) {
             if (LIBFUZZER_COMPAT_OUTPUT) {
                 console.printf("#%,d\tNEW\tcov: %,d exec/s: %,d L: %,d\n", numTrials, nonZeroValidCount, intervalExecsPerSec, currentInput.size());
             } else if (!QUIET_MODE) {
@@ -528,7 +683,7 @@ public class ZestGuidance implements Guidance {
                 }
 
                 String instrumentationType = "Janala";
-                if (this.runCoverage instanceof FastNonCollidingCoverage) {
+                if (this.runCoverage instanceof FastCoverageListener) {
                     instrumentationType = "Fast";
                 }
                 console.printf("Instrumentation:      %s\n", instrumentationType);
@@ -545,6 +700,22 @@ public class ZestGuidance implements Guidance {
                 console.printf("Execution speed:      %,d/sec now | %,d/sec overall\n", intervalExecsPerSec, execsPerSec);
                 console.printf("Total coverage:       %,d branches (%.2f%% of map)\n", nonZeroCount, nonZeroFraction);
                 console.printf("Valid coverage:       %,d branches (%.2f%% of map)\n", nonZeroValidCount, nonZeroValidFraction);
+                if (saturatedProbeRemover != null) {
+                    console.printf("Removed probes:       %,d saturated\n", saturatedProbeRemover.getNumRemoved());
+                }
+                if (syncDirectory != null) {
+                    console.printf("Synced inputs:        %,d imported from %s\n", numSyncedInputs, syncDirectory);
+                }
+                if (TRIM_FRACTION > 0) {
+                    console.printf("Trimmed inputs:       %,d (%,d bytes removed)\n", numTrimmedInputs, numTrimmedBytes);
+                }
+                if (sharedCorpus != null) {
+                    long sharedTrials = sharedCorpus.getNumTrials();
+                    console.printf("Workers:              %d (%,d executions, %,d/sec overall)\n",
+                            sharedCorpus.getNumWorkers(), sharedTrials, sharedTrials * 1000L / elapsedMilliseconds);
+                    console.printf("Shared coverage:      %,d branches (%,d inputs shared)\n",
+                            sharedCorpus.getNonZeroCount(), sharedCorpus.size());
+                }
             }
         }
 
@@ -582,6 +753,381 @@ public class ZestGuidance implements Guidance {
         this.blind = blind;
     }
 
+    /**
+     * Makes this guidance one of several workers that fuzz the same test
+     * in this JVM, each on its own thread.
+     *
+     * <p>Saved inputs that cover new branches are published to the
+     * shared corpus, and inputs published by other workers are executed
+     * like seeds.</p>
+     *
+     * @param sharedCorpus the corpus shared by all workers
+     * @param workerId the index of this worker
+     * @throws IllegalStateException if fast coverage instrumentation is
+     *                  used, since its probes report to a single listener
+     */
+    public void setSharedCorpus(SharedCorpus sharedCorpus, int workerId) {
+        if (this.runCoverage instanceof FastCoverageListener) {
+            throw new IllegalStateException("Fast coverage instrumentation does not support multiple workers");
+        }
+        this.sharedCorpus = sharedCorpus;
+        this.workerId = workerId;
+    }
+
+    /**
+     * Makes this guidance periodically import the corpora of other
+     * fuzzing instances, e.g. running in other JVMs or on other hosts
+     * with a shared filesystem.
+     *
+     * <p>Every sub-directory of the sync directory other than this
+     * guidance's output directory is treated as the output directory of
+     * another instance. Files in its <code>corpus</code> directory are
+     * executed like seeds, in order of their IDs, and are saved only if
+     * they add coverage. Syncs happen at most once every
+     * <code>jqf.ei.SYNC_INTERVAL</code> milliseconds and only read
+     * corpus files that are new since the last sync. When an instance
+     * restarts, which changes its {@link #SYNC_EPOCH_FILE_NAME} file, its
+     * corpus is read from the first file again.</p>
+     *
+     * @param syncDirectory the directory containing the output directories
+     *                      of all instances, or null to disable syncing
+     */
+    public void setSyncDirectory(File syncDirectory) {
+        this.syncDirectory = syncDirectory;
+    }
+
+    /**
+     * Queues the corpus files that other instances have saved since the
+     * last sync, to be executed next.
+     *
+     * @throws IOException if a corpus file could not be read
+     */
+    protected void syncInputs() throws IOException {
+        File[] instanceDirs = syncDirectory.listFiles(File::isDirectory);
+        if (instanceDirs == null) {
+            return;
+        }
+        Arrays.sort(instanceDirs);
+        File ownDir = outputDirectory.getCanonicalFile();
+        for (File instanceDir : instanceDirs) {
+            if (instanceDir.getCanonicalFile().equals(ownDir)) {
+                continue;
+            }
+            // A restarted instance numbers its corpus from zero again
+            String instance = instanceDir.getName();
+            String epoch = readSyncEpoch(instanceDir);
+            if (!Objects.equals(epoch, syncEpochs.get(instance))) {
+                syncEpochs.put(instance, epoch);
+                nextSyncIds.remove(instance);
+            }
+
+            // Corpus files are numbered consecutively, so probe from the first unseen ID
+            File corpusDir = new File(instanceDir, "corpus");
+            int id = nextSyncIds.getOrDefault(instance, 0);
+            File file;
+            while ((file = new File(corpusDir, String.format("id_%06d", id))).isFile()) {
+                Input<?> input = createSyncedInput(file);
+                input.desc = String.format("sync:%s/%06d", instance, id);
+                seedInputs.add(input);
+                numSyncedInputs++;
+                id++;
+            }
+            nextSyncIds.put(instance, id);
+        }
+    }
+
+    /**
+     * Reads the epoch of another instance.
+     *
+     * @param instanceDir the output directory of the instance
+     * @return the epoch, or null if the instance does not write one
+     * @throws IOException if the epoch file exists but could not be read
+     */
+    private static String readSyncEpoch(File instanceDir) throws IOException {
+        File epochFile = new File(instanceDir, SYNC_EPOCH_FILE_NAME);
+        if (!epochFile.isFile()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(epochFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates an input from a corpus file of another instance.
+     *
+     * @param file the corpus file
+     * @return an input that reads the bytes of the file
+     * @throws IOException if the file could not be read
+     */
+    protected Input<?> createSyncedInput(File file) throws IOException {
+        return new LinearInput(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Restores the saved inputs of an earlier campaign from its queue
+     * index, instead of executing the seed inputs that make up its corpus.
+     *
+     * <p>The index is only used if its coverage keys mean the same as in
+     * this JVM (see {@link QueueIndex#checkCompatible}) and if every input
+     * in the index is a seed input with unchanged bytes. Restored inputs
+     * are saved to this campaign's corpus with their book-keeping data and
+     * the cumulative coverage of the earlier campaign. Seed inputs that
+     * are not in the index, and all seed inputs if the index cannot be
+     * used, are executed as usual.</p>
+     *
+     * @param indexFile the queue index of the earlier campaign
+     * @throws IOException if a restored input could not be saved
+     */
+    protected void restoreQueue(File indexFile) throws IOException {
+        // Find the corpus file of each indexed input among the seeds
+        Map<String, SeedInput> seedsByName = new HashMap<>();
+        for (Input<?> seed : seedInputs) {
+            if (seed instanceof SeedInput) {
+                seedsByName.put(((SeedInput) seed).seedFile.getName(), (SeedInput) seed);
+            }
+        }
+        QueueIndex index;
+        List<SeedInput> replacedSeeds = new ArrayList<>();
+        List<LinearInput> restoredInputs = new ArrayList<>();
+        try {
+            index = QueueIndex.read(indexFile);
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            String reason = index.checkCompatible(getClass().getName(), totalCoverage.size(),
+                    loader != null ? loader : ClassLoader.getSystemClassLoader());
+            for (int i = 0; reason == null && i < index.entries.size(); i++) {
+                String name = String.format("id_%06d", index.entries.get(i).id);
+                SeedInput seed = seedsByName.get(name);
+                byte[] bytes = seed != null ? Files.readAllBytes(seed.seedFile.toPath()) : null;
+                if (bytes == null || !index.entries.get(i).matches(bytes)) {
+                    reason = "corpus file " + name + " is missing or has changed";
+                } else {
+                    replacedSeeds.add(seed);
+                    restoredInputs.add(new LinearInput(bytes));
+                }
+            }
+            if (reason != null) {
+                infoLog("Not restoring queue from %s: %s", indexFile, reason);
+                return;
+            }
+            index.restoreCoverage(totalCoverage, validCoverage);
+        } catch (IOException e) {
+            infoLog("Not restoring queue from %s: %s", indexFile, e);
+            return;
+        }
+
+        // Do not replay the restored inputs
+        Set<Input<?>> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        replaced.addAll(replacedSeeds);
+        seedInputs.removeIf(replaced::contains);
+        for (SeedInput seed : replacedSeeds) {
+            seed.in.close();
+        }
+
+        for (int i = 0; i < restoredInputs.size(); i++) {
+            QueueIndex.Entry entry = index.entries.get(i);
+            LinearInput input = restoredInputs.get(i);
+            input.desc = "seed";
+            input.id = numSavedInputs++;
+            input.saveFile = new File(savedCorpusDirectory, String.format("id_%06d", input.id));
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(input.saveFile))) {
+                input.writeTo(out);
+            }
+            infoLog("Saved - %s %s %s", input.saveFile.getPath(), input.desc, "+restored");
+            input.nonZeroCoverage = entry.nonZeroCoverage;
+            input.offspring = entry.offspring;
+            input.responsibilities = IntHashSet.newSetWith(entry.responsibilities);
+            if (entry.favored) {
+                input.setFavored();
+            }
+            for (int b : entry.responsibilities) {
+                responsibleInputs.put(b, input);
+            }
+            savedInputs.add(input);
+        }
+        maxCoverage = totalCoverage.getNonZeroCount();
+        updateCoverageFile();
+        infoLog("Restored %d saved inputs from %s", restoredInputs.size(), indexFile);
+    }
+
+    /**
+     * Writes the queue index if inputs have been saved since it was last
+     * written, at most once every <code>jqf.ei.QUEUE_INDEX_INTERVAL</code>
+     * milliseconds unless forced.
+     *
+     * <p>The index is only written if all saved inputs are linear inputs,
+     * which can be restored from the bytes in their corpus files.</p>
+     *
+     * @param force whether to write the index regardless of when it was last written
+     */
+    protected void writeQueueIndex(boolean force) {
+        if (DISABLE_QUEUE_INDEX || blind || numSavedInputs == numIndexedInputs) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now - lastQueueIndexTime < QUEUE_INDEX_INTERVAL) {
+            return;
+        }
+        lastQueueIndexTime = now;
+        if (!InstrumentedClasses.hasStableKeys()) {
+            return;
+        }
+        QueueIndex index = new QueueIndex(getClass().getName(), totalCoverage, validCoverage);
+        for (Input<?> input : savedInputs) {
+            if (!(input instanceof LinearInput)) {
+                return;
+            }
+            LinearInput linearInput = (LinearInput) input;
+            index.add(input.id, linearInput.bytes, linearInput.length, input.isFavored(),
+                    input.nonZeroCoverage, input.offspring, input.responsibilities.toArray());
+        }
+        GuidanceException.wrap(() -> index.write(queueIndexFile));
+        numIndexedInputs = numSavedInputs;
+    }
+
+    /** Queues the inputs that other workers have published since the last call, to be executed next. */
+    protected void importSharedInputs() {
+        int size = sharedCorpus.size();
+        for (; sharedCorpusPosition < size; sharedCorpusPosition++) {
+            SharedCorpus.Entry entry = sharedCorpus.get(sharedCorpusPosition);
+            if (entry.getWorker() != workerId) {
+                LinearInput input = new LinearInput(entry.getBytes());
+                input.desc = String.format("sync:%d/%06d", entry.getWorker(), entry.getId());
+                seedInputs.add(input);
+            }
+        }
+    }
+
+    /**
+     * Starts a trimming trial if less than {@link #TRIM_FRACTION} of the
+     * time has been spent on trimming so far.
+     *
+     * <p>Saved inputs that are responsible for some coverage are trimmed
+     * one at a time, in the order in which they were saved. Each is first
+     * executed as is, to check that it still covers its responsibilities,
+     * and then with chunks of bytes removed (see {@link InputTrimmer}).</p>
+     *
+     * @return whether {@link #trimCandidate} has been set to an input to execute
+     */
+    protected boolean startTrimTrial() {
+        if (TRIM_FRACTION <= 0 || blind) {
+            return false;
+        }
+        long elapsedNanos = (System.currentTimeMillis() - startTime.getTime()) * 1_000_000L;
+        if (trimNanos >= TRIM_FRACTION * elapsedNanos) {
+            return false;
+        }
+
+        byte[] bytes = null;
+        while (bytes == null) {
+            if (trimmer == null) {
+                // Pick the next input to trim, and execute it as is
+                while (trimTarget == null && nextTrimInputIdx < savedInputs.size()) {
+                    Input<?> input = savedInputs.get(nextTrimInputIdx++);
+                    if (input instanceof LinearInput && !input.responsibilities.isEmpty()) {
+                        trimTarget = (LinearInput) input;
+                    }
+                }
+                if (trimTarget == null) {
+                    return false;
+                }
+                trimmer = new InputTrimmer(Arrays.copyOf(trimTarget.bytes, trimTarget.length));
+                trimBaselineResult = null;
+                trimCandidate = new LinearInput(trimTarget);
+                trimCandidate.desc += ",trim";
+                trimStartNanos = System.nanoTime();
+                return true;
+            }
+            bytes = trimmer.next();
+            if (bytes == null) {
+                finishTrimming();
+            }
+        }
+
+        trimCandidate = new LinearInput(bytes);
+        trimCandidate.desc = String.format("src:%06d,trim", trimTarget.id);
+        trimStartNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Returns the probes that have been removed from the classes under
+     * test (see {@link SaturatedProbeRemover}).
+     *
+     * @return the set of removed probe IDs, which must not be modified
+     */
+    protected BitSet getRemovedProbes() {
+        return RemovedProbes.get();
+    }
+
+    /**
+     * Handles the result of a trimming trial.
+     *
+     * <p>If the candidate has the same result as the input being trimmed
+     * and still covers all of its responsibilities, except for probes that
+     * have been removed since, the input and its file in the corpus are
+     * replaced by the (smaller) candidate.</p>
+     *
+     * @param result the result of the trial
+     * @throws IOException if the input file could not be replaced
+     */
+    protected void handleTrimResult(Result result) throws IOException {
+        // Inputs that are no longer responsible for anything need not be trimmed
+        if (trimTarget.responsibilities.isEmpty()) {
+            finishTrimming();
+            return;
+        }
+
+        IntHashSet covered = new IntHashSet();
+        covered.addAll(runCoverage.getCovered());
+        // Removed probes are no longer hit by any input, so they need not be preserved
+        BitSet removed = getRemovedProbes();
+        boolean preserved = true;
+        IntIterator iter = trimTarget.responsibilities.intIterator();
+        while (preserved && iter.hasNext()) {
+            int key = iter.next();
+            preserved = covered.contains(key) || removed.get(key);
+        }
+
+        if (trimBaselineResult == null) {
+            if (preserved && (result == Result.SUCCESS || result == Result.INVALID)) {
+                trimBaselineResult = result;
+            } else {
+                infoLog("Not trimming input %d, which no longer covers its responsibilities", trimTarget.id);
+                finishTrimming();
+            }
+            return;
+        }
+
+        if (preserved && result == trimBaselineResult && trimCandidate.requested > 0) {
+            // Drop the bytes that the candidate did not use
+            trimCandidate.gc();
+            if (trimCandidate.size() < trimTarget.size()) {
+                numTrimmedBytes += trimTarget.size() - trimCandidate.size();
+                trimTarget.replaceWith(trimCandidate);
+                trimTarget.coverage = new CoverageSnapshot(runCoverage);
+                trimTarget.nonZeroCoverage = runCoverage.getNonZeroCount();
+                writeCurrentInputToFile(trimTarget.saveFile);
+                trimmer.keep(Arrays.copyOf(trimCandidate.bytes, trimCandidate.length));
+
+                // The queue index must record the new checksum
+                numIndexedInputs = -1;
+                return;
+            }
+        }
+        trimmer.reject();
+    }
+
+    /** Stops trimming the current input. */
+    protected void finishTrimming() {
+        if (trimTarget.size() < trimmer.getOriginalLength()) {
+            numTrimmedInputs++;
+            infoLog("Trimmed input %d from %d to %d bytes",
+                    trimTarget.id, trimmer.getOriginalLength(), trimTarget.size());
+        }
+        trimTarget = null;
+        trimmer = null;
+        trimBaselineResult = null;
+    }
+
     protected int getTargetChildrenForParent(Input parentInput) {
         // Baseline is a constant
         int target = NUM_CHILDREN_BASELINE;
@@ -664,6 +1210,24 @@ public class ZestGuidance implements Guidance {
                 // infoLog("read(%d) = %d", bytesRead, ret);
                 return ret;
             }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                assert currentInput instanceof LinearInput : "ZestGuidance should only mutate LinearInput(s)";
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (len == 0) {
+                    return 0;
+                }
+
+                // Copy a range of values from the input, generating random values past its end
+                LinearInput linearInput = (LinearInput) currentInput;
+                int ret = linearInput.getOrGenerateFresh(bytesRead, b, off, len, random);
+
+                // Count bytes as if read() had been called until EOF or len bytes were read
+                int count = Math.max(ret, 0);
+                bytesRead += count < len ? count + 1 : count;
+                return ret;
+            }
         };
     }
 
@@ -672,6 +1236,28 @@ public class ZestGuidance implements Guidance {
         conditionallySynchronize(multiThreaded, () -> {
             // Clear coverage stats for this run
             runCoverage.clear();
+            clearOtherThreadBatches();
+
+            // Restore the queue of an earlier campaign before executing its corpus
+            if (resumeQueueIndexFile != null) {
+                File indexFile = resumeQueueIndexFile;
+                resumeQueueIndexFile = null;
+                GuidanceException.wrap(() -> restoreQueue(indexFile));
+            }
+
+            // Pick up inputs found by other workers
+            if (sharedCorpus != null) {
+                importSharedInputs();
+            }
+
+            // Pick up inputs found by other instances, once pending seeds have been executed
+            if (syncDirectory != null && seedInputs.isEmpty()) {
+                long now = System.currentTimeMillis();
+                if (now - lastSyncTime >= SYNC_INTERVAL) {
+                    lastSyncTime = now;
+                    GuidanceException.wrap(this::syncInputs);
+                }
+            }
 
             // Choose an input to execute based on state of queues
             if (!seedInputs.isEmpty()) {
@@ -690,6 +1276,13 @@ public class ZestGuidance implements Guidance {
                 // Make fresh input using either list or maps
                 // infoLog("Spawning new input from thin air");
                 currentInput = createFreshInput();
+            } else if (startTrimTrial()) {
+                // Spend some of the time making saved inputs smaller
+                currentInput = trimCandidate;
+
+                // Start time-counting for timeout handling
+                this.runStart = new Date();
+                this.branchCount = 0;
             } else {
                 // The number of children to produce is determined by how much of the coverage
                 // pool this parent input hits
@@ -736,6 +1329,7 @@ public class ZestGuidance implements Guidance {
         long elapsedMilliseconds = now.getTime() - startTime.getTime();
         if (EXIT_ON_CRASH && uniqueFailures.size() >= 1) {
             // exit
+            writeQueueIndex(true);
             return false;
         }
         if(elapsedMilliseconds < maxDurationMillis
@@ -743,6 +1337,7 @@ public class ZestGuidance implements Guidance {
             return true;
         } else {
             displayStats(true);
+            writeQueueIndex(true);
             return false;
         }
     }
@@ -753,8 +1348,14 @@ public class ZestGuidance implements Guidance {
             // Stop timeout handling
             this.runStart = null;
 
+            // Collect coverage from other threads
+            mergeOtherThreadBatches();
+
             // Increment run count
             this.numTrials++;
+            if (sharedCorpus != null) {
+                sharedCorpus.countTrial();
+            }
 
             boolean valid = result == Result.SUCCESS;
 
@@ -763,7 +1364,18 @@ public class ZestGuidance implements Guidance {
                 numValid++;
             }
 
-            if (result == Result.SUCCESS || (result == Result.INVALID && !SAVE_ONLY_VALID)) {
+            // Trimming trials are not saved even if they cover something new, but failures are
+            boolean trimming = trimCandidate != null;
+            if (trimming) {
+                trimNanos += System.nanoTime() - trimStartNanos;
+                GuidanceException.wrap(() -> handleTrimResult(result));
+                trimCandidate = null;
+            }
+
+            if (!trimming && (result == Result.SUCCESS || (result == Result.INVALID && !SAVE_ONLY_VALID))) {
+
+                // Merge run coverage into total (and valid) coverage in a single pass
+                runCoverage.evaluate(totalCoverage, valid ? validCoverage : null, coverageEvaluation);
 
                 // Compute a list of keys for which this input can assume responsibility.
                 // Newly covered branches are always included.
@@ -802,6 +1414,14 @@ public class ZestGuidance implements Guidance {
                     final String reason = why;
                     GuidanceException.wrap(() -> saveCurrentInput(responsibilities, reason));
 
+                    // Let other workers know about new branches
+                    if (sharedCorpus != null && !blind && currentInput instanceof LinearInput) {
+                        LinearInput linearInput = (LinearInput) currentInput;
+                        sharedCorpus.offer(workerId, currentInput.id,
+                                Arrays.copyOf(linearInput.bytes, linearInput.length),
+                                runCoverage.getCovered(), valid);
+                    }
+
                     // Update coverage information
                     updateCoverageFile();
                 }
@@ -845,6 +1465,14 @@ public class ZestGuidance implements Guidance {
                 }
             }
 
+            // Stop counting probes that no longer guide fuzzing
+            if (saturatedProbeRemover != null) {
+                saturatedProbeRemover.afterTrial(totalCoverage);
+            }
+
+            // Persist the queue every now and then, so that a restarted campaign need not replay it
+            writeQueueIndex(false);
+
             // displaying stats on every interval is only enabled for AFL-like stats screen
             if (!LIBFUZZER_COMPAT_OUTPUT) {
                 displayStats(false);
@@ -861,39 +1489,28 @@ public class ZestGuidance implements Guidance {
     }
 
     // Return a list of saving criteria that have been satisfied for a non-failure input
+    // (total and valid coverage have already been updated by evaluating the run coverage)
     protected List<String> checkSavingCriteriaSatisfied(Result result) {
-        // Coverage before
-        int nonZeroBefore = totalCoverage.getNonZeroCount();
-        int validNonZeroBefore = validCoverage.getNonZeroCount();
-
-        // Update total coverage
-        boolean coverageBitsUpdated = totalCoverage.updateBits(runCoverage);
-        if (result == Result.SUCCESS) {
-            validCoverage.updateBits(runCoverage);
-        }
-
-        // Coverage after
         int nonZeroAfter = totalCoverage.getNonZeroCount();
         if (nonZeroAfter > maxCoverage) {
             maxCoverage = nonZeroAfter;
         }
-        int validNonZeroAfter = validCoverage.getNonZeroCount();
 
         // Possibly save input
         List<String> reasonsToSave = new ArrayList<>();
 
 
-        if (!DISABLE_SAVE_NEW_COUNTS && coverageBitsUpdated) {
+        if (!DISABLE_SAVE_NEW_COUNTS && coverageEvaluation.hasNewCounts()) {
             reasonsToSave.add("+count");
         }
 
         // Save if new total coverage found
-        if (nonZeroAfter > nonZeroBefore) {
+        if (coverageEvaluation.hasNewEdges()) {
             reasonsToSave.add("+cov");
         }
 
         // Save if new valid coverage is found
-        if (this.validityFuzzing && validNonZeroAfter > validNonZeroBefore) {
+        if (this.validityFuzzing && result == Result.SUCCESS && coverageEvaluation.hasNewValidEdges()) {
             reasonsToSave.add("+valid");
         }
 
@@ -906,14 +1523,14 @@ public class ZestGuidance implements Guidance {
         IntHashSet result = new IntHashSet();
 
         // This input is responsible for all new coverage
-        IntList newCoverage = runCoverage.computeNewCoverage(totalCoverage);
+        IntList newCoverage = coverageEvaluation.getNewEdges();
         if (newCoverage.size() > 0) {
             result.addAll(newCoverage);
         }
 
         // If valid, this input is responsible for all new valid coverage
         if (valid) {
-            IntList newValidCoverage = runCoverage.computeNewCoverage(validCoverage);
+            IntList newValidCoverage = coverageEvaluation.getNewValidEdges();
             if (newValidCoverage.size() > 0) {
                 result.addAll(newValidCoverage);
             }
@@ -964,14 +1581,31 @@ public class ZestGuidance implements Guidance {
         return result;
     }
 
+    /**
+     * Writes the current input to a file.
+     *
+     * <p>The input is written to a temporary file, which then replaces the
+     * file, so that other instances syncing this corpus never read a
+     * partially written input.</p>
+     *
+     * @param saveFile the file to write
+     * @throws IOException if the file could not be written
+     */
     protected void writeCurrentInputToFile(File saveFile) throws IOException {
-        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(saveFile))) {
-            for (Integer b : currentInput) {
-                assert (b >= 0 && b < 256);
-                out.write(b);
+        File tmp = new File(saveFile.getPath() + ".tmp");
+        if (currentInput instanceof LinearInput) {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                ((LinearInput) currentInput).writeTo(out);
+            }
+        } else {
+            try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                for (Integer b : currentInput) {
+                    assert (b >= 0 && b < 256);
+                    out.write(b);
+                }
             }
         }
-
+        Files.move(tmp.toPath(), saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     /* Saves an interesting input to the queue. */
@@ -996,7 +1630,7 @@ public class ZestGuidance implements Guidance {
         // Third, store basic book-keeping data
         currentInput.id = newInputIdx;
         currentInput.saveFile = saveFile;
-        currentInput.coverage = runCoverage.copy();
+        currentInput.coverage = new CoverageSnapshot(runCoverage);
         currentInput.nonZeroCoverage = runCoverage.getNonZeroCount();
         currentInput.offspring = 0;
         savedInputs.get(currentParentInputIdx).offspring += 1;
@@ -1034,6 +1668,102 @@ public class ZestGuidance implements Guidance {
         return this::handleEvent;
     }
 
+    /**
+     * Returns a callback that handles batches of trace events in a tight
+     * loop with {@link #handleEvent(TraceEventBatch, int)}.
+     *
+     * <p>Subclasses whose {@link #handlesEventBatches()} returns
+     * <code>false</code> receive their events one at a time through
+     * {@link #generateCallBack(Thread)}.</p>
+     *
+     * <p>Batches of threads other than the first are not handled right
+     * away, but are handed off to a concurrent queue and merged into the
+     * run coverage when the result is handled. Applications that start
+     * many threads (e.g. virtual threads) therefore do not contend for a
+     * lock on this guidance.</p>
+     */
+    @Override
+    public Consumer<TraceEventBatch> generateBatchCallBack(Thread thread) {
+        if (!handlesEventBatches()) {
+            return TraceEventBatch.forEachEvent(generateCallBack(thread));
+        }
+        synchronized (this) {
+            if (firstThread == null) {
+                firstThread = thread;
+            }
+        }
+        if (thread != firstThread) {
+            return TraceEventBatch.handOff(this::handOffBatch);
+        }
+        return this::handleEvents;
+    }
+
+    /**
+     * Returns whether this guidance handles trace events with
+     * {@link #handleEvent(TraceEventBatch, int)}.
+     *
+     * <p>Subclasses that override {@link #handleEvent(TraceEvent)} or
+     * {@link #generateCallBack(Thread)} without also overriding
+     * {@link #handleEvent(TraceEventBatch, int)} should return
+     * <code>false</code>.</p>
+     *
+     * @return whether batches of trace events are handled
+     */
+    protected boolean handlesEventBatches() {
+        return true;
+    }
+
+    /**
+     * Handles a batch of trace events generated during test execution.
+     *
+     * @param batch the batch of events to be handled
+     */
+    protected void handleEvents(TraceEventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            handleEvent(batch, i);
+        }
+    }
+
+    /** Queues a batch of a thread other than the first, checking whether the run has timed out. */
+    private void handOffBatch(TraceEventBatch batch) {
+        otherThreadBatches.add(batch);
+        checkElapsedTime();
+    }
+
+    /** Handles the batches of trace events generated by threads other than the first. */
+    private void mergeOtherThreadBatches() {
+        TraceEventBatch batch;
+        while ((batch = otherThreadBatches.poll()) != null) {
+            try {
+                handleEvents(batch);
+            } finally {
+                TraceEventBatch.recycle(batch);
+            }
+        }
+    }
+
+    /** Drops the batches of other threads that arrived after the last run. */
+    private void clearOtherThreadBatches() {
+        TraceEventBatch batch;
+        while ((batch = otherThreadBatches.poll()) != null) {
+            TraceEventBatch.recycle(batch);
+        }
+    }
+
+    /**
+     * Handles an event of a batch generated during test execution.
+     *
+     * <p>This is the batched counterpart of {@link #handleEvent(TraceEvent)};
+     * subclasses that override one should override the other.</p>
+     *
+     * @param batch the batch of events
+     * @param i the index of the event to be handled
+     */
+    protected void handleEvent(TraceEventBatch batch, int i) {
+        ((Coverage) runCoverage).handleEvent(batch, i);
+        checkTimeout();
+    }
+
     /**
      * Handles a trace event generated during test execution.
      *
@@ -1055,17 +1785,29 @@ public class ZestGuidance implements Guidance {
 
             // Collect totalCoverage
             ((Coverage) runCoverage).handleEvent(e);
-            // Check for possible timeouts every so often
-            if (this.singleRunTimeoutMillis > 0 &&
-                    this.runStart != null && (++this.branchCount) % 10_000 == 0) {
-                long elapsed = new Date().getTime() - runStart.getTime();
-                if (elapsed > this.singleRunTimeoutMillis) {
-                    throw new TimeoutException(elapsed, this.singleRunTimeoutMillis);
-                }
-            }
+            checkTimeout();
         });
     }
 
+    /** Checks for possible timeouts every so often. */
+    private void checkTimeout() {
+        if (this.singleRunTimeoutMillis > 0 &&
+                this.runStart != null && (++this.branchCount) % 10_000 == 0) {
+            checkElapsedTime();
+        }
+    }
+
+    /** Throws a timeout if the current run has taken too long. */
+    private void checkElapsedTime() {
+        Date start = this.runStart;
+        if (this.singleRunTimeoutMillis > 0 && start != null) {
+            long elapsed = new Date().getTime() - start.getTime();
+            if (elapsed > this.singleRunTimeoutMillis) {
+                throw new TimeoutException(elapsed, this.singleRunTimeoutMillis);
+            }
+        }
+    }
+
     /**
      * Returns a reference to the coverage statistics.
      * @return a reference to the coverage statistics
@@ -1091,7 +1833,7 @@ public class ZestGuidance implements Guidance {
 
     private static MessageDigest sha1;
 
-    private static String failureDigest(StackTraceElement[] stackTrace) {
+    private static synchronized String failureDigest(StackTraceElement[] stackTrace) {
         if (sha1 == null) {
             try {
                 sha1 = MessageDigest.getInstance("SHA-1");
@@ -1143,7 +1885,11 @@ public class ZestGuidance implements Guidance {
         /**
          * The run coverage for this input, if the input is saved.
          *
-         * <p>This field is null for inputs that are not saved.</p>
+         * <p>This is stored as an immutable {@link CoverageSnapshot}, whose
+         * memory footprint is proportional to the number of covered edges.</p>
+         *
+         * <p>This field is null for inputs that are not saved, and for
+         * inputs restored from a queue index.</p>
          */
         ICoverage coverage = null;
 
@@ -1238,30 +1984,67 @@ public class ZestGuidance implements Guidance {
 
     public class LinearInput extends Input<Integer> {
 
-        /** A list of byte values (0-255) ordered by their index. */
-        protected ArrayList<Integer> values;
+        /** The byte values ordered by their index; only the first {@link #length} are used. */
+        protected byte[] bytes;
+
+        /** The number of byte values in this input. */
+        protected int length;
+
+        /**
+         * Whether {@link #bytes} may also be used by another input, in which
+         * case it must be copied before it is modified.
+         */
+        private boolean shared = false;
 
         /** The number of bytes requested so far */
         protected int requested = 0;
 
         public LinearInput() {
             super();
-            this.values = new ArrayList<>();
+            this.bytes = new byte[64];
+            this.length = 0;
+        }
+
+        /**
+         * Creates an input with the given byte values, which are copied
+         * before they are modified.
+         *
+         * @param bytes the byte values
+         */
+        public LinearInput(byte[] bytes) {
+            super();
+            this.bytes = bytes;
+            this.length = bytes.length;
+            this.shared = true;
         }
 
         public LinearInput(LinearInput other) {
             super(other);
-            this.values = new ArrayList<>(other.values);
+            // Copy on write
+            this.bytes = other.bytes;
+            this.length = other.length;
+            this.shared = other.shared = true;
         }
 
-
         @Override
         public int getOrGenerateFresh(Integer key, Random random) {
+            return getOrGenerateFresh(key.intValue(), random);
+        }
+
+        /**
+         * Returns the byte value at the given index, or generates a fresh
+         * one if the index is just beyond the end of this input.
+         *
+         * @param key the index, which must be the number of bytes requested so far
+         * @param random a pseudo-random number generator for fresh values
+         * @return a byte value (0-255), or -1 at the end of the input
+         */
+        public int getOrGenerateFresh(int key, Random random) {
             // Otherwise, make sure we are requesting just beyond the end-of-list
-            // assert (key == values.size());
+            // assert (key == length);
             if (key != requested) {
                 throw new IllegalStateException(String.format("Bytes from linear input out of order. " +
-                        "Size = %d, Key = %d", values.size(), key));
+                        "Size = %d, Key = %d", length, key));
             }
 
             // Don't generate over the limit
@@ -1270,10 +2053,10 @@ public class ZestGuidance implements Guidance {
             }
 
             // If it exists in the list, return it
-            if (key < values.size()) {
+            if (key < length) {
                 requested++;
                 // infoLog("Returning old byte at key=%d, total requested=%d", key, requested);
-                return values.get(key);
+                return bytes[key] & 0xFF;
             }
 
             // Handle end of stream
@@ -1282,16 +2065,127 @@ public class ZestGuidance implements Guidance {
             } else {
                 // Just generate a random input
                 int val = random.nextInt(256);
-                values.add(val);
+                append(val);
                 requested++;
                 // infoLog("Generating fresh byte at key=%d, total requested=%d", key, requested);
                 return val;
             }
         }
 
+        /**
+         * Reads a range of byte values starting at the given index, generating
+         * fresh ones past the end of this input.
+         *
+         * <p>This is equivalent to calling {@link #getOrGenerateFresh(int, Random)}
+         * for each index until it returns -1 or <code>len</code> values are read,
+         * and consumes the same pseudo-random numbers.</p>
+         *
+         * @param key the first index, which must be the number of bytes requested so far
+         * @param b the buffer to read values into
+         * @param off the offset in <code>b</code> of the first value
+         * @param len the maximum number of values to read
+         * @param random a pseudo-random number generator for fresh values
+         * @return the number of values read, or -1 if the end of the input was reached
+         */
+        public int getOrGenerateFresh(int key, byte[] b, int off, int len, Random random) {
+            if (key != requested) {
+                throw new IllegalStateException(String.format("Bytes from linear input out of order. " +
+                        "Size = %d, Key = %d", length, key));
+            }
+
+            // Don't generate over the limit
+            int limit = Math.min(len, MAX_INPUT_SIZE - requested);
+
+            // Copy the values that exist in the list
+            int count = Math.max(Math.min(limit, length - key), 0);
+            System.arraycopy(bytes, key, b, off, count);
+
+            // Generate random values for the rest, unless the end of stream is reached
+            if (!GENERATE_EOF_WHEN_OUT && count < limit) {
+                ensureCapacity(key + limit);
+                for (; count < limit; count++) {
+                    int val = random.nextInt(256);
+                    bytes[length++] = (byte) val;
+                    b[off + count] = (byte) val;
+                }
+            }
+
+            requested += count;
+            return count > 0 ? count : -1;
+        }
+
+        /**
+         * Appends a byte value to this input.
+         *
+         * @param value the byte value (0-255)
+         */
+        protected void append(int value) {
+            ensureCapacity(length + 1);
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Makes sure that this input owns a buffer for at least the given
+         * number of byte values.
+         *
+         * @param capacity the number of byte values
+         */
+        protected void ensureCapacity(int capacity) {
+            if (shared || capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, Math.max(length * 2, 64)));
+                shared = false;
+            }
+        }
+
+        /**
+         * Replaces a byte value of this input.
+         *
+         * @param index an index less than {@link #size()}
+         * @param value the byte value (0-255)
+         */
+        protected void set(int index, int value) {
+            if (shared) {
+                bytes = Arrays.copyOf(bytes, length);
+                shared = false;
+            }
+            bytes[index] = (byte) value;
+        }
+
+        /**
+         * Replaces the byte values of this input with those of another
+         * input, e.g. a smaller input with the same coverage.
+         *
+         * @param other the input whose byte values to use
+         */
+        protected void replaceWith(LinearInput other) {
+            this.bytes = other.bytes;
+            this.length = other.length;
+            this.shared = other.shared = true;
+        }
+
+        /**
+         * Returns the byte value at the given index.
+         *
+         * @param index an index less than {@link #size()}
+         * @return the byte value (0-255)
+         */
+        public int get(int index) {
+            return bytes[index] & 0xFF;
+        }
+
         @Override
         public int size() {
-            return values.size();
+            return length;
+        }
+
+        /**
+         * Writes the byte values of this input to a stream.
+         *
+         * @param out the stream to write to
+         * @throws IOException if the stream cannot be written to
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
         }
 
         /**
@@ -1304,11 +2198,13 @@ public class ZestGuidance implements Guidance {
         @Override
         public void gc() {
             // Remove elements beyond "requested"
-            values = new ArrayList<>(values.subList(0, requested));
-            values.trimToSize();
+            length = requested;
+            if (!shared && bytes.length > length) {
+                bytes = Arrays.copyOf(bytes, length);
+            }
 
             // Inputs should not be empty, otherwise mutations don't work
-            if (values.isEmpty()) {
+            if (length == 0) {
                 throw new IllegalArgumentException("Input is either empty or nothing was requested from the input generator.");
             }
         }
@@ -1327,21 +2223,15 @@ public class ZestGuidance implements Guidance {
             for (int mutation = 1; mutation <= numMutations; mutation++) {
 
                 // Select a random offset and size
-                int offset = random.nextInt(newInput.values.size());
+                int offset = random.nextInt(length);
                 int mutationSize = sampleGeometric(random, MEAN_MUTATION_SIZE);
 
                 // desc += String.format(":%d@%d", mutationSize, idx);
 
-                // Mutate a contiguous set of bytes from offset
-                for (int i = offset; i < offset + mutationSize; i++) {
-                    // Don't go past end of list
-                    if (i >= newInput.values.size()) {
-                        break;
-                    }
-
-                    // Otherwise, apply a random mutation
+                // Mutate a contiguous set of bytes from offset, without going past the end
+                for (int i = offset; i < offset + mutationSize && i < length; i++) {
                     int mutatedValue = setToZero ? 0 : random.nextInt(256);
-                    newInput.values.set(i, mutatedValue);
+                    newInput.set(i, mutatedValue);
                 }
             }
 
@@ -1350,7 +2240,23 @@ public class ZestGuidance implements Guidance {
 
         @Override
         public Iterator<Integer> iterator() {
-            return values.iterator();
+            return new Iterator<Integer>() {
+                int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < length;
+                }
+
+                @Override
+                public Integer next() {
+                    if (index >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    // Boxed values of 0-255 are cached
+                    return bytes[index++] & 0xFF;
+                }
+            };
         }
     }
 
@@ -1366,7 +2272,7 @@ public class ZestGuidance implements Guidance {
         }
 
         @Override
-        public int getOrGenerateFresh(Integer key, Random random) {
+        public int getOrGenerateFresh(int key, Random random) {
             int value;
             try {
                 value = in.read();
@@ -1375,21 +2281,45 @@ public class ZestGuidance implements Guidance {
 
             }
 
-            // assert (key == values.size())
-            if (key != values.size() && value != -1) {
+            // assert (key == length)
+            if (key != length && value != -1) {
                 throw new IllegalStateException(String.format("Bytes from seed out of order. " +
-                        "Size = %d, Key = %d", values.size(), key));
+                        "Size = %d, Key = %d", length, key));
             }
 
             if (value >= 0) {
                 requested++;
-                values.add(value);
+                append(value);
             }
 
             // If value is -1, then it is returned (as EOF) but not added to the list
             return value;
         }
 
+        @Override
+        public int getOrGenerateFresh(int key, byte[] b, int off, int len, Random random) {
+            int count;
+            try {
+                count = in.readNBytes(b, off, len);
+            } catch (IOException e) {
+                throw new GuidanceException("Error reading from seed file: " + seedFile.getName(), e);
+            }
+
+            // assert (key == length)
+            if (key != length && count > 0) {
+                throw new IllegalStateException(String.format("Bytes from seed out of order. " +
+                        "Size = %d, Key = %d", length, key));
+            }
+
+            ensureCapacity(length + count);
+            System.arraycopy(b, off, bytes, length, count);
+            length += count;
+            requested += count;
+
+            // If no value was left, then EOF is returned
+            return count > 0 ? count : -1;
+        }
+
         @Override
         public void gc() {
             super.gc();
@@ -1402,5 +2332,4 @@ public class ZestGuidance implements Guidance {
 
     }
 
-
 }
@@ -29,6 +29,7 @@
 package edu.berkeley.cs.jqf.fuzz.ei.state;
 
 import edu.berkeley.cs.jqf.fuzz.ei.ExecutionIndex;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
@@ -79,4 +80,34 @@ public class JanalaExecutionIndexingState extends AbstractExecutionIndexingState
     public void visitReadEvent(ReadEvent e) {
         setLastEventIid(e.getIid());
     }
+
+    /**
+     * Updates the execution index with an event of a batch, just like
+     * visiting the corresponding trace event.
+     *
+     * @param batch the batch of events
+     * @param i the index of the event
+     */
+    public void handleEvent(TraceEventBatch batch, int i) {
+        switch (batch.kind(i)) {
+            case TraceEventBatch.CALL:
+                setLastEventIid(batch.iid(i));
+                this.pushCall(batch.iid(i));
+                break;
+            case TraceEventBatch.RETURN:
+                setLastEventIid(batch.iid(i));
+                this.popReturn(batch.iid(i));
+                break;
+            case TraceEventBatch.ALLOC:
+            case TraceEventBatch.BRANCH:
+            case TraceEventBatch.READ:
+                setLastEventIid(batch.iid(i));
+                break;
+            case TraceEventBatch.EVENT:
+                batch.event(i).applyVisitor(this);
+                break;
+            default:
+                break;
+        }
+    }
 }
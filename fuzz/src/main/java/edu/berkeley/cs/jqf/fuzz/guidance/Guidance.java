@@ -35,6 +35,7 @@ import java.util.function.Supplier;
 
 import edu.berkeley.cs.jqf.fuzz.junit.TrialRunner;
 import edu.berkeley.cs.jqf.fuzz.junit.quickcheck.FuzzStatement;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.TestClass;
@@ -90,6 +91,11 @@ public interface Guidance {
      * been invoked since the last call to {@link #getInput()},
      * then invoking this method may throw an IllegalStateException.
      *
+     * <p>Generators read ranges of bytes through {@link StreamBackedRandom},
+     * which calls {@link InputStream#read(byte[], int, int)} and treats
+     * a short read as the end of the stream. Streams that hand out
+     * many bytes should implement that method to copy them in bulk.
+     *
      * @return  a stream of bytes to be used by the input generator(s)
      * @throws IllegalStateException if the last {@link #hasInput()}
      *                  returned <code>false</code>
@@ -197,6 +203,27 @@ public interface Guidance {
      */
     Consumer<TraceEvent> generateCallBack(Thread thread);
 
+    /**
+     * Returns a callback generator for batches of a thread's trace events.
+     *
+     * <p>Guidances that process many events can override this method to
+     * handle the primitive records of a {@link TraceEventBatch} in a loop,
+     * instead of handling a {@link TraceEvent} object per event. Batches
+     * are handled when they are full and whenever the thread leaves the
+     * instrumented code, so all events of a trial have been handled by the
+     * time {@link #handleResult(Result, Throwable)} is invoked.</p>
+     *
+     * <p>By default, the callback provided by {@link #generateCallBack(Thread)}
+     * handles each event as soon as it is generated.</p>
+     *
+     * @param thread  the thread whose events to handle
+     * @return            a callback that handles batches of trace events
+     *                    generated by that thread
+     */
+    default Consumer<TraceEventBatch> generateBatchCallBack(Thread thread) {
+        return TraceEventBatch.forEachEvent(generateCallBack(thread));
+    }
+
     // A utility method to create an input stream given a function that generates bytes when invoked
     static InputStream createInputStream(Supplier<Integer> inputByteSource) {
         return new InputStream() {
@@ -152,6 +152,48 @@ public class StreamBackedRandom extends Random {
 
     }
 
+    /**
+     * Fills a byte array with data read from the backing source.
+     *
+     * <p>The bytes are read with a single bulk read. As in
+     * {@link Random#nextBytes(byte[])}, four bytes are consumed for each
+     * started group of four, and the unused ones are discarded.</p>
+     *
+     * @param bytes the byte array to fill
+     * @throws IllegalStateException  if EOF is reached
+     */
+    @Override
+    public void nextBytes(byte[] bytes) {
+        if (this.leadingBytesToIgnore > 0) {
+            super.nextBytes(bytes);
+            return;
+        }
+
+        int bytesToRead = (bytes.length + 3) & ~3;
+        byte[] buffer = bytesToRead == bytes.length ? bytes : new byte[bytesToRead];
+        try {
+            // As in next(), a short read means that EOF is reached
+            int actualBytesRead = Math.max(inputStream.read(buffer, 0, bytesToRead), 0);
+
+            // Count whole groups of four bytes, as next() does
+            totalBytesRead += actualBytesRead & ~3;
+
+            // If EOF was reached, throw an exception
+            if (actualBytesRead != bytesToRead) {
+                String message = String.format("EOF reached; total bytes read = %d, " +
+                                "last read got %d of %d bytes",
+                        totalBytesRead, actualBytesRead & 3, Integer.BYTES);
+                throw new IllegalStateException(new EOFException(message));
+            }
+        } catch (IOException e) {
+            throw new GuidanceException(e);
+        }
+
+        if (buffer != bytes) {
+            System.arraycopy(buffer, 0, bytes, 0, bytes.length);
+        }
+    }
+
     @Override
     public int nextInt(int bound) {
         if (bound <= 0)
@@ -33,11 +33,13 @@ import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import edu.berkeley.cs.jqf.fuzz.Fuzz;
 import edu.berkeley.cs.jqf.fuzz.JQF;
 import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
 import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.TraceLogger;
 import org.junit.internal.TextListener;
 import org.junit.runner.Description;
@@ -52,6 +54,12 @@ public class GuidedFuzzing {
 
     private static Guidance guidance;
 
+    /**
+     * The guidance of the worker running on the current thread, when fuzzing
+     * with several workers; inherited by threads that the test starts.
+     */
+    private static final InheritableThreadLocal<Guidance> workerGuidance = new InheritableThreadLocal<>();
+
     public static long DEFAULT_MAX_TRIALS = 100;
 
     /**
@@ -79,10 +87,14 @@ public class GuidedFuzzing {
     /**
      * Returns the currently registered Guidance instance.
      *
+     * <p>When fuzzing with several workers, this is the guidance of the
+     * worker running on the current thread.</p>
+     *
      * @return the currently registered Guidance instance
      */
     public static Guidance getCurrentGuidance() {
-        return guidance;
+        Guidance g = workerGuidance.get();
+        return g != null ? g : guidance;
     }
 
     /**
@@ -190,41 +202,158 @@ public class GuidedFuzzing {
                                           Guidance guidance, PrintStream out) throws IllegalStateException {
 
         // Ensure that the class uses the right test runner
-        RunWith annotation = testClass.getAnnotation(RunWith.class);
-        if (annotation == null || !(JQF.class.isAssignableFrom(annotation.value()))) {
-            throw new IllegalArgumentException(testClass.getName() + " is not annotated with @RunWith(JQF.class)");
-        }
+        checkRunWith(testClass);
 
         try {
             // Set the static guidance instance
             setGuidance(guidance);
 
             // Register callback
-            SingleSnoop.setCallbackGenerator(guidance::generateCallBack);
+            SingleSnoop.setBatchCallbackGenerator(guidance::generateBatchCallBack);
 
-            // Create a JUnit Request
-            Request testRequest = Request.method(testClass, testMethod);
+            return runTest(testClass, testMethod, out);
 
-            // Instantiate a runner (may return an error)
-            Runner testRunner = testRequest.getRunner();
+        } finally {
+            // Make sure to de-register the guidance before returning
+            unsetGuidance();
+        }
+    }
 
-            // Start tracing for the test method
-            SingleSnoop.startSnooping(testClass.getName() + "#" + testMethod);
+    /**
+     * Runs the guided fuzzing loop with several workers, each on its own
+     * thread and with its own guidance and classloader.
+     *
+     * <p>Each worker loads the test class with its own classloader, so
+     * that static state of the application is not shared between
+     * workers. Trace events of a worker thread, of threads that it
+     * starts and of tasks that it hands to executors, are passed to the
+     * worker's guidance. Guidances that should
+     * share inputs must be set up to do so before this method is invoked
+     * (e.g. see {@link edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance#setSharedCorpus}).</p>
+     *
+     * <p>This method returns once all workers have stopped fuzzing. The
+     * result contains the failures of all workers.</p>
+     *
+     * @param testClassName the test class containing the test method
+     * @param testMethod    the test method to execute in the fuzzing loop
+     * @param loaders       the classloaders to load the test class with, one per worker
+     * @param guidances     the fuzzing guidances, one per worker
+     * @param out           an output stream to log Junit messages
+     * @throws ClassNotFoundException if testClassName cannot be loaded
+     * @throws IllegalArgumentException if the number of loaders and guidances differ
+     * @throws IllegalStateException if a guided fuzzing run is currently executing
+     * @return the Junit-style test result
+     */
+    public synchronized static Result runParallel(String testClassName, String testMethod,
+                                                  List<? extends ClassLoader> loaders,
+                                                  List<? extends Guidance> guidances,
+                                                  PrintStream out) throws ClassNotFoundException, IllegalStateException {
+        if (loaders.size() != guidances.size() || loaders.isEmpty()) {
+            throw new IllegalArgumentException("Need one classloader per guidance");
+        }
+        if (guidance != null) {
+            throw new IllegalStateException("Cannot set more than one guidance simultaneously");
+        }
 
-            // Run the test
-            JUnitCore junit = new JUnitCore();
-            if (out != null) {
-                junit.addListener(new TextListener(out));
+        // Load the test classes before starting any worker
+        int numWorkers = guidances.size();
+        Class<?>[] testClasses = new Class<?>[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            testClasses[i] = Class.forName(testClassName, true, loaders.get(i));
+            checkRunWith(testClasses[i]);
+        }
+
+        // Pass events to the guidance of the worker that started the thread
+        SingleSnoop.setBatchCallbackGenerator(GuidedFuzzing::generateWorkerBatchCallBack);
+
+        Result[] results = new Result[numWorkers];
+        Throwable[] errors = new Throwable[numWorkers];
+        Thread[] workers = new Thread[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            final int worker = i;
+            workers[i] = new Thread(() -> {
+                Thread.currentThread().setContextClassLoader(loaders.get(worker));
+                workerGuidance.set(guidances.get(worker));
+                // Tasks handed to executors are traced for this worker, even on shared pools
+                SingleSnoop.setThreadBatchCallbackGenerator(guidances.get(worker)::generateBatchCallBack);
+                try {
+                    results[worker] = runTest(testClasses[worker], testMethod, out);
+                } catch (Throwable e) {
+                    errors[worker] = e;
+                } finally {
+                    workerGuidance.remove();
+                    TraceLogger.get().remove();
+                }
+            }, "jqf-worker-" + i);
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    // Workers only stop when their guidance says so
+                    interrupted = true;
+                }
             }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
-            return junit.run(testRunner);
+        // Merge results (if any worker fails, the overall result fails)
+        Result finalResult = new Result();
+        for (int i = 0; i < numWorkers; i++) {
+            if (errors[i] != null) {
+                Description description = Description.createTestDescription(testClasses[i], testMethod);
+                finalResult.getFailures().add(new Failure(description, errors[i]));
+            } else {
+                finalResult.getFailures().addAll(results[i].getFailures());
+            }
+        }
+        return finalResult;
+    }
 
-        } finally {
-            // Make sure to de-register the guidance before returning
-            unsetGuidance();
+    private static Consumer<TraceEventBatch> generateWorkerBatchCallBack(Thread thread) {
+        Guidance g = workerGuidance.get();
+        if (g == null) {
+            // A thread that was not started by any worker
+            return batch -> {};
+        }
+        return g.generateBatchCallBack(thread);
+    }
+
+    private static void checkRunWith(Class<?> testClass) {
+        RunWith annotation = testClass.getAnnotation(RunWith.class);
+        if (annotation == null || !(JQF.class.isAssignableFrom(annotation.value()))) {
+            throw new IllegalArgumentException(testClass.getName() + " is not annotated with @RunWith(JQF.class)");
         }
     }
 
+    /** Runs a test method with JUnit on the current thread, tracing it with the registered callbacks. */
+    private static Result runTest(Class<?> testClass, String testMethod, PrintStream out) {
+        // Create a JUnit Request
+        Request testRequest = Request.method(testClass, testMethod);
+
+        // Instantiate a runner (may return an error)
+        Runner testRunner = testRequest.getRunner();
+
+        // Start tracing for the test method
+        SingleSnoop.startSnooping(testClass.getName() + "#" + testMethod);
+
+        // Run the test
+        JUnitCore junit = new JUnitCore();
+        if (out != null) {
+            junit.addListener(new TextListener(out));
+        }
+
+        return junit.run(testRunner);
+    }
+
     /**
      * Runs the guided fuzzing loop for all @Fuzz methods in a test class.
      *
@@ -51,6 +51,7 @@ import edu.berkeley.cs.jqf.fuzz.junit.TrialRunner;
 import edu.berkeley.cs.jqf.fuzz.random.NoGuidance;
 import edu.berkeley.cs.jqf.fuzz.repro.ReproGuidance;
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
+import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
 import edu.berkeley.cs.jqf.fuzz.util.Observability;
 import org.junit.AssumptionViolatedException;
 import org.junit.runners.model.FrameworkMethod;
@@ -180,6 +181,16 @@ public class FuzzStatement extends Statement {
                         failures.add(e);
                     }
                 }
+
+                // Wait for trace events that are consumed on another thread (see jqf.tracing.ASYNC)
+                try {
+                    SingleSnoop.flush();
+                } catch (TimeoutException e) {
+                    if (result == SUCCESS) {
+                        result = TIMEOUT;
+                        error = e;
+                    }
+                }
                 long endTrialTime = System.currentTimeMillis();
                 if (System.getProperty("jqfObservability") != null) {
                     observability.addStatus(result);
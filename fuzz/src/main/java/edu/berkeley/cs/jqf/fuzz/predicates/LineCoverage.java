@@ -1,5 +1,7 @@
 package edu.berkeley.cs.jqf.fuzz.predicates;
 
+import edu.berkeley.cs.jqf.instrument.tracing.MethodRegistry;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
@@ -11,6 +13,8 @@ import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEventVisitor;
 
 import java.util.*;
 
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
 /**
  * Tracks line-level coverage for specific lines of interest.
  * Counts how many unique inputs hit each tracked line.
@@ -26,6 +30,17 @@ public class LineCoverage implements TraceEventVisitor {
     /** Set of lines to track (className, lineNumber) */
     private final Set<LineLocation> trackedLines;
 
+    /** Map: className -> tracked line numbers */
+    private final Map<String, IntHashSet> trackedLinesByClass = new HashMap<>();
+
+    /** Tracked line numbers by class ID, resolved when a class is first seen */
+    private IntHashSet[] trackedLinesByClassId = new IntHashSet[256];
+
+    /** Class names in dot format by class ID, for classes with tracked lines */
+    private String[] classNamesById = new String[256];
+
+    private static final IntHashSet NO_LINES = new IntHashSet();
+
     /**
      * Creates a new LineCoverage tracker.
      *
@@ -49,6 +64,10 @@ public class LineCoverage implements TraceEventVisitor {
             }
         }
 
+        for (LineLocation line : trackedLines) {
+            trackedLinesByClass.computeIfAbsent(line.className, k -> new IntHashSet()).add(line.lineNumber);
+        }
+
         System.err.println("Total tracked lines: " + trackedLines.size());
         System.err.println("Sample tracked lines: " +
             trackedLines.stream().limit(5).map(Object::toString).reduce((a,b) -> a + ", " + b).orElse("none"));
@@ -103,20 +122,34 @@ public class LineCoverage implements TraceEventVisitor {
         recordLineHit(event, "LineEvent");
     }
 
+    /**
+     * Handles an event of a batch and updates line coverage if the line
+     * is tracked.
+     *
+     * @param batch the batch of events
+     * @param i the index of the event
+     */
+    public void handleEvent(TraceEventBatch batch, int i) {
+        if (batch.kind(i) == TraceEventBatch.EVENT) {
+            handleEvent(batch.event(i));
+            return;
+        }
+        MethodRegistry.Entry method = MethodRegistry.get(batch.methodId(i));
+        recordLineHit(method == null ? 0 : method.getClassId(), batch.line(i));
+    }
+
     /**
      * Records that the current input hit a specific line.
      */
     private void recordLineHit(TraceEvent event, String eventType) {
-        String className = event.getContainingClass();
-        int lineNumber = event.getLineNumber();
-
-        // Convert to dot format for consistency
-        String classNameDot = className.replace("/", ".");
+        recordLineHit(event.getContainingClassId(), event.getLineNumber());
+    }
 
+    private void recordLineHit(int classId, int lineNumber) {
         // Only track if this line is in our targets
-        if (lineNumber > 0 && isTrackedLine(classNameDot, lineNumber)) {
+        if (classId != 0 && lineNumber > 0 && trackedLinesOf(classId).contains(lineNumber)) {
             lineInputSets
-                .computeIfAbsent(classNameDot, k -> new HashMap<>())
+                .computeIfAbsent(classNamesById[classId], k -> new HashMap<>())
                 .computeIfAbsent(lineNumber, k -> new HashSet<>())
                 .add(currentInputId);
         }
@@ -125,11 +158,24 @@ public class LineCoverage implements TraceEventVisitor {
     private int debugEventCount = 0;
 
     /**
-     * Checks if a line should be tracked.
-     * Expects className in dot format (e.g., org.jgrapht.Graphs)
+     * Returns the lines to track in a class.
+     * Class names are only converted to dot format (e.g., org.jgrapht.Graphs)
+     * the first time a class is seen.
      */
-    private boolean isTrackedLine(String className, int lineNumber) {
-        return trackedLines.contains(new LineLocation(className, lineNumber));
+    private IntHashSet trackedLinesOf(int classId) {
+        if (classId >= trackedLinesByClassId.length) {
+            int newLength = Math.max(classId + 1, trackedLinesByClassId.length * 2);
+            trackedLinesByClassId = Arrays.copyOf(trackedLinesByClassId, newLength);
+            classNamesById = Arrays.copyOf(classNamesById, newLength);
+        }
+        IntHashSet lines = trackedLinesByClassId[classId];
+        if (lines == null) {
+            String className = MethodRegistry.getClassName(classId).replace("/", ".");
+            lines = trackedLinesByClass.getOrDefault(className, NO_LINES);
+            trackedLinesByClassId[classId] = lines;
+            classNamesById[classId] = className;
+        }
+        return lines;
     }
 
     /**
@@ -3,6 +3,7 @@ package edu.berkeley.cs.jqf.fuzz.predicates;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
 
 import java.io.File;
@@ -20,7 +21,6 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.function.Consumer;
 
 /**
  * An extension of ZestGuidance that tracks line-level coverage for predicates
@@ -106,16 +106,23 @@ public class PredicateTrackingGuidance extends ZestGuidance {
     }
 
     @Override
-    public Consumer<TraceEvent> generateCallBack(Thread thread) {
-        Consumer<TraceEvent> superCallback = super.generateCallBack(thread);
+    protected void handleEvent(TraceEvent event) {
+        // First, pass to super for normal Zest coverage tracking
+        super.handleEvent(event);
 
-        return (event) -> {
-            // First, pass to super for normal Zest coverage tracking
-            superCallback.accept(event);
+        // Then track line coverage for our targets
+        lineCoverage.handleEvent(event);
+    }
 
-            // Then track line coverage for our targets
-            lineCoverage.handleEvent(event);
-        };
+    @Override
+    protected void handleEvent(TraceEventBatch batch, int i) {
+        super.handleEvent(batch, i);
+        lineCoverage.handleEvent(batch, i);
+    }
+
+    @Override
+    protected void restoreQueue(File indexFile) {
+        // Predicate coverage is only tracked for executed inputs, so always replay the corpus
     }
 
     @Override
@@ -0,0 +1,359 @@
+package edu.berkeley.cs.jqf.fuzz.repro;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
+import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing;
+import edu.berkeley.cs.jqf.fuzz.util.Counter;
+import edu.berkeley.cs.jqf.fuzz.util.Coverage;
+import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingCounter;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import janala.instrument.FastCoverageListener;
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Minimizes a corpus of inputs while preserving its coverage.
+ *
+ * <p>Every input is replayed once to collect the coverage features it
+ * exercises. A feature is a coverage key together with the bucket of its
+ * hit count (the highest one bit, as in AFL), or just the key if hit
+ * counts are ignored. Features of valid inputs are counted separately
+ * as well, so that the minimized corpus preserves valid coverage too.
+ * Inputs that fail or time out are not kept.</p>
+ *
+ * <p>The corpus is then reduced with a greedy weighted set cover: the
+ * input that covers the most new features per unit of cost is picked
+ * until all features are covered, where the cost of an input is the
+ * product of its size and its execution time. Smaller and faster inputs
+ * are therefore preferred.</p>
+ *
+ * <p>The replay can be split across several workers, each with its own
+ * guidance from {@link #newWorker()}, which take inputs from a common
+ * list until none are left. The result does not depend on which worker
+ * replays which input, up to the noise in execution times.</p>
+ */
+public class CorpusMinimizer {
+
+    private final File[] inputFiles;
+    private final boolean edgesOnly;
+
+    private final AtomicInteger nextFileIdx = new AtomicInteger();
+    private final long[][] features;
+    private final long[] lengths;
+    private final long[] times;
+    private final Result[] results;
+
+    private boolean hasFastWorker = false;
+
+    /**
+     * Creates a minimizer for a list of inputs.
+     *
+     * @param inputFiles the inputs to minimize
+     * @param edgesOnly whether to ignore hit counts and only preserve
+     *                  the covered keys
+     */
+    public CorpusMinimizer(File[] inputFiles, boolean edgesOnly) {
+        this.inputFiles = inputFiles;
+        this.edgesOnly = edgesOnly;
+        this.features = new long[inputFiles.length][];
+        this.lengths = new long[inputFiles.length];
+        this.times = new long[inputFiles.length];
+        this.results = new Result[inputFiles.length];
+    }
+
+    /**
+     * Creates a guidance that replays inputs for this minimizer.
+     *
+     * <p>Fast coverage instrumentation reports to a single listener per
+     * JVM, so only one worker can be created in that case.</p>
+     *
+     * @return a new worker guidance
+     * @throws IllegalStateException if fast coverage instrumentation is
+     *         enabled and a worker already exists
+     */
+    public synchronized Guidance newWorker() {
+        ICoverage runCoverage = CoverageFactory.newRunInstance();
+        if (runCoverage instanceof FastCoverageListener) {
+            if (hasFastWorker) {
+                throw new IllegalStateException("Fast coverage instrumentation does not support multiple workers");
+            }
+            FastCoverageSnoop.setFastCoverageListener((FastCoverageListener) runCoverage);
+            hasFastWorker = true;
+        }
+        return new Worker(runCoverage);
+    }
+
+    /**
+     * Replays all inputs, with one worker per class loader.
+     *
+     * @param testClassName the name of the test class
+     * @param testMethod the name of the test method
+     * @param loaders the class loaders of the workers
+     * @param out a stream to print JUnit failures to, or <code>null</code>
+     * @return the JUnit result of the replay
+     * @throws ClassNotFoundException if the test class could not be loaded
+     */
+    public org.junit.runner.Result replay(String testClassName, String testMethod,
+                                          List<? extends ClassLoader> loaders,
+                                          PrintStream out) throws ClassNotFoundException {
+        List<Guidance> workers = new ArrayList<>();
+        for (int i = 0; i < loaders.size(); i++) {
+            workers.add(newWorker());
+        }
+        if (workers.size() == 1) {
+            return GuidedFuzzing.run(testClassName, testMethod, loaders.get(0), workers.get(0), out);
+        } else {
+            return GuidedFuzzing.runParallel(testClassName, testMethod, loaders, workers, out);
+        }
+    }
+
+    /**
+     * Returns the number of replayed inputs that failed.
+     *
+     * @return the number of failing inputs
+     */
+    public int getNumFailures() {
+        int count = 0;
+        for (Result result : results) {
+            if (result == Result.FAILURE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of features covered by the replayed inputs.
+     *
+     * @return the number of distinct features
+     */
+    public int getNumFeatures() {
+        LongHashSet all = new LongHashSet();
+        for (long[] f : features) {
+            if (f != null) {
+                all.addAll(f);
+            }
+        }
+        return all.size();
+    }
+
+    /**
+     * Selects a minimal set of replayed inputs that covers all features.
+     *
+     * @return the selected inputs, in the order of selection
+     */
+    public List<File> minimize() {
+        double[] costs = new double[inputFiles.length];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = cost(lengths[i], times[i]);
+        }
+        List<File> selected = new ArrayList<>();
+        for (int i : cover(features, costs)) {
+            selected.add(inputFiles[i]);
+        }
+        return selected;
+    }
+
+    /**
+     * Selects a minimal set of replayed inputs and copies them to a
+     * directory, keeping their file names.
+     *
+     * @param outputDirectory the directory of the minimized corpus
+     * @return the selected inputs
+     * @throws IOException if the inputs could not be copied
+     */
+    public List<File> writeMinimizedCorpus(File outputDirectory) throws IOException {
+        IOUtils.createDirectory(outputDirectory);
+        List<File> selected = minimize();
+        for (File file : selected) {
+            Files.copy(file.toPath(), new File(outputDirectory, file.getName()).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        return selected;
+    }
+
+    /** Returns the cost of keeping an input of a given size and execution time. */
+    static double cost(long length, long nanos) {
+        return (double) Math.max(length, 1) * Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1);
+    }
+
+    /**
+     * Computes a greedy weighted set cover.
+     *
+     * <p>Since the number of new features of an input can only decrease
+     * as others are selected, candidates are kept in a priority queue
+     * ordered by their last known ratio of new features to cost, and are
+     * only re-evaluated when they reach the head of the queue. Ties are
+     * broken by cost and then by index, so the cover is deterministic.</p>
+     *
+     * @param features the features of each input, or <code>null</code>
+     *                 for inputs that must not be selected
+     * @param costs the (positive) cost of each input
+     * @return the indices of the selected inputs, in the order of selection
+     */
+    static List<Integer> cover(long[][] features, double[] costs) {
+        class Candidate {
+            final int idx;
+            int gain;
+
+            Candidate(int idx, int gain) {
+                this.idx = idx;
+                this.gain = gain;
+            }
+
+            double ratio() {
+                return gain / costs[idx];
+            }
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Double.compare(b.ratio(), a.ratio());
+            if (cmp == 0) {
+                cmp = Double.compare(costs[a.idx], costs[b.idx]);
+            }
+            return cmp != 0 ? cmp : Integer.compare(a.idx, b.idx);
+        });
+        for (int i = 0; i < features.length; i++) {
+            if (features[i] != null && features[i].length > 0) {
+                queue.add(new Candidate(i, features[i].length));
+            }
+        }
+
+        LongHashSet covered = new LongHashSet();
+        List<Integer> selected = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Candidate c = queue.poll();
+            int gain = 0;
+            for (long feature : features[c.idx]) {
+                if (!covered.contains(feature)) {
+                    gain++;
+                }
+            }
+            if (gain == c.gain) {
+                // No other candidate can do better, since gains only decrease
+                covered.addAll(features[c.idx]);
+                selected.add(c.idx);
+            } else if (gain > 0) {
+                c.gain = gain;
+                queue.add(c);
+            }
+        }
+        return selected;
+    }
+
+    /** Returns the features covered by a run, sorted and without duplicates. */
+    private long[] collectFeatures(ICoverage runCoverage, boolean valid) {
+        IntList covered = runCoverage.getCovered();
+        Counter counter = runCoverage.getCounter();
+        long[] result = new long[valid ? 2 * covered.size() : covered.size()];
+        for (int i = 0; i < covered.size(); i++) {
+            int key = covered.get(i);
+            // Non-colliding counters are keyed directly and do not support index lookups
+            int count = counter instanceof FastNonCollidingCounter ?
+                    counter.get(key) : counter.getAtIndex(key);
+            int bucket = edgesOnly ? 0 : 31 - Integer.numberOfLeadingZeros(count);
+            long feature = ((long) key << 6) | ((long) bucket << 1);
+            result[i] = feature;
+            if (valid) {
+                result[covered.size() + i] = feature | 1;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** A guidance that replays inputs and records their features. */
+    private class Worker implements Guidance {
+        private final ICoverage runCoverage;
+        private int currentIdx = -1;
+        private long startTime;
+
+        Worker(ICoverage runCoverage) {
+            this.runCoverage = runCoverage;
+        }
+
+        @Override
+        public boolean hasInput() {
+            if (currentIdx < 0) {
+                currentIdx = nextFileIdx.getAndIncrement();
+            }
+            return currentIdx < inputFiles.length;
+        }
+
+        @Override
+        public InputStream getInput() {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(inputFiles[currentIdx].toPath());
+            } catch (IOException e) {
+                throw new GuidanceException(e);
+            }
+            lengths[currentIdx] = bytes.length;
+            runCoverage.clear();
+            startTime = System.nanoTime();
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void handleResult(Result result, Throwable error) {
+            times[currentIdx] = System.nanoTime() - startTime;
+            results[currentIdx] = result;
+            if (result != Result.FAILURE && result != Result.TIMEOUT) {
+                // Coverage of an input that failed or timed out is incomplete
+                features[currentIdx] = collectFeatures(runCoverage, result == Result.SUCCESS);
+            }
+            currentIdx = -1;
+        }
+
+        @Override
+        public Consumer<TraceEvent> generateCallBack(Thread thread) {
+            return e -> {
+                if (runCoverage instanceof Coverage) {
+                    synchronized (runCoverage) {
+                        ((Coverage) runCoverage).handleEvent(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Consumer<TraceEventBatch> generateBatchCallBack(Thread thread) {
+            return batch -> {
+                if (runCoverage instanceof Coverage) {
+                    // Tests may start threads of their own
+                    synchronized (runCoverage) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            ((Coverage) runCoverage).handleEvent(batch, i);
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public String observeGuidance() {
+            return "Minimize";
+        }
+    }
+}
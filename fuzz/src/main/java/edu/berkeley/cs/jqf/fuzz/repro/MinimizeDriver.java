@@ -0,0 +1,57 @@
+package edu.berkeley.cs.jqf.fuzz.repro;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+
+/**
+ * Entry point for minimizing a corpus with {@link CorpusMinimizer}.
+ *
+ * <p>The number of replay threads is set by the system property
+ * <code>jqf.cmin.workers</code> (default 1), and hit counts are ignored
+ * if <code>jqf.cmin.edgesOnly</code> is <code>true</code>. All workers
+ * share the classes on the classpath; use the <code>jqf:minimize</code>
+ * goal to give each worker its own copy of the classes under test.</p>
+ */
+public class MinimizeDriver {
+
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: java " + MinimizeDriver.class + " TEST_CLASS TEST_METHOD INPUT_DIR OUTPUT_DIR");
+            System.exit(1);
+        }
+
+        String testClassName  = args[0];
+        String testMethodName = args[1];
+        File inputDirectory = new File(args[2]);
+        File outputDirectory = new File(args[3]);
+        int workers = Integer.getInteger("jqf.cmin.workers", 1);
+        if (workers < 1) {
+            System.err.println("Number of workers must be positive: " + workers);
+            System.exit(1);
+        }
+
+        try {
+            File[] inputFiles = IOUtils.resolveInputFileOrDirectory(inputDirectory);
+            CorpusMinimizer minimizer = new CorpusMinimizer(inputFiles, Boolean.getBoolean("jqf.cmin.edgesOnly"));
+
+            // Replay the corpus
+            List<ClassLoader> loaders = Collections.nCopies(workers, MinimizeDriver.class.getClassLoader());
+            minimizer.replay(testClassName, testMethodName, loaders, null);
+
+            // Write the minimized corpus
+            List<File> selected = minimizer.writeMinimizedCorpus(outputDirectory);
+            System.out.println(String.format("Replayed %d inputs (%d failing), covering %d features.",
+                    inputFiles.length, minimizer.getNumFailures(), minimizer.getNumFeatures()));
+            System.out.println(String.format("Wrote %d inputs to %s.",
+                    selected.size(), outputDirectory));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+
+    }
+}
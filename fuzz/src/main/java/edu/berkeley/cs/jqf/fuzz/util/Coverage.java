@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.stream.Collectors;
 
+import edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch;
 import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
@@ -93,6 +94,28 @@ public class Coverage implements TraceEventVisitor, ICoverage<Counter> {
         e.applyVisitor(this);
     }
 
+    /**
+     * Updates coverage information based on an event of a batch.
+     *
+     * @param batch the batch of events
+     * @param i the index of the event to be processed
+     */
+    public void handleEvent(TraceEventBatch batch, int i) {
+        switch (batch.kind(i)) {
+            case TraceEventBatch.BRANCH:
+                counter.increment1(batch.iid(i), batch.value(i));
+                break;
+            case TraceEventBatch.CALL:
+                counter.increment(batch.iid(i));
+                break;
+            case TraceEventBatch.EVENT:
+                handleEvent(batch.event(i));
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public void visitBranchEvent(BranchEvent b) {
         counter.increment1(b.getIid(), b.getArm());
@@ -209,6 +232,47 @@ public class Coverage implements TraceEventVisitor, ICoverage<Counter> {
         return changed;
     }
 
+    /**
+     * Evaluates this run coverage against cumulative coverage maps
+     * in a single pass over the non-zero entries of this coverage.
+     *
+     * @param total the cumulative coverage of all inputs, updated in place
+     * @param valid the cumulative coverage of valid inputs, updated in place,
+     *              or <code>null</code> if the run was not valid
+     * @param result the evaluation result to populate
+     */
+    @Override
+    public void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result) {
+        result.reset();
+        Counter totalCounter = total.getCounter();
+        Counter validCounter = valid != null ? valid.getCounter() : null;
+        IntList nonZeroIndices = counter.getNonZeroIndices();
+        for (int i = 0; i < nonZeroIndices.size(); i++) {
+            int idx = nonZeroIndices.get(i);
+            int bits = hob(counter.getAtIndex(idx));
+
+            int before = totalCounter.getAtIndex(idx);
+            if (before == 0) {
+                result.addNewEdge(idx);
+            }
+            if ((before | bits) != before) {
+                totalCounter.setAtIndex(idx, before | bits);
+                result.setNewCounts();
+            }
+
+            if (validCounter != null) {
+                int validBefore = validCounter.getAtIndex(idx);
+                if (validBefore == 0) {
+                    result.addNewValidEdge(idx);
+                }
+                if ((validBefore | bits) != validBefore) {
+                    validCounter.setAtIndex(idx, validBefore | bits);
+                    result.setNewValidCounts();
+                }
+            }
+        }
+    }
+
     /** Returns a hash code of the edge counts in the coverage map. */
     @Override
     public int hashCode() {
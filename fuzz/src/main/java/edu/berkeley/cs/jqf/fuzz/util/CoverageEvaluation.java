@@ -0,0 +1,120 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * The result of evaluating the coverage of a single run against
+ * cumulative coverage maps.
+ *
+ * <p>Instances are populated by {@link ICoverage#evaluate(ICoverage, ICoverage, CoverageEvaluation)}
+ * and are meant to be reused across runs, so that evaluating a run does not
+ * allocate once the internal lists have grown to their working size.</p>
+ */
+public class CoverageEvaluation {
+
+    /** Keys covered by the run that were not covered in the total coverage. */
+    private final IntArrayList newEdges = new IntArrayList();
+
+    /** Keys covered by the run that were not covered in the valid coverage. */
+    private final IntArrayList newValidEdges = new IntArrayList();
+
+    /** Whether the total coverage changed, including changes to count buckets only. */
+    private boolean newCounts;
+
+    /** Whether the valid coverage changed, including changes to count buckets only. */
+    private boolean newValidCounts;
+
+    /**
+     * Clears this result so that it can be populated again.
+     */
+    public void reset() {
+        newEdges.clear();
+        newValidEdges.clear();
+        newCounts = false;
+        newValidCounts = false;
+    }
+
+    /** Records a key that was not covered in the total coverage. */
+    void addNewEdge(int key) {
+        newEdges.add(key);
+    }
+
+    /** Records a key that was not covered in the valid coverage. */
+    void addNewValidEdge(int key) {
+        newValidEdges.add(key);
+    }
+
+    /** Records that the total coverage changed. */
+    void setNewCounts() {
+        newCounts = true;
+    }
+
+    /** Records that the valid coverage changed. */
+    void setNewValidCounts() {
+        newValidCounts = true;
+    }
+
+    /**
+     * Returns whether the run changed the total coverage, either by covering
+     * new edges or by hitting a known edge a different number of times.
+     *
+     * @return whether the total coverage changed
+     */
+    public boolean hasNewCounts() {
+        return newCounts;
+    }
+
+    /**
+     * Returns whether the run changed the valid coverage.
+     *
+     * @return whether the valid coverage changed
+     */
+    public boolean hasNewValidCounts() {
+        return newValidCounts;
+    }
+
+    /**
+     * Returns whether the run covered edges not in the total coverage.
+     *
+     * @return whether there are new edges
+     */
+    public boolean hasNewEdges() {
+        return newEdges.notEmpty();
+    }
+
+    /**
+     * Returns whether the run covered edges not in the valid coverage.
+     *
+     * @return whether there are new valid edges
+     */
+    public boolean hasNewValidEdges() {
+        return newValidEdges.notEmpty();
+    }
+
+    /**
+     * Returns the keys covered by the run that were not previously covered
+     * in the total coverage.
+     *
+     * <p>The returned list is owned by this object and is
+     * cleared when it is {@linkplain #reset() reset}.</p>
+     *
+     * @return the newly covered keys
+     */
+    public IntList getNewEdges() {
+        return newEdges;
+    }
+
+    /**
+     * Returns the keys covered by the run that were not previously covered
+     * in the valid coverage.
+     *
+     * <p>The returned list is owned by this object and is
+     * cleared when it is {@linkplain #reset() reset}.</p>
+     *
+     * @return the newly covered valid keys
+     */
+    public IntList getNewValidEdges() {
+        return newValidEdges;
+    }
+}
@@ -14,6 +14,12 @@ public class CoverageFactory {
     public static final String propFile = System.getProperty("janala.conf", "janala.conf");
 
     private static boolean FAST_NON_COLLIDING_COVERAGE_ENABLED;
+
+    /** Whether fast coverage should use a dense array-backed counter instead of a hash map. */
+    private static boolean FAST_NON_COLLIDING_ARRAY_COUNTER_ENABLED;
+
+    /** Whether fast coverage probes increment an inline counter region instead of calling a listener. */
+    private static boolean FAST_COVERAGE_INLINE_COUNTERS_ENABLED;
     static
     {
         Properties properties = new Properties();
@@ -25,17 +31,41 @@ public class CoverageFactory {
         }
         properties.putAll(System.getProperties());
         FAST_NON_COLLIDING_COVERAGE_ENABLED = Boolean.parseBoolean(properties.getProperty("useFastNonCollidingCoverageInstrumentation", "false"));
+        FAST_NON_COLLIDING_ARRAY_COUNTER_ENABLED = Boolean.parseBoolean(properties.getProperty("useFastNonCollidingArrayCounter", "false"));
+        FAST_COVERAGE_INLINE_COUNTERS_ENABLED = Boolean.parseBoolean(properties.getProperty("useFastCoverageInlineCounters", "false"));
     }
 
     public static ICoverage newInstance() {
         if (FAST_NON_COLLIDING_COVERAGE_ENABLED) {
+            if (FAST_NON_COLLIDING_ARRAY_COUNTER_ENABLED || FAST_COVERAGE_INLINE_COUNTERS_ENABLED) {
+                return new FastNonCollidingArrayCoverage();
+            }
             return new FastNonCollidingCoverage();
         } else {
             return new Coverage();
         }
     }
 
+    /**
+     * Creates a coverage map for collecting the coverage of a single run.
+     *
+     * <p>With inline counters, this coverage reads the counter region that
+     * instrumented code increments, so there should be only one such map.</p>
+     *
+     * @return a new run coverage map
+     */
+    public static ICoverage newRunInstance() {
+        if (FAST_NON_COLLIDING_COVERAGE_ENABLED && FAST_COVERAGE_INLINE_COUNTERS_ENABLED) {
+            return new InlineCounterCoverage();
+        }
+        return newInstance();
+    }
+
     public static AbstractExecutionIndexingState newEIState() {
+        if (FAST_NON_COLLIDING_COVERAGE_ENABLED && FAST_COVERAGE_INLINE_COUNTERS_ENABLED) {
+            throw new UnsupportedOperationException("Execution indexing requires fast coverage listeners; " +
+                    "it cannot be used with inline counters");
+        }
         if (FAST_NON_COLLIDING_COVERAGE_ENABLED) {
             return new FastExecutionIndexingState();
         } else {
@@ -0,0 +1,273 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * An immutable, compact snapshot of a coverage map.
+ *
+ * <p>Only the non-zero entries of the source coverage map are retained,
+ * as a sorted array of indices together with the bucket of each count
+ * (i.e. the position of its highest order bit). The memory used by a
+ * snapshot therefore grows with the number of covered edges rather than
+ * with the size of the coverage map, which makes it suitable for storing
+ * alongside every saved input.</p>
+ *
+ * <p>Since counts are bucketed, the count reported for an index is the
+ * highest power of two not exceeding the original count. This is exactly
+ * the information retained by {@link ICoverage#updateBits(ICoverage)}.</p>
+ */
+public class CoverageSnapshot implements ICoverage<Counter> {
+
+    /** The size of the coverage map from which this snapshot was taken. */
+    private final int size;
+
+    /** The read-only counter backing this snapshot. */
+    private final SnapshotCounter counter;
+
+    /**
+     * Creates a snapshot of the given coverage map.
+     *
+     * @param coverage the coverage map to take a snapshot of
+     */
+    public CoverageSnapshot(ICoverage coverage) {
+        this.size = coverage.size();
+        Counter source = coverage.getCounter();
+        int[] indices = coverage.getCovered().toSortedArray();
+        byte[] buckets = new byte[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int count = countAt(source, indices[i]);
+            assert (count != 0);
+            buckets[i] = (byte) (31 - Integer.numberOfLeadingZeros(count));
+        }
+        this.counter = new SnapshotCounter(indices, buckets);
+    }
+
+    /** Looks up the count of a covered entry in an arbitrary counter. */
+    static int countAt(Counter counter, int idx) {
+        // Non-colliding counters are keyed directly and do not support index lookups
+        if (counter instanceof FastNonCollidingCounter) {
+            return counter.get(idx);
+        } else {
+            return counter.getAtIndex(idx);
+        }
+    }
+
+    /**
+     * Returns the size of the coverage map from which this snapshot was taken.
+     *
+     * @return the size of the coverage map
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of edges covered.
+     *
+     * @return the number of edges with non-zero counts
+     */
+    @Override
+    public int getNonZeroCount() {
+        return counter.indices.length;
+    }
+
+    /**
+     * Returns a collection of branches that are covered, in ascending order.
+     *
+     * @return a collection of keys that are covered
+     */
+    @Override
+    public IntList getCovered() {
+        return counter.getNonZeroIndices();
+    }
+
+    /**
+     * Returns a set of edges in this coverage that don't exist in baseline
+     *
+     * @param baseline the baseline coverage
+     * @return the set of edges that do not exist in {@code baseline}
+     */
+    @Override
+    public IntList computeNewCoverage(ICoverage baseline) {
+        IntArrayList newCoverage = new IntArrayList();
+        Counter baselineCounter = baseline.getCounter();
+        for (int idx : counter.indices) {
+            if (countAt(baselineCounter, idx) == 0) {
+                newCoverage.add(idx);
+            }
+        }
+        return newCoverage;
+    }
+
+    /**
+     * Snapshots are immutable and cannot be cleared.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Coverage snapshots are immutable");
+    }
+
+    /**
+     * Snapshots are immutable and cannot be updated.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean updateBits(ICoverage that) {
+        throw new UnsupportedOperationException("Coverage snapshots are immutable");
+    }
+
+    /**
+     * Snapshots are not run coverage maps and cannot be evaluated.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result) {
+        throw new UnsupportedOperationException("Coverage snapshots cannot be evaluated as run coverage");
+    }
+
+    /** Returns a hash code of the bucketed edge counts in this snapshot. */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(counter.indices) + Arrays.hashCode(counter.buckets);
+    }
+
+    /**
+     * Returns a hash code of the list of edges that have been covered at least once.
+     *
+     * @return a hash of non-zero entries
+     */
+    @Override
+    public int nonZeroHashCode() {
+        return Arrays.hashCode(counter.indices);
+    }
+
+    @Override
+    public Counter getCounter() {
+        return counter;
+    }
+
+    /**
+     * Returns this snapshot, since snapshots are immutable.
+     *
+     * @return this snapshot
+     */
+    @Override
+    public CoverageSnapshot copy() {
+        return this;
+    }
+
+    /**
+     * @return a string representing the snapshot
+     */
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Coverage counts: \n");
+        for (int i = 0; i < counter.indices.length; i++) {
+            sb.append(counter.indices[i]);
+            sb.append("->");
+            sb.append(1 << counter.buckets[i]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A read-only {@link Counter} over sorted sparse entries.
+     *
+     * <p>Keys and indices are treated identically, since the entries
+     * of a snapshot are the already-resolved indices of its source.</p>
+     */
+    private static class SnapshotCounter extends Counter {
+
+        /** Sorted indices of non-zero entries. */
+        private final int[] indices;
+
+        /** The bucket (log2 of the highest order bit) of each count. */
+        private final byte[] buckets;
+
+        SnapshotCounter(int[] indices, byte[] buckets) {
+            super(0);
+            this.indices = indices;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        protected int incrementAtIndex(int index, int delta) {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        public int increment(int key) {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        public int increment1(int k1, int k2) {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        public int increment(int key, int delta) {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        public void setAtIndex(int idx, int value) {
+            throw new UnsupportedOperationException("Coverage snapshots are immutable");
+        }
+
+        @Override
+        public int getNonZeroSize() {
+            return indices.length;
+        }
+
+        @Override
+        public boolean hasNonZeros() {
+            return indices.length > 0;
+        }
+
+        @Override
+        public IntList getNonZeroIndices() {
+            return IntArrayList.newListWith(indices).asUnmodifiable();
+        }
+
+        @Override
+        public IntList getNonZeroValues() {
+            IntArrayList values = new IntArrayList(buckets.length);
+            for (byte bucket : buckets) {
+                values.add(1 << bucket);
+            }
+            return values;
+        }
+
+        @Override
+        public int get(int key) {
+            return getAtIndex(key);
+        }
+
+        @Override
+        public int getAtIndex(int idx) {
+            int pos = Arrays.binarySearch(indices, idx);
+            return pos >= 0 ? 1 << buckets[pos] : 0;
+        }
+    }
+}
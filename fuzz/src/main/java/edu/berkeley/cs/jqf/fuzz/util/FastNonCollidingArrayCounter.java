@@ -0,0 +1,368 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.Arrays;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * An implementation of {@link Counter} that stores counts in a growable
+ * array, indexed directly by key.
+ *
+ * <p>This counter is meant for fast (non-colliding) coverage, whose probe IDs
+ * are handed out as dense sequential integers during instrumentation. Unlike
+ * {@link FastNonCollidingCounter}, incrementing an already-covered key does
+ * not hash, allocate, or acquire a monitor; only the first increment of a key
+ * in a run (which records the key as non-zero) and resizing of the array are
+ * synchronized.</p>
+ *
+ * <p>Concurrent increments of the same key from multiple threads may be lost,
+ * which is acceptable for coverage feedback. Each non-zero key is recorded
+ * exactly once though, even if several threads increment it from zero at
+ * the same time.</p>
+ */
+public class FastNonCollidingArrayCounter extends Counter {
+
+    /** The counts, indexed by key. */
+    protected int[] counts;
+
+    /** Keys whose count is non-zero, in the order in which they were first hit. */
+    protected int[] nonZeroKeys;
+
+    /** The number of valid entries in {@link #nonZeroKeys}. */
+    protected int nonZeroCount;
+
+    /** A bit per key, set iff the key is in {@link #nonZeroKeys}. */
+    protected long[] recorded;
+
+    /**
+     * Creates a new counter.
+     *
+     * @param size the initial capacity, which grows as larger keys are seen
+     */
+    public FastNonCollidingArrayCounter(int size) {
+        super(0);
+        this.counts = new int[Math.max(size, 1)];
+        this.nonZeroKeys = new int[Math.max(size / 2, 1)];
+        this.recorded = new long[words(this.counts.length)];
+    }
+
+    /* Returns the number of words of the recorded bitmap for a given capacity */
+    private static int words(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * Returns the current capacity of this counter.
+     *
+     * @return the current capacity of this counter
+     */
+    @Override
+    public int size() {
+        return this.counts.length;
+    }
+
+    /**
+     * Clears the counter by setting all non-zero values to zero.
+     *
+     * <p>This operation is proportional to the number of non-zero
+     * keys and not to the capacity of the counter.</p>
+     */
+    @Override
+    public synchronized void clear() {
+        for (int i = 0; i < nonZeroCount; i++) {
+            int key = nonZeroKeys[i];
+            counts[key] = 0;
+            recorded[key >>> 6] = 0;
+        }
+        nonZeroCount = 0;
+    }
+
+    /**
+     * Increments the count at the given key.
+     *
+     * @param key the key whose count to increment
+     * @return the new value after incrementing the count
+     */
+    @Override
+    public int increment(int key) {
+        return increment(key, 1);
+    }
+
+    /**
+     * Increments the count at the given key by a given delta.
+     *
+     * @param key the key whose count to increment
+     * @param delta the amount to increment by
+     * @return the new value after incrementing the count
+     */
+    @Override
+    public int increment(int key, int delta) {
+        int[] counts = this.counts;
+        if (key >= counts.length) {
+            counts = ensureCapacity(key);
+        }
+        int newVal = (counts[key] += delta);
+        // A count becomes non-zero if it was incremented to delta
+        if (newVal == delta) {
+            addNonZeroKey(key);
+        }
+        return newVal;
+    }
+
+    @Override
+    public int increment1(int k1, int k2) {
+        throw new UnsupportedOperationException("This coverage is already non-colliding, please just use increment");
+    }
+
+    @Override
+    protected int incrementAtIndex(int index, int delta) {
+        return increment(index, delta);
+    }
+
+    /* Grows the counts array so that it can be indexed by key */
+    private synchronized int[] ensureCapacity(int key) {
+        if (key >= counts.length) {
+            int newLength = counts.length;
+            while (newLength <= key) {
+                newLength *= 2;
+            }
+            recorded = Arrays.copyOf(recorded, words(newLength));
+            counts = Arrays.copyOf(counts, newLength);
+        }
+        return counts;
+    }
+
+    /*
+     * Records that the count at key has just become non-zero. Several threads
+     * may see the same key become non-zero, so keys are only recorded once.
+     */
+    private synchronized void addNonZeroKey(int key) {
+        long bit = 1L << key;
+        if ((recorded[key >>> 6] & bit) != 0) {
+            return;
+        }
+        recorded[key >>> 6] |= bit;
+        if (nonZeroCount == nonZeroKeys.length) {
+            nonZeroKeys = Arrays.copyOf(nonZeroKeys, nonZeroKeys.length * 2);
+        }
+        nonZeroKeys[nonZeroCount++] = key;
+    }
+
+    /**
+     * Returns the number of keys with non-zero counts.
+     *
+     * @return the number of keys with non-zero counts
+     */
+    @Override
+    public int getNonZeroSize() {
+        return nonZeroCount;
+    }
+
+    @Override
+    public boolean hasNonZeros() {
+        return nonZeroCount > 0;
+    }
+
+    /**
+     * Returns a set of keys at which the count is non-zero.
+     *
+     * @return a set of keys at which the count is non-zero
+     */
+    @Override
+    public synchronized IntList getNonZeroIndices() {
+        return IntArrayList.newListWith(Arrays.copyOf(nonZeroKeys, nonZeroCount));
+    }
+
+    /**
+     * Returns a set of non-zero count values in this counter.
+     *
+     * @return a set of non-zero count values in this counter.
+     */
+    @Override
+    public synchronized IntList getNonZeroValues() {
+        IntArrayList values = new IntArrayList(nonZeroCount);
+        for (int i = 0; i < nonZeroCount; i++) {
+            values.add(counts[nonZeroKeys[i]]);
+        }
+        return values;
+    }
+
+    /**
+     * Retrieves the value for a given key.
+     *
+     * @param key the key to query
+     * @return the count for this key
+     */
+    @Override
+    public int get(int key) {
+        int[] counts = this.counts;
+        return key < counts.length ? counts[key] : 0;
+    }
+
+    @Override
+    public int getAtIndex(int idx) {
+        return get(idx);
+    }
+
+    @Override
+    public void setAtIndex(int idx, int value) {
+        int[] counts = this.counts;
+        if (idx >= counts.length) {
+            counts = ensureCapacity(idx);
+        }
+        int oldValue = counts[idx];
+        counts[idx] = value;
+        if (oldValue == 0 && value != 0) {
+            addNonZeroKey(idx);
+        }
+    }
+
+    /**
+     * Merges the highest-order bits of the counts in another counter into
+     * the counts of this counter.
+     *
+     * <p>Only the non-zero keys of {@code that} are visited.</p>
+     *
+     * @param that the counter whose bits to OR
+     * @return <code>true</code> iff this counter changed as a result
+     */
+    public synchronized boolean mergeBits(FastNonCollidingArrayCounter that) {
+        boolean changed = false;
+        synchronized (that) {
+            int[] thatCounts = that.counts;
+            int[] thatKeys = that.nonZeroKeys;
+            int thatNonZeroCount = that.nonZeroCount;
+            for (int i = 0; i < thatNonZeroCount; i++) {
+                int key = thatKeys[i];
+                int before = get(key);
+                int after = before | Integer.highestOneBit(thatCounts[key]);
+                if (after != before) {
+                    setAtIndex(key, after);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Merges the highest-order bits of this (run) counter into cumulative
+     * counters, recording newly covered keys in a single pass.
+     *
+     * @param total the cumulative counter of all inputs
+     * @param valid the cumulative counter of valid inputs, or <code>null</code>
+     * @param result the evaluation result to populate
+     */
+    public synchronized void evaluate(FastNonCollidingArrayCounter total, FastNonCollidingArrayCounter valid,
+                                      CoverageEvaluation result) {
+        synchronized (total) {
+            if (valid == null) {
+                evaluateLocked(total, null, result);
+            } else {
+                synchronized (valid) {
+                    evaluateLocked(total, valid, result);
+                }
+            }
+        }
+    }
+
+    /* Performs the evaluation while holding the locks of all counters involved */
+    private void evaluateLocked(FastNonCollidingArrayCounter total, FastNonCollidingArrayCounter valid,
+                                CoverageEvaluation result) {
+        for (int i = 0; i < nonZeroCount; i++) {
+            int key = nonZeroKeys[i];
+            int bits = Integer.highestOneBit(counts[key]);
+
+            int before = total.get(key);
+            if (before == 0) {
+                result.addNewEdge(key);
+            }
+            if ((before | bits) != before) {
+                total.setAtIndex(key, before | bits);
+                result.setNewCounts();
+            }
+
+            if (valid != null) {
+                int validBefore = valid.get(key);
+                if (validBefore == 0) {
+                    result.addNewValidEdge(key);
+                }
+                if ((validBefore | bits) != validBefore) {
+                    valid.setAtIndex(key, validBefore | bits);
+                    result.setNewValidCounts();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the non-zero keys of this counter whose count is zero in a baseline.
+     *
+     * @param baseline the baseline counter
+     * @return the keys covered by this counter but not by {@code baseline}
+     */
+    public synchronized IntList computeNewKeys(Counter baseline) {
+        IntArrayList newKeys = new IntArrayList();
+        for (int i = 0; i < nonZeroCount; i++) {
+            int key = nonZeroKeys[i];
+            if (baseline.get(key) == 0) {
+                newKeys.add(key);
+            }
+        }
+        return newKeys;
+    }
+
+    /**
+     * Replaces the contents of this counter with the non-zero entries of an
+     * array of counts indexed by key, such as an inline counter region.
+     *
+     * @param region the counts, indexed by key
+     * @param limit the number of entries of <code>region</code> to scan
+     */
+    public synchronized void copyFrom(int[] region, int limit) {
+        clear();
+        limit = Math.min(limit, region.length);
+        for (int key = 0; key < limit; key++) {
+            int count = region[key];
+            if (count != 0) {
+                setAtIndex(key, count);
+            }
+        }
+    }
+
+    /**
+     * Copies the contents of another counter into this counter.
+     *
+     * @param counter the counter to copy from
+     */
+    public synchronized void copyFrom(FastNonCollidingArrayCounter counter) {
+        synchronized (counter) {
+            this.counts = Arrays.copyOf(counter.counts, counter.counts.length);
+            this.nonZeroKeys = Arrays.copyOf(counter.nonZeroKeys, counter.nonZeroKeys.length);
+            this.nonZeroCount = counter.nonZeroCount;
+            this.recorded = Arrays.copyOf(counter.recorded, counter.recorded.length);
+        }
+    }
+
+    /**
+     * Returns a hash code of the non-zero counts in this counter.
+     *
+     * <p>The hash is independent of the order in which keys were hit
+     * and of the capacity of the counter.</p>
+     *
+     * @return a hash code of the non-zero counts
+     */
+    public synchronized int countsHashCode() {
+        int result = 0;
+        for (int i = 0; i < nonZeroCount; i++) {
+            int key = nonZeroKeys[i];
+            int h = key * 31 + counts[key];
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            result += h;
+        }
+        return result;
+    }
+}
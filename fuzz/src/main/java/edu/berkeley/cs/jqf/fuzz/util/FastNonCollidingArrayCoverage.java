@@ -0,0 +1,190 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import janala.instrument.FastCoverageListener;
+import org.eclipse.collections.api.list.primitive.IntList;
+
+/**
+ * Utility class to collect branch and function coverage from fast
+ * (non-colliding) coverage probes, using a dense array-backed counter.
+ *
+ * <p>This is a drop-in alternative to {@link FastNonCollidingCoverage},
+ * which can be selected by setting the property
+ * {@code useFastNonCollidingArrayCounter} to {@code true}.</p>
+ *
+ * @see FastNonCollidingArrayCounter
+ */
+public class FastNonCollidingArrayCoverage extends FastCoverageListener.Default implements ICoverage<FastNonCollidingArrayCounter> {
+
+    /** The starting size of the coverage map. */
+    private final int COVERAGE_MAP_SIZE = (1 << 8);
+
+    private final FastNonCollidingArrayCounter counter = new FastNonCollidingArrayCounter(COVERAGE_MAP_SIZE);
+
+    /** Creates a new coverage map. */
+    public FastNonCollidingArrayCoverage() {
+
+    }
+
+    /**
+     * Creates a copy of an existing coverage map.
+     *
+     */
+    @Override
+    public FastNonCollidingArrayCoverage copy() {
+        FastNonCollidingArrayCoverage ret = new FastNonCollidingArrayCoverage();
+        ret.counter.copyFrom(this.counter);
+        return ret;
+    }
+
+    /**
+     * Returns the size of the coverage map.
+     *
+     * @return the size of the coverage map
+     */
+    @Override
+    public int size() {
+        return COVERAGE_MAP_SIZE;
+    }
+
+    /**
+     * Returns the number of edges covered.
+     *
+     * @return the number of edges with non-zero counts
+     */
+    @Override
+    public int getNonZeroCount() {
+        return counter.getNonZeroSize();
+    }
+
+    /**
+     * Returns a collection of branches that are covered.
+     *
+     * @return a collection of keys that are covered
+     */
+    @Override
+    public IntList getCovered() {
+        return counter.getNonZeroIndices();
+    }
+
+    /**
+     * Returns a set of edges in this coverage that don't exist in baseline
+     *
+     * @param baseline the baseline coverage
+     * @return the set of edges that do not exist in {@code baseline}
+     */
+    @Override
+    public IntList computeNewCoverage(ICoverage baseline) {
+        return counter.computeNewKeys(baseline.getCounter());
+    }
+
+    /**
+     * Clears the coverage map.
+     */
+    @Override
+    public void clear() {
+        this.counter.clear();
+    }
+
+    /**
+     * Updates this coverage with bits from the parameter.
+     *
+     * @param that the run coverage whose bits to OR
+     *
+     * @return <code>true</code> iff <code>that</code> is not a subset
+     *         of <code>this</code>, causing <code>this</code> to change.
+     */
+    @Override
+    public boolean updateBits(ICoverage that) {
+        return this.counter.mergeBits((FastNonCollidingArrayCounter) that.getCounter());
+    }
+
+    /**
+     * Evaluates this run coverage against cumulative coverage maps
+     * in a single pass over the non-zero entries of this coverage.
+     *
+     * @param total the cumulative coverage of all inputs, updated in place
+     * @param valid the cumulative coverage of valid inputs, updated in place,
+     *              or <code>null</code> if the run was not valid
+     * @param result the evaluation result to populate
+     */
+    @Override
+    public void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result) {
+        result.reset();
+        this.counter.evaluate((FastNonCollidingArrayCounter) total.getCounter(),
+                valid != null ? (FastNonCollidingArrayCounter) valid.getCounter() : null, result);
+    }
+
+    /** Returns a hash code of the edge counts in the coverage map. */
+    @Override
+    public int hashCode() {
+        return counter.countsHashCode();
+    }
+
+    /**
+     * Returns a hash code of the list of edges that have been covered at least once.
+     *
+     * @return a hash of non-zero entries
+     */
+    @Override
+    public int nonZeroHashCode() {
+        return counter.getNonZeroIndices().hashCode();
+    }
+
+    @Override
+    public Counter getCounter() {
+        return this.counter;
+    }
+
+    /**
+     * @return a string representing the counter
+     */
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Coverage counts: \n");
+        for (int i = 0; i < counter.size(); i++) {
+            if (counter.get(i) == 0) {
+                continue;
+            }
+            sb.append(i);
+            sb.append("->");
+            sb.append(counter.get(i));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void logMethodBegin(int iid) {
+        counter.increment(iid);
+    }
+
+    @Override
+    public void logJump(int iid, int branch) {
+        counter.increment(iid + branch);
+    }
+
+    @Override
+    public void logLookUpSwitch(int value, int iid, int dflt, int[] cases) {
+        // Compute arm index or else default
+        int arm = cases.length;
+        for (int i = 0; i < cases.length; i++) {
+            if (value == cases[i]) {
+                arm = i;
+                break;
+            }
+        }
+        arm++;
+        counter.increment(iid + arm);
+    }
+
+    @Override
+    public void logTableSwitch(int value, int iid, int min, int max, int dflt) {
+        int arm = 1 + max - min;
+        if (value >= min && value <= max) {
+            arm = value - min;
+        }
+        arm++;
+        counter.increment(iid + arm);
+    }
+}
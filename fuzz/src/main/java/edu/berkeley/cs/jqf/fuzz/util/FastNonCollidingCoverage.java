@@ -188,6 +188,64 @@ public class FastNonCollidingCoverage extends FastCoverageListener.Default imple
         return changed;
     }
 
+    /**
+     * Evaluates this run coverage against cumulative coverage maps
+     * in a single pass over the non-zero entries of this coverage.
+     *
+     * @param total the cumulative coverage of all inputs, updated in place
+     * @param valid the cumulative coverage of valid inputs, updated in place,
+     *              or <code>null</code> if the run was not valid
+     * @param result the evaluation result to populate
+     */
+    public void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result) {
+        result.reset();
+        FastNonCollidingCounter totalCounter = (FastNonCollidingCounter) total.getCounter();
+        FastNonCollidingCounter validCounter = valid != null ? (FastNonCollidingCounter) valid.getCounter() : null;
+        synchronized (this.counter) {
+            synchronized (totalCounter) {
+                if (validCounter == null) {
+                    evaluateLocked(totalCounter, null, result);
+                } else {
+                    synchronized (validCounter) {
+                        evaluateLocked(totalCounter, validCounter, result);
+                    }
+                }
+            }
+        }
+    }
+
+    /* Performs the evaluation while holding the locks of all counters involved */
+    private void evaluateLocked(FastNonCollidingCounter totalCounter, FastNonCollidingCounter validCounter,
+                                CoverageEvaluation result) {
+        IntArrayList nonZeroKeys = this.counter.nonZeroKeys;
+        for (int i = 0; i < nonZeroKeys.size(); i++) {
+            int key = nonZeroKeys.get(i);
+            int bits = hob(this.counter.counts.get(key));
+
+            int before = totalCounter.counts.get(key);
+            if (before == 0) {
+                totalCounter.nonZeroKeys.add(key);
+                result.addNewEdge(key);
+            }
+            if ((before | bits) != before) {
+                totalCounter.counts.put(key, before | bits);
+                result.setNewCounts();
+            }
+
+            if (validCounter != null) {
+                int validBefore = validCounter.counts.get(key);
+                if (validBefore == 0) {
+                    validCounter.nonZeroKeys.add(key);
+                    result.addNewValidEdge(key);
+                }
+                if ((validBefore | bits) != validBefore) {
+                    validCounter.counts.put(key, validBefore | bits);
+                    result.setNewValidCounts();
+                }
+            }
+        }
+    }
+
     /** Returns a hash code of the edge counts in the coverage map. */
     @Override
     public int hashCode() {
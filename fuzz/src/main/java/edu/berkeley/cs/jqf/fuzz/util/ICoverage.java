@@ -47,6 +47,22 @@ public interface ICoverage<T extends Counter> {
      */
     boolean updateBits(ICoverage that);
 
+    /**
+     * Evaluates this run coverage against cumulative coverage maps
+     * in a single pass over the non-zero entries of this coverage.
+     *
+     * <p>The effect on {@code total} and {@code valid} is the same as
+     * calling {@link #updateBits(ICoverage)} on each of them with this
+     * coverage; additionally, the keys that were not covered before the
+     * update are recorded in {@code result}, which is reset first.</p>
+     *
+     * @param total the cumulative coverage of all inputs, updated in place
+     * @param valid the cumulative coverage of valid inputs, updated in place,
+     *              or <code>null</code> if the run was not valid
+     * @param result the evaluation result to populate
+     */
+    void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result);
+
     /**
      * Returns a hash code of the list of edges that have been covered at least once.
      *
@@ -0,0 +1,105 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.Arrays;
+
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import janala.instrument.ProbeReconstructionTable;
+import org.eclipse.collections.api.list.primitive.IntList;
+
+/**
+ * Run coverage backed by the inline counter region of {@link FastCoverageSnoop},
+ * which instrumented code increments directly when the property
+ * {@code useFastCoverageInlineCounters} is set.
+ *
+ * <p>Clearing this coverage zeroes the region. The counts of a run are
+ * collected from the region the first time this coverage is queried
+ * after being cleared, i.e. once the run has finished, and are then
+ * served from a {@link FastNonCollidingArrayCounter} like
+ * {@link FastNonCollidingArrayCoverage}. The counts of probes that were
+ * pruned during instrumentation are first reconstructed in the region
+ * using the {@link ProbeReconstructionTable}.</p>
+ *
+ * <p>There is a single region per JVM, so only one instance of this
+ * class should be used, and only for the coverage of a single run.</p>
+ */
+public class InlineCounterCoverage extends FastNonCollidingArrayCoverage {
+
+    /** Whether the region has been collected since the last clear. */
+    private boolean collected = false;
+
+    /* Copies the counts of the current run from the region, if not yet done */
+    private void collect() {
+        if (!collected) {
+            int[] region = FastCoverageSnoop.COUNTERS;
+            ProbeReconstructionTable.instance.reconstruct(region);
+            ((FastNonCollidingArrayCounter) super.getCounter())
+                    .copyFrom(region, FastCoverageSnoop.getCounterLimit());
+            collected = true;
+        }
+    }
+
+    /**
+     * Clears the coverage map and the inline counter region.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        int[] region = FastCoverageSnoop.COUNTERS;
+        Arrays.fill(region, 0, Math.min(FastCoverageSnoop.getCounterLimit(), region.length), 0);
+        collected = false;
+    }
+
+    @Override
+    public FastNonCollidingArrayCoverage copy() {
+        collect();
+        return super.copy();
+    }
+
+    @Override
+    public int getNonZeroCount() {
+        collect();
+        return super.getNonZeroCount();
+    }
+
+    @Override
+    public IntList getCovered() {
+        collect();
+        return super.getCovered();
+    }
+
+    @Override
+    public IntList computeNewCoverage(ICoverage baseline) {
+        collect();
+        return super.computeNewCoverage(baseline);
+    }
+
+    @Override
+    public void evaluate(ICoverage total, ICoverage valid, CoverageEvaluation result) {
+        collect();
+        super.evaluate(total, valid, result);
+    }
+
+    @Override
+    public int hashCode() {
+        collect();
+        return super.hashCode();
+    }
+
+    @Override
+    public int nonZeroHashCode() {
+        collect();
+        return super.nonZeroHashCode();
+    }
+
+    @Override
+    public Counter getCounter() {
+        collect();
+        return super.getCounter();
+    }
+
+    @Override
+    public String toString() {
+        collect();
+        return super.toString();
+    }
+}
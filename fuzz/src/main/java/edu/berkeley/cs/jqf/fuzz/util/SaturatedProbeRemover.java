@@ -0,0 +1,126 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import janala.instrument.RemovedProbes;
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+/**
+ * A policy that removes fast coverage probes whose coverage is saturated,
+ * so that executions stop paying for probes that no longer guide fuzzing.
+ *
+ * <p>Every {@code checkInterval} trials, the count bits of each covered
+ * edge in the total coverage are compared with those seen at the previous
+ * check. An edge whose bits have not changed for {@code stableChecks}
+ * consecutive checks is considered saturated, and its probe is removed
+ * from the running classes by {@link RemovedProbes}. Retransforming the
+ * classes happens on a background thread, so fuzzing is not paused while
+ * they are re-instrumented.</p>
+ *
+ * <p>A removed probe is never hit again. It remains covered in the total
+ * coverage, so inputs that are responsible for it keep their
+ * responsibility, but no later input can add new count bits for it.</p>
+ */
+public class SaturatedProbeRemover {
+
+    private final long checkInterval;
+    private final int stableChecks;
+
+    /** Count bits of each edge at the last check. */
+    private int[] lastBits = new int[0];
+
+    /** Number of consecutive checks for which each edge's bits were unchanged. */
+    private int[] unchangedChecks = new int[0];
+
+    private long trialsSinceCheck = 0;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "jqf-probe-remover");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<Integer> pending;
+
+    /**
+     * Creates a new policy.
+     *
+     * @param checkInterval the number of trials between checks
+     * @param stableChecks the number of checks for which an edge's count
+     *                     bits must be unchanged for it to be saturated
+     */
+    public SaturatedProbeRemover(long checkInterval, int stableChecks) {
+        this.checkInterval = checkInterval;
+        this.stableChecks = stableChecks;
+    }
+
+    /**
+     * Returns whether probes can be removed in this JVM.
+     *
+     * @return <code>true</code> iff classes are instrumented with inline
+     *         counters by an agent that can retransform them
+     */
+    public static boolean isSupported() {
+        return RemovedProbes.isSupported();
+    }
+
+    /**
+     * Records that a trial has completed, and removes saturated probes
+     * every {@code checkInterval} trials.
+     *
+     * @param totalCoverage the total coverage of all trials so far
+     */
+    public void afterTrial(ICoverage totalCoverage) {
+        if (++trialsSinceCheck < checkInterval) {
+            return;
+        }
+        trialsSinceCheck = 0;
+        if (pending != null && !pending.isDone()) {
+            return; // Still retransforming the previous batch
+        }
+
+        Counter counter = totalCoverage.getCounter();
+        IntList covered = totalCoverage.getCovered();
+        IntArrayList saturated = new IntArrayList();
+        for (int i = 0; i < covered.size(); i++) {
+            int key = covered.get(i);
+            if (key >= lastBits.length) {
+                int newLength = Math.max(key + 1, lastBits.length * 2);
+                lastBits = Arrays.copyOf(lastBits, newLength);
+                unchangedChecks = Arrays.copyOf(unchangedChecks, newLength);
+            }
+            int bits = counter.get(key);
+            if (bits != lastBits[key]) {
+                lastBits[key] = bits;
+                unchangedChecks[key] = 0;
+            } else if (++unchangedChecks[key] == stableChecks) {
+                saturated.add(key);
+            }
+        }
+
+        if (!saturated.isEmpty()) {
+            removeProbes(saturated.toArray());
+        }
+    }
+
+    /**
+     * Removes saturated probes from the running classes, in the background.
+     *
+     * @param probes the IDs of the probes whose coverage is saturated
+     */
+    protected void removeProbes(int[] probes) {
+        pending = executor.submit(() -> RemovedProbes.remove(probes));
+    }
+
+    /**
+     * Returns the number of probes that have been removed.
+     *
+     * @return the number of removed probes
+     */
+    public int getNumRemoved() {
+        return RemovedProbes.get().cardinality();
+    }
+}
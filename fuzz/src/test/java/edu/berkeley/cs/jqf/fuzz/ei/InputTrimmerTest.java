@@ -0,0 +1,62 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class InputTrimmerTest {
+
+    private static byte[] range(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testRemovesChunks() {
+        InputTrimmer trimmer = new InputTrimmer(range(128));
+        byte[] candidate = trimmer.next();
+        assertEquals(120, candidate.length);
+        assertEquals(8, candidate[0]);
+
+        trimmer.reject();
+        candidate = trimmer.next();
+        assertEquals(120, candidate.length);
+        assertEquals(7, candidate[7]);
+        assertEquals(16, candidate[8]);
+    }
+
+    @Test
+    public void testKeepContinuesFromSmallerInput() {
+        InputTrimmer trimmer = new InputTrimmer(range(128));
+        byte[] candidate = trimmer.next();
+        trimmer.keep(candidate);
+        candidate = trimmer.next();
+        assertEquals(112, candidate.length);
+        assertEquals(16, candidate[0]);
+        assertEquals(128, trimmer.getOriginalLength());
+    }
+
+    @Test
+    public void testHalvesChunksUntilDone() {
+        InputTrimmer trimmer = new InputTrimmer(range(16));
+        int numCandidates = 0;
+        for (byte[] candidate = trimmer.next(); candidate != null; candidate = trimmer.next()) {
+            assertEquals(12, candidate.length);
+            trimmer.reject();
+            numCandidates++;
+        }
+        assertEquals(4, numCandidates);
+    }
+
+    @Test
+    public void testNeverEmpty() {
+        InputTrimmer trimmer = new InputTrimmer(range(3));
+        assertNull(trimmer.next());
+    }
+}
@@ -0,0 +1,152 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import edu.berkeley.cs.jqf.fuzz.util.CoverageFactory;
+import edu.berkeley.cs.jqf.fuzz.util.FastNonCollidingArrayCoverage;
+import edu.berkeley.cs.jqf.fuzz.util.ICoverage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class QueueIndexTest {
+
+    private static ICoverage coverage(int... keysAndValues) {
+        ICoverage coverage = CoverageFactory.newInstance();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            coverage.getCounter().setAtIndex(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return coverage;
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        QueueIndex index = new QueueIndex("guidance", coverage(3, 1, 7, 6), coverage(3, 1));
+        byte[] bytes = {1, 2, 3, 4};
+        index.add(0, bytes, 3, true, 2, 1, new int[]{3, 7});
+        index.add(5, bytes, 4, false, 1, 0, new int[0]);
+
+        File file = new File(Files.createTempDirectory("fuzz-out").toFile(), QueueIndex.FILE_NAME);
+        index.write(file);
+        QueueIndex read = QueueIndex.read(file);
+
+        assertEquals(2, read.entries.size());
+        QueueIndex.Entry first = read.entries.get(0);
+        assertEquals(0, first.id);
+        assertTrue(first.favored);
+        assertEquals(2, first.nonZeroCoverage);
+        assertEquals(1, first.offspring);
+        assertArrayEquals(new int[]{3, 7}, first.responsibilities);
+        assertTrue(first.matches(new byte[]{1, 2, 3}));
+        assertFalse(first.matches(bytes));
+        assertEquals(5, read.entries.get(1).id);
+        assertTrue(read.entries.get(1).matches(bytes));
+
+        ICoverage total = CoverageFactory.newInstance();
+        ICoverage valid = CoverageFactory.newInstance();
+        read.restoreCoverage(total, valid);
+        assertEquals(2, total.getNonZeroCount());
+        assertEquals(6, total.getCounter().getAtIndex(7));
+        assertEquals(1, valid.getNonZeroCount());
+    }
+
+    @Test
+    public void testProbeIdsBeyondInitialCapacityAreRestored() throws IOException {
+        ICoverage coverage = new FastNonCollidingArrayCoverage();
+        coverage.getCounter().setAtIndex(3, 1);
+        coverage.getCounter().setAtIndex(1000, 4);
+        QueueIndex index = new QueueIndex("guidance", coverage, new FastNonCollidingArrayCoverage());
+
+        File file = new File(Files.createTempDirectory("fuzz-out").toFile(), QueueIndex.FILE_NAME);
+        index.write(file);
+
+        // A fresh map has not grown to hold the probe yet
+        ICoverage total = new FastNonCollidingArrayCoverage();
+        assertTrue(total.getCounter().size() <= 1000);
+        QueueIndex.read(file).restoreCoverage(total, new FastNonCollidingArrayCoverage());
+        assertEquals(2, total.getNonZeroCount());
+        assertEquals(4, total.getCounter().getAtIndex(1000));
+    }
+
+    @Test
+    public void testCheckCompatible() throws IOException {
+        QueueIndex index = new QueueIndex("guidance", coverage(), coverage());
+        ClassLoader loader = getClass().getClassLoader();
+        assertNull(index.checkCompatible("guidance", index.mapSize, loader));
+        assertNotNull(index.checkCompatible("other", index.mapSize, loader));
+        assertNotNull(index.checkCompatible("guidance", index.mapSize + 1, loader));
+    }
+
+    /* Writes an index and returns its bytes, to be corrupted */
+    private static byte[] indexBytes(File file) throws IOException {
+        QueueIndex index = new QueueIndex("guidance", coverage(3, 1), coverage(3, 1));
+        index.add(0, new byte[]{1, 2}, 2, true, 1, 0, new int[]{3});
+        index.write(file);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static void assertCorrupt(File file, byte[] bytes) throws IOException {
+        Files.write(file.toPath(), bytes);
+        try {
+            QueueIndex.read(file);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt queue index"));
+        }
+    }
+
+    @Test
+    public void testCorruptedLengthsAreRejected() throws IOException {
+        File file = new File(Files.createTempDirectory("fuzz-out").toFile(), QueueIndex.FILE_NAME);
+        byte[] bytes = indexBytes(file);
+        // The valid coverage is last: 4-byte key count, key 3, 4-byte count count, count 1
+        int keyCount = bytes.length - 16;
+        assertEquals(1, ByteBuffer.wrap(bytes, keyCount, 4).getInt());
+
+        for (int length : new int[]{-1, 2, Integer.MAX_VALUE}) {
+            byte[] corrupted = bytes.clone();
+            ByteBuffer.wrap(corrupted, keyCount, 4).putInt(length);
+            assertCorrupt(file, corrupted);
+        }
+
+        // The number of entries precedes the entry (33 bytes) and both coverage maps
+        int numEntries = bytes.length - 32 - 33 - 4;
+        assertEquals(1, ByteBuffer.wrap(bytes, numEntries, 4).getInt());
+        byte[] corrupted = bytes.clone();
+        ByteBuffer.wrap(corrupted, numEntries, 4).putInt(Integer.MAX_VALUE);
+        assertCorrupt(file, corrupted);
+    }
+
+    @Test
+    public void testKeysOutOfRangeAreNotRestored() throws IOException {
+        QueueIndex index = new QueueIndex("guidance", coverage(3, 1), coverage());
+        File file = new File(Files.createTempDirectory("fuzz-out").toFile(), QueueIndex.FILE_NAME);
+        index.write(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // The total coverage comes before the empty valid coverage: key count, key 3, count count, count 1
+        ByteBuffer.wrap(bytes, bytes.length - 8 - 12, 4).putInt(Integer.MAX_VALUE);
+        Files.write(file.toPath(), bytes);
+
+        QueueIndex read = QueueIndex.read(file);
+        ICoverage total = CoverageFactory.newInstance();
+        try {
+            read.restoreCoverage(total, CoverageFactory.newInstance());
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, total.getNonZeroCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadGarbage() throws IOException {
+        File file = Files.createTempFile("queue", "index").toFile();
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        QueueIndex.read(file);
+    }
+}
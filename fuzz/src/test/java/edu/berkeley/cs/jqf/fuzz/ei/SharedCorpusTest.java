@@ -0,0 +1,120 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SharedCorpusTest {
+
+    @Test
+    public void testOfferOnlyPublishesNewCoverage() {
+        SharedCorpus corpus = new SharedCorpus(2);
+        assertTrue(corpus.offer(0, 0, new byte[]{1}, IntLists.immutable.of(1, 2), false));
+        assertFalse(corpus.offer(1, 0, new byte[]{2}, IntLists.immutable.of(2, 1), false));
+        assertTrue(corpus.offer(1, 1, new byte[]{3}, IntLists.immutable.of(2, 3), false));
+
+        assertEquals(2, corpus.size());
+        assertEquals(1, corpus.get(1).getWorker());
+        assertEquals(1, corpus.get(1).getId());
+        assertArrayEquals(new byte[]{3}, corpus.get(1).getBytes());
+        assertEquals(3, corpus.getNonZeroCount());
+        assertEquals(0, corpus.getNonZeroValidCount());
+    }
+
+    @Test
+    public void testOfferPublishesNewValidCoverage() {
+        SharedCorpus corpus = new SharedCorpus(2);
+        corpus.offer(0, 0, new byte[]{1}, IntLists.immutable.of(1), false);
+        assertTrue(corpus.offer(1, 0, new byte[]{1}, IntLists.immutable.of(1), true));
+        assertEquals(1, corpus.getNonZeroCount());
+        assertEquals(1, corpus.getNonZeroValidCount());
+    }
+
+    @Test
+    public void testImportSkipsOwnInputs() throws Exception {
+        SharedCorpus corpus = new SharedCorpus(2);
+        ZestGuidance g = new ZestGuidance("test", null, null,
+                Files.createTempDirectory("fuzz-out").toFile(), new Random(42));
+        g.setSharedCorpus(corpus, 1);
+        corpus.offer(0, 7, new byte[]{1, 2}, IntLists.immutable.of(1), true);
+        corpus.offer(1, 0, new byte[]{3}, IntLists.immutable.of(2), true);
+
+        g.importSharedInputs();
+        assertEquals(1, g.seedInputs.size());
+        assertEquals("sync:0/000007", g.seedInputs.peek().desc);
+        assertEquals(2, g.seedInputs.peek().size());
+
+        // Inputs are only imported once
+        g.importSharedInputs();
+        assertEquals(1, g.seedInputs.size());
+    }
+
+    @Test
+    public void testKeysOfDistantPages() {
+        SharedCorpus corpus = new SharedCorpus(2);
+        assertTrue(corpus.offer(0, 0, new byte[]{1}, IntLists.immutable.of(0, 63, 64, 65_536, Integer.MAX_VALUE), true));
+        assertFalse(corpus.offer(1, 0, new byte[]{1}, IntLists.immutable.of(Integer.MAX_VALUE, 64), true));
+        assertTrue(corpus.offer(1, 1, new byte[]{1}, IntLists.immutable.of(65_537), true));
+        assertEquals(6, corpus.getNonZeroCount());
+        assertEquals(6, corpus.getNonZeroValidCount());
+    }
+
+    @Test
+    public void testConcurrentOffersCountEachKeyOnce() throws Exception {
+        int numWorkers = 4;
+        int numKeys = 10_000;
+        SharedCorpus corpus = new SharedCorpus(numWorkers);
+        Thread[] workers = new Thread[numWorkers];
+        for (int w = 0; w < numWorkers; w++) {
+            final int worker = w;
+            workers[w] = new Thread(() -> {
+                for (int key = 0; key < numKeys; key++) {
+                    corpus.offer(worker, key, new byte[0], IntLists.immutable.of(key), false);
+                }
+            });
+            workers[w].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(numKeys, corpus.getNonZeroCount());
+        assertEquals(numKeys, corpus.size());
+
+        // Each key was published by exactly one worker, across several pages of entries
+        boolean[] published = new boolean[numKeys];
+        for (int i = 0; i < corpus.size(); i++) {
+            int key = corpus.get(i).getId();
+            assertFalse(published[key]);
+            published[key] = true;
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetBeyondSize() {
+        SharedCorpus corpus = new SharedCorpus(2);
+        corpus.offer(0, 0, new byte[]{1}, IntLists.immutable.of(1), false);
+        corpus.get(1);
+    }
+
+    @Test
+    public void testWorkerDirectoriesAreSiblings() {
+        File out = new File("target", "fuzz-results");
+        assertSame(out, SharedCorpus.getWorkerDirectory(out, 0));
+        File worker = SharedCorpus.getWorkerDirectory(out, 2);
+        assertEquals("fuzz-results-worker-2", worker.getName());
+        assertEquals(out.getAbsoluteFile().getParentFile(), worker.getParentFile());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoWorkers() {
+        new SharedCorpus(0);
+    }
+}
@@ -0,0 +1,375 @@
+package edu.berkeley.cs.jqf.fuzz.ei;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.LinearInput;
+import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance.SeedInput;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.fuzz.guidance.TimeoutException;
+import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceLogger;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ZestGuidanceTest {
+
+    private Random r;
+    private ZestGuidance g;
+
+    @Before
+    public void createGuidanceInstance() throws IOException {
+        r = new Random(42);
+        g = new ZestGuidance("test", null, null, Files.createTempDirectory("fuzz-out").toFile(), r);
+    }
+
+    private LinearInput generate(int size) {
+        LinearInput input = g.new LinearInput();
+        for (int i = 0; i < size; i++) {
+            int value = input.getOrGenerateFresh(i, r);
+            assertTrue(value >= 0 && value < 256);
+        }
+        input.gc();
+        return input;
+    }
+
+    private static List<Integer> values(LinearInput input) {
+        List<Integer> values = new ArrayList<>();
+        for (Integer b : input) {
+            values.add(b);
+        }
+        return values;
+    }
+
+    @Test
+    public void testGetOrGenerateFresh() {
+        LinearInput input = g.new LinearInput();
+        int b0 = input.getOrGenerateFresh(0, r);
+        int b1 = input.getOrGenerateFresh(1, r);
+        assertEquals(2, input.size());
+
+        LinearInput clone = g.new LinearInput(input);
+        assertEquals(b0, clone.getOrGenerateFresh(0, r));
+        assertEquals(b1, clone.getOrGenerateFresh(1, r));
+        assertEquals(2, clone.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOutOfOrder() {
+        LinearInput input = g.new LinearInput();
+        input.getOrGenerateFresh(1, r);
+    }
+
+    @Test
+    public void testGc() {
+        LinearInput input = g.new LinearInput();
+        for (int i = 0; i < 100; i++) {
+            input.getOrGenerateFresh(i, r);
+        }
+        LinearInput clone = g.new LinearInput(input);
+        int b0 = clone.getOrGenerateFresh(0, r);
+        clone.getOrGenerateFresh(1, r);
+        clone.gc();
+
+        assertEquals(2, clone.size());
+        assertEquals(b0, clone.get(0));
+        assertEquals(100, input.size());
+    }
+
+    @Test
+    public void testFuzzDoesNotModifyParent() {
+        LinearInput parent = generate(1000);
+        List<Integer> before = values(parent);
+
+        for (int i = 0; i < 100; i++) {
+            LinearInput child = (LinearInput) parent.fuzz(r);
+            assertEquals(parent.size(), child.size());
+
+            // Fresh bytes of the child must not leak into the parent's buffer either
+            for (int k = 0; k < 10; k++) {
+                child.getOrGenerateFresh(k, r);
+            }
+        }
+        assertEquals(before, values(parent));
+    }
+
+    @Test
+    public void testAppendToClone() {
+        LinearInput parent = generate(10);
+        LinearInput clone = g.new LinearInput(parent);
+        for (int i = 0; i < 20; i++) {
+            clone.getOrGenerateFresh(i, r);
+        }
+        assertEquals(20, clone.size());
+        assertEquals(10, parent.size());
+        assertEquals(values(parent), values(clone).subList(0, 10));
+    }
+
+    @Test
+    public void testBulkReadMatchesSingleReads() {
+        LinearInput parent = generate(100);
+        LinearInput single = (LinearInput) parent.fuzz(new Random(7));
+        LinearInput bulk = (LinearInput) parent.fuzz(new Random(7));
+        Random r1 = new Random(9);
+        Random r2 = new Random(9);
+
+        // Read past the end of the input, so that fresh bytes are generated
+        byte[] expected = new byte[300];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) single.getOrGenerateFresh(i, r1);
+        }
+        byte[] actual = new byte[300];
+        assertEquals(50, bulk.getOrGenerateFresh(0, actual, 0, 50, r2));
+        assertEquals(250, bulk.getOrGenerateFresh(50, actual, 50, 250, r2));
+
+        assertArrayEquals(expected, actual);
+        assertEquals(single.size(), bulk.size());
+        assertEquals(r1.nextInt(), r2.nextInt());
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        LinearInput input = generate(300);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        input.writeTo(out);
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(300, bytes.length);
+        List<Integer> values = values(input);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals((int) values.get(i), bytes[i] & 0xFF);
+        }
+    }
+
+    @Test
+    public void testSyncOnlyReadsNewFiles() throws IOException {
+        File syncDir = Files.createTempDirectory("fuzz-sync").toFile();
+        ZestGuidance self = new ZestGuidance("test", null, null, new File(syncDir, "self"), r);
+        self.setSyncDirectory(syncDir);
+        File otherCorpus = new File(syncDir, "other/corpus");
+        assertTrue(otherCorpus.mkdirs());
+        Files.write(new File(otherCorpus, "id_000000").toPath(), new byte[]{1, 2, 3});
+        Files.write(new File(otherCorpus, "id_000001").toPath(), new byte[]{4});
+
+        self.syncInputs();
+        assertEquals(2, self.seedInputs.size());
+        assertEquals("sync:other/000000", self.seedInputs.peekFirst().desc);
+        assertEquals(3, self.seedInputs.peekFirst().size());
+        assertEquals("sync:other/000001", self.seedInputs.peekLast().desc);
+
+        // Own corpus and already imported files are skipped
+        new File(syncDir, "self/corpus/id_000000").createNewFile();
+        Files.write(new File(otherCorpus, "id_000002").toPath(), new byte[]{5});
+        self.seedInputs.clear();
+        self.syncInputs();
+        assertEquals(1, self.seedInputs.size());
+        assertEquals("sync:other/000002", self.seedInputs.peek().desc);
+    }
+
+    @Test
+    public void testSyncRestartsWithRestartedInstance() throws IOException {
+        File syncDir = Files.createTempDirectory("fuzz-sync").toFile();
+        ZestGuidance self = new ZestGuidance("test", null, null, new File(syncDir, "self"), r);
+        self.setSyncDirectory(syncDir);
+        File otherDir = new File(syncDir, "other");
+        new ZestGuidance("test", null, null, otherDir, r);
+        Files.write(new File(otherDir, "corpus/id_000000").toPath(), new byte[]{1});
+        Files.write(new File(otherDir, "corpus/id_000001").toPath(), new byte[]{2});
+        self.syncInputs();
+        assertEquals(2, self.seedInputs.size());
+
+        // The restarted instance clears its corpus and saves new inputs from ID 0
+        new ZestGuidance("test", null, null, otherDir, r);
+        Files.write(new File(otherDir, "corpus/id_000000").toPath(), new byte[]{3, 4});
+        self.seedInputs.clear();
+        self.syncInputs();
+        assertEquals(1, self.seedInputs.size());
+        assertEquals("sync:other/000000", self.seedInputs.peek().desc);
+        assertEquals(2, self.seedInputs.peek().size());
+    }
+
+    @Test
+    public void testInputIsWrittenWithoutTemporaryFile() throws IOException {
+        File dir = Files.createTempDirectory("fuzz-corpus").toFile();
+        File saveFile = new File(dir, "id_000000");
+        Files.write(saveFile.toPath(), new byte[]{9, 9, 9});
+        g.currentInput = g.new LinearInput(new byte[]{1, 2});
+        g.writeCurrentInputToFile(saveFile);
+        assertArrayEquals(new byte[]{1, 2}, Files.readAllBytes(saveFile.toPath()));
+        assertArrayEquals(new String[]{"id_000000"}, dir.list());
+    }
+
+    /* Emits branch events on a new thread, whose tracer's callback is supplied by the guidance */
+    private static Throwable emitOnOtherThread(ZestGuidance guidance, int events) throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            SingleSnoop.setThreadBatchCallbackGenerator(guidance::generateBatchCallBack);
+            SingleSnoop.unblock();
+            try {
+                for (int i = 0; i < events; i++) {
+                    TraceLogger.get().emit(new BranchEvent(i, null, 0, 0));
+                }
+                SingleSnoop.flush();
+            } catch (Throwable e) {
+                failure.set(e);
+            } finally {
+                TraceLogger.get().remove();
+            }
+        });
+        other.start();
+        other.join();
+        return failure.get();
+    }
+
+    @Test
+    public void testOtherThreadEventsAreMergedAtTheResult() throws Exception {
+        g.generateBatchCallBack(Thread.currentThread());
+        g.getInput().read();
+        assertNull(emitOnOtherThread(g, 3));
+
+        // Handed off without locking, and merged once the run is over
+        assertFalse(g.multiThreaded);
+        assertEquals(0, g.runCoverage.getNonZeroCount());
+        g.handleResult(Result.SUCCESS, null);
+        assertEquals(3, g.totalCoverage.getNonZeroCount());
+    }
+
+    @Test
+    public void testOtherThreadEventsAreCheckedForTimeouts() throws Exception {
+        g.generateBatchCallBack(Thread.currentThread());
+        g.singleRunTimeoutMillis = 1;
+        g.getInput().read();
+        g.runStart = new Date(0);
+        assertTrue(emitOnOtherThread(g, 3) instanceof TimeoutException);
+    }
+
+    /* Executes the next input like a test that reads all of it, and covers key 7 iff it contains the bytes 5 to 40 */
+    private static void runTrial(ZestGuidance t) throws IOException {
+        InputStream in = t.getInput();
+        // Seeds are read to the end of their file, other inputs to the end of their bytes
+        int length = t.currentInput instanceof SeedInput ? Integer.MAX_VALUE : t.currentInput.size();
+        Set<Integer> read = new HashSet<>();
+        for (int i = 0; i < length; i++) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            read.add(b);
+        }
+        boolean covered = true;
+        for (int b = 5; b <= 40; b++) {
+            covered &= read.contains(b);
+        }
+        if (covered) {
+            t.runCoverage.getCounter().setAtIndex(7, 1);
+        }
+        t.handleResult(Result.SUCCESS, null);
+    }
+
+    @Test
+    public void testTrimPreservesResponsibilities() throws Exception {
+        File outputDir = Files.createTempDirectory("fuzz-out").toFile();
+        byte[] seed = new byte[40];
+        for (int i = 0; i < seed.length; i++) {
+            seed[i] = (byte) (i + 1);
+        }
+        File seedFile = new File(Files.createTempDirectory("fuzz-seeds").toFile(), "seed");
+        Files.write(seedFile.toPath(), seed);
+        System.setProperty("jqf.ei.TRIM_FRACTION", "0.5");
+        ZestGuidance t;
+        try {
+            t = new ZestGuidance("test", null, null, outputDir, new File[]{seedFile}, r);
+        } finally {
+            System.clearProperty("jqf.ei.TRIM_FRACTION");
+        }
+        // Pretend that fuzzing started long ago, so that trimming is within its share of the time
+        t.startTime.setTime(0);
+
+        // The seed is saved, then executed as is and with chunks of 4 bytes removed
+        runTrial(t);
+        assertEquals(1, t.savedInputs.size());
+        LinearInput input = (LinearInput) t.savedInputs.get(0);
+        assertEquals(IntHashSet.newSetWith(7), input.responsibilities);
+        int trimTrials = 0;
+        while (t.numTrimmedInputs == 0 && trimTrials < 100) {
+            runTrial(t);
+            trimTrials++;
+        }
+
+        // Only the first chunk is not needed to cover key 7
+        assertEquals(1, t.numTrimmedInputs);
+        assertEquals(4, t.numTrimmedBytes);
+        assertEquals(36, input.size());
+        assertArrayEquals(Arrays.copyOfRange(seed, 4, 40), Files.readAllBytes(input.saveFile.toPath()));
+        assertArrayEquals(new String[]{input.saveFile.getName()}, input.saveFile.getParentFile().list());
+
+        // Trimming is over once every saved input has been trimmed
+        runTrial(t);
+        assertNull(t.trimTarget);
+        assertEquals(1, t.numTrimmedInputs);
+    }
+
+    @Test
+    public void testTrimIgnoresRemovedProbes() throws Exception {
+        File outputDir = Files.createTempDirectory("fuzz-out").toFile();
+        byte[] seed = new byte[40];
+        for (int i = 0; i < seed.length; i++) {
+            seed[i] = (byte) (i + 1);
+        }
+        File seedFile = new File(Files.createTempDirectory("fuzz-seeds").toFile(), "seed");
+        Files.write(seedFile.toPath(), seed);
+        BitSet removed = new BitSet();
+        System.setProperty("jqf.ei.TRIM_FRACTION", "0.5");
+        System.setProperty("jqf.ei.REMOVE_SATURATED_PROBES", "true");
+        ZestGuidance t;
+        try {
+            t = new ZestGuidance("test", null, null, outputDir, new File[]{seedFile}, r) {
+                @Override
+                protected BitSet getRemovedProbes() {
+                    return removed;
+                }
+            };
+        } finally {
+            System.clearProperty("jqf.ei.TRIM_FRACTION");
+            System.clearProperty("jqf.ei.REMOVE_SATURATED_PROBES");
+        }
+        t.startTime.setTime(0);
+
+        runTrial(t);
+        LinearInput input = (LinearInput) t.savedInputs.get(0);
+        assertEquals(IntHashSet.newSetWith(7), input.responsibilities);
+
+        // Once its probe is removed, key 7 is no longer covered by any input
+        removed.set(7);
+        int trimTrials = 0;
+        while (t.numTrimmedInputs == 0 && trimTrials < 100) {
+            InputStream in = t.getInput();
+            for (int i = 0; i < t.currentInput.size(); i++) {
+                in.read();
+            }
+            t.handleResult(Result.SUCCESS, null);
+            trimTrials++;
+        }
+        assertEquals(1, t.numTrimmedInputs);
+        assertTrue(input.size() < seed.length);
+    }
+}
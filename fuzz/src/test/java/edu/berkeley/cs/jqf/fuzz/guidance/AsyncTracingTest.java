@@ -0,0 +1,112 @@
+package edu.berkeley.cs.jqf.fuzz.guidance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.fuzz.Fuzz;
+import edu.berkeley.cs.jqf.fuzz.JQF;
+import edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing;
+import edu.berkeley.cs.jqf.fuzz.random.NoGuidance;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceLogger;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests trials whose trace events are consumed on another thread.
+ *
+ * <p>The mode is fixed when tracing starts, so these tests run in a
+ * separate JVM with <code>-Djqf.tracing.ASYNC=true</code> (see the
+ * <code>async-tracing</code> execution in the POM).</p>
+ */
+@RunWith(JUnit4.class)
+public class AsyncTracingTest {
+
+    /** Enough events to fill several batches. */
+    private static final int EVENTS_PER_TRIAL = 10_000;
+
+    /** The instruction ID of an event that makes the callback time out. */
+    private static final int TIMEOUT_IID = -1;
+
+    @RunWith(JQF.class)
+    public static class AsyncTracingFuzzer {
+        @Fuzz
+        public void emitEvents(int x) {
+            for (int i = 0; i < EVENTS_PER_TRIAL; i++) {
+                TraceLogger.get().emit(new BranchEvent(i, null, 0, 0));
+            }
+        }
+
+        @Fuzz
+        public void emitTimeout(int x) {
+            TraceLogger.get().emit(new BranchEvent(TIMEOUT_IID, null, 0, 0));
+        }
+    }
+
+    /** Records how many events had been handled when each result was reported. */
+    private static class RecordingGuidance extends NoGuidance {
+        final AtomicInteger events = new AtomicInteger();
+        final List<Integer> eventsAtResult = new ArrayList<>();
+        final List<Result> results = new ArrayList<>();
+        volatile Thread callbackThread;
+
+        RecordingGuidance(long trials) {
+            super(trials, null);
+        }
+
+        @Override
+        public Consumer<TraceEvent> generateCallBack(Thread thread) {
+            return e -> {
+                callbackThread = Thread.currentThread();
+                if (e.getIid() == TIMEOUT_IID) {
+                    throw new TimeoutException(2, 1);
+                }
+                events.incrementAndGet();
+            };
+        }
+
+        @Override
+        public void handleResult(Result result, Throwable error) {
+            eventsAtResult.add(events.get());
+            results.add(result);
+            super.handleResult(result, error);
+        }
+    }
+
+    @BeforeClass
+    public static void requireAsyncTracing() {
+        assumeTrue(Boolean.getBoolean("jqf.tracing.ASYNC"));
+    }
+
+    @Test
+    public void testAllEventsAreHandledBeforeTheResult() {
+        RecordingGuidance guidance = new RecordingGuidance(5);
+        GuidedFuzzing.run(AsyncTracingFuzzer.class, "emitEvents", guidance, null);
+
+        assertEquals(5, guidance.results.size());
+        for (int trial = 0; trial < 5; trial++) {
+            assertEquals(Result.SUCCESS, guidance.results.get(trial));
+            assertEquals(EVENTS_PER_TRIAL * (trial + 1), (int) guidance.eventsAtResult.get(trial));
+        }
+        assertNotSame(Thread.currentThread(), guidance.callbackThread);
+    }
+
+    @Test
+    public void testTimeoutInCallbackIsReportedAtFlush() {
+        RecordingGuidance guidance = new RecordingGuidance(3);
+        GuidedFuzzing.run(AsyncTracingFuzzer.class, "emitTimeout", guidance, null);
+
+        assertEquals(3, guidance.results.size());
+        for (Result result : guidance.results) {
+            assertEquals(Result.TIMEOUT, result);
+        }
+    }
+}
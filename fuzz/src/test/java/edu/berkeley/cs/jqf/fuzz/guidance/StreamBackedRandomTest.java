@@ -0,0 +1,71 @@
+package edu.berkeley.cs.jqf.fuzz.guidance;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class StreamBackedRandomTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /** Reads bytes as {@link Random#nextBytes(byte[])} does, one int at a time. */
+    private static byte[] nextBytesByInts(Random random, int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; ) {
+            for (int rnd = random.nextInt(), n = Math.min(size - i, 4); n-- > 0; rnd >>= 8) {
+                bytes[i++] = (byte) rnd;
+            }
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testNextBytesMatchesNextInt() {
+        byte[] data = data(1000);
+        StreamBackedRandom bulk = new StreamBackedRandom(new ByteArrayInputStream(data));
+        StreamBackedRandom ints = new StreamBackedRandom(new ByteArrayInputStream(data));
+
+        for (int size : new int[]{0, 1, 3, 4, 7, 100, 13}) {
+            byte[] bytes = new byte[size];
+            bulk.nextBytes(bytes);
+            assertArrayEquals(nextBytesByInts(ints, size), bytes);
+            assertEquals(ints.nextInt(), bulk.nextInt());
+        }
+        assertEquals(ints.getTotalBytesRead(), bulk.getTotalBytesRead());
+    }
+
+    @Test
+    public void testNextBytesIgnoresLeadingBytes() {
+        byte[] data = data(100);
+        StreamBackedRandom bulk = new StreamBackedRandom(new ByteArrayInputStream(data), 8);
+        StreamBackedRandom ints = new StreamBackedRandom(new ByteArrayInputStream(data), 8);
+
+        byte[] bytes = new byte[20];
+        bulk.nextBytes(bytes);
+        assertArrayEquals(nextBytesByInts(ints, 20), bytes);
+        bulk.nextBytes(bytes);
+        assertArrayEquals(nextBytesByInts(ints, 20), bytes);
+    }
+
+    @Test
+    public void testNextBytesAtEOF() {
+        StreamBackedRandom random = new StreamBackedRandom(new ByteArrayInputStream(data(10)));
+        try {
+            random.nextBytes(new byte[9]);
+            fail("Expected EOF");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof EOFException);
+        }
+    }
+}
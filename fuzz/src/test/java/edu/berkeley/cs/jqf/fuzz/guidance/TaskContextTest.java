@@ -0,0 +1,118 @@
+package edu.berkeley.cs.jqf.fuzz.guidance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.fuzz.Fuzz;
+import edu.berkeley.cs.jqf.fuzz.JQF;
+import edu.berkeley.cs.jqf.fuzz.junit.GuidedFuzzing;
+import edu.berkeley.cs.jqf.fuzz.random.NoGuidance;
+import edu.berkeley.cs.jqf.instrument.tracing.SingleSnoop;
+import edu.berkeley.cs.jqf.instrument.tracing.TraceLogger;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that trace events of tasks handed to executors are passed to the
+ * guidance of the submitting trial, as if the tasks were instrumented
+ * with <code>janala.propagateTaskContext</code>.
+ */
+@RunWith(JUnit4.class)
+public class TaskContextTest {
+
+    /** Fewer events than a batch holds, so that none are delivered before the task ends. */
+    private static final int EVENTS_PER_TASK = 10;
+
+    private static final int TRIALS = 5;
+
+    /** A pool whose thread was not started by a trial. */
+    private static ThreadPoolExecutor pool;
+
+    @RunWith(JQF.class)
+    public static class TaskFuzzer {
+        @Fuzz
+        public void submitTask(int x) throws Exception {
+            Runnable task = () -> {
+                for (int i = 0; i < EVENTS_PER_TASK; i++) {
+                    TraceLogger.get().emit(new BranchEvent(i, null, 0, 0));
+                }
+            };
+            // Inserted before the executor call by the instrumentation
+            pool.submit(SingleSnoop.PROPAGATE_CONTEXT(task)).get();
+        }
+    }
+
+    /** Records how many events had been handled when each result was reported. */
+    private static class RecordingGuidance extends NoGuidance {
+        final AtomicInteger events = new AtomicInteger();
+        final List<Integer> eventsAtResult = new ArrayList<>();
+        final Set<Thread> tracedThreads = ConcurrentHashMap.newKeySet();
+
+        RecordingGuidance() {
+            super(TRIALS, null);
+        }
+
+        @Override
+        public Consumer<TraceEvent> generateCallBack(Thread thread) {
+            tracedThreads.add(thread);
+            return e -> events.incrementAndGet();
+        }
+
+        @Override
+        public void handleResult(Result result, Throwable error) {
+            assertEquals(Result.SUCCESS, result);
+            eventsAtResult.add(events.get());
+            super.handleResult(result, error);
+        }
+    }
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        pool.prestartAllCoreThreads();
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    private static void assertEventsOfEachTrial(RecordingGuidance guidance) {
+        assertEquals(TRIALS, guidance.eventsAtResult.size());
+        for (int trial = 0; trial < TRIALS; trial++) {
+            assertEquals(EVENTS_PER_TASK * (trial + 1), (int) guidance.eventsAtResult.get(trial));
+        }
+    }
+
+    @Test
+    public void testTaskEventsAreHandledBeforeTheResult() {
+        RecordingGuidance guidance = new RecordingGuidance();
+        GuidedFuzzing.run(TaskFuzzer.class, "submitTask", guidance, null);
+        assertEventsOfEachTrial(guidance);
+    }
+
+    @Test
+    public void testTaskEventsArePassedToTheSubmittingWorker() throws Exception {
+        RecordingGuidance guidance = new RecordingGuidance();
+        GuidedFuzzing.runParallel(TaskFuzzer.class.getName(), "submitTask",
+                Collections.singletonList(TaskFuzzer.class.getClassLoader()),
+                Collections.singletonList(guidance), null);
+        assertEventsOfEachTrial(guidance);
+        assertEquals(2, guidance.tracedThreads.size());
+    }
+}
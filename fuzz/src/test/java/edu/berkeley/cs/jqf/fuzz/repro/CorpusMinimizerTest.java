@@ -0,0 +1,103 @@
+package edu.berkeley.cs.jqf.fuzz.repro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
+import edu.berkeley.cs.jqf.fuzz.guidance.Result;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class CorpusMinimizerTest {
+
+    @Test
+    public void testCoverDropsRedundantInputs() {
+        long[][] features = {
+                {1, 2},
+                {1, 2, 3},
+                {3},
+        };
+        double[] costs = {1, 1, 1};
+        assertEquals(Collections.singletonList(1), CorpusMinimizer.cover(features, costs));
+    }
+
+    @Test
+    public void testCoverPrefersCheapInputs() {
+        long[][] features = {
+                {1, 2, 3, 4},
+                {1, 2},
+                {3, 4},
+        };
+        // Two cheap inputs cover as much as one that is much more expensive
+        double[] costs = {10, 1, 1};
+        assertEquals(Arrays.asList(1, 2), CorpusMinimizer.cover(features, costs));
+    }
+
+    @Test
+    public void testCoverSkipsFailingInputs() {
+        long[][] features = {
+                null,
+                {1},
+                {},
+        };
+        double[] costs = {1, 1, 1};
+        assertEquals(Collections.singletonList(1), CorpusMinimizer.cover(features, costs));
+    }
+
+    @Test
+    public void testReplaySkipsInputsThatTimeOut() throws IOException {
+        File dir = Files.createTempDirectory("corpus").toFile();
+        File[] inputs = {new File(dir, "slow"), new File(dir, "fast")};
+        for (File input : inputs) {
+            Files.write(input.toPath(), new byte[]{1});
+        }
+        CorpusMinimizer minimizer = new CorpusMinimizer(inputs, true);
+        Guidance worker = minimizer.newWorker();
+        Consumer<TraceEvent> callback = worker.generateCallBack(Thread.currentThread());
+
+        // Only the input that times out covers the second branch
+        Result[] results = {Result.TIMEOUT, Result.SUCCESS};
+        for (Result result : results) {
+            assertTrue(worker.hasInput());
+            worker.getInput();
+            callback.accept(new BranchEvent(1, null, 0, 0));
+            if (result == Result.TIMEOUT) {
+                callback.accept(new BranchEvent(2, null, 0, 0));
+            }
+            worker.handleResult(result, null);
+        }
+        assertFalse(worker.hasInput());
+
+        assertEquals(2, minimizer.getNumFeatures());
+        assertEquals(Collections.singletonList(inputs[1]), minimizer.minimize());
+    }
+
+    @Test
+    public void testCoverBreaksTiesByCostAndIndex() {
+        long[][] features = {
+                {1},
+                {1},
+                {2, 3},
+                {2, 3},
+        };
+        double[] costs = {2, 2, 4, 2};
+        assertEquals(Arrays.asList(3, 0), CorpusMinimizer.cover(features, costs));
+    }
+
+    @Test
+    public void testCost() {
+        assertTrue(CorpusMinimizer.cost(10, 1000) < CorpusMinimizer.cost(20, 1000));
+        assertTrue(CorpusMinimizer.cost(10, 1000) < CorpusMinimizer.cost(10, 2000));
+        assertTrue(CorpusMinimizer.cost(0, 0) > 0);
+    }
+}
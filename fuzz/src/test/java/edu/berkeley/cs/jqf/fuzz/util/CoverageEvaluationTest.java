@@ -0,0 +1,75 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.function.Supplier;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class CoverageEvaluationTest {
+
+    private static final int MAX_KEY = 1000;
+
+    private static ICoverage run(Supplier<ICoverage> factory, int[] keys) {
+        ICoverage coverage = factory.get();
+        for (int k : keys) {
+            coverage.getCounter().increment(Math.floorMod(k, MAX_KEY));
+        }
+        return coverage;
+    }
+
+    /* Checks that evaluate() has the same effect as computeNewCoverage() followed by updateBits() */
+    private static void checkEquivalence(Supplier<ICoverage> factory, int[] keys1, int[] keys2, boolean valid) {
+        ICoverage total = factory.get();
+        ICoverage validTotal = factory.get();
+        ICoverage refTotal = factory.get();
+        ICoverage refValidTotal = factory.get();
+        CoverageEvaluation result = new CoverageEvaluation();
+
+        for (int[] keys : new int[][] { keys1, keys2 }) {
+            ICoverage runCoverage = run(factory, keys);
+
+            IntHashSet expectedNew = IntHashSet.newSet(runCoverage.computeNewCoverage(refTotal));
+            IntHashSet expectedNewValid = IntHashSet.newSet(runCoverage.computeNewCoverage(refValidTotal));
+            boolean expectedNewCounts = refTotal.updateBits(runCoverage);
+            boolean expectedNewValidCounts = valid && refValidTotal.updateBits(runCoverage);
+
+            runCoverage.evaluate(total, valid ? validTotal : null, result);
+
+            assertEquals(expectedNew, IntHashSet.newSet(result.getNewEdges()));
+            assertEquals(expectedNewCounts, result.hasNewCounts());
+            if (valid) {
+                assertEquals(expectedNewValid, IntHashSet.newSet(result.getNewValidEdges()));
+                assertEquals(expectedNewValidCounts, result.hasNewValidCounts());
+            } else {
+                assertFalse(result.hasNewValidEdges());
+                assertFalse(result.hasNewValidCounts());
+            }
+
+            assertEquals(refTotal.getNonZeroCount(), total.getNonZeroCount());
+            assertEquals(refValidTotal.getNonZeroCount(), validTotal.getNonZeroCount());
+            for (int key : refTotal.getCovered().toArray()) {
+                assertEquals(refTotal.getCounter().get(key), total.getCounter().get(key));
+            }
+        }
+    }
+
+    @Property
+    public void evaluateMatchesUpdateBits(int[] keys1, int[] keys2, boolean valid) {
+        checkEquivalence(Coverage::new, keys1, keys2, valid);
+    }
+
+    @Property
+    public void evaluateMatchesUpdateBitsFastNonColliding(int[] keys1, int[] keys2, boolean valid) {
+        checkEquivalence(FastNonCollidingCoverage::new, keys1, keys2, valid);
+    }
+
+    @Property
+    public void evaluateMatchesUpdateBitsFastNonCollidingArray(int[] keys1, int[] keys2, boolean valid) {
+        checkEquivalence(FastNonCollidingArrayCoverage::new, keys1, keys2, valid);
+    }
+}
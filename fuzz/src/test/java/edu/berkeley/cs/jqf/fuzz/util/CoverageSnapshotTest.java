@@ -0,0 +1,84 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import janala.logger.inst.INVOKESTATIC;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CoverageSnapshotTest {
+    private static CallEvent callEvent(int iid) {
+        return new CallEvent(iid, null, 0,
+                new INVOKESTATIC(iid, 0, "Foo", "bar", "()V"));
+    }
+
+    private static BranchEvent branchEvent(int iid, int arm) {
+        return new BranchEvent(iid, null, 0, arm);
+    }
+
+    private static Coverage sampleCoverage() {
+        Coverage c = new Coverage();
+        c.handleEvent(callEvent(1));
+        c.handleEvent(callEvent(1));
+        c.handleEvent(callEvent(1));
+        c.handleEvent(callEvent(2));
+        c.handleEvent(branchEvent(3, 1));
+        c.handleEvent(branchEvent(3, 0));
+        return c;
+    }
+
+    @Test
+    public void snapshotRetainsCoveredEdges() {
+        Coverage c = sampleCoverage();
+        CoverageSnapshot snapshot = new CoverageSnapshot(c);
+
+        Assert.assertEquals(c.size(), snapshot.size());
+        Assert.assertEquals(c.getNonZeroCount(), snapshot.getNonZeroCount());
+        Assert.assertEquals(IntHashSet.newSet(c.getCovered()), IntHashSet.newSet(snapshot.getCovered()));
+    }
+
+    @Test
+    public void snapshotBucketsCounts() {
+        Coverage c = sampleCoverage();
+        CoverageSnapshot snapshot = new CoverageSnapshot(c);
+
+        for (int idx : c.getCovered().toArray()) {
+            int count = c.getCounter().getAtIndex(idx);
+            int bucket = Integer.highestOneBit(count);
+            Assert.assertEquals(bucket, snapshot.getCounter().getAtIndex(idx));
+        }
+    }
+
+    @Test
+    public void snapshotUpdatesBitsLikeOriginal() {
+        Coverage c = sampleCoverage();
+        Coverage total1 = new Coverage();
+        Coverage total2 = new Coverage();
+
+        total1.updateBits(c);
+        total2.updateBits(new CoverageSnapshot(c));
+
+        Assert.assertEquals(total1.hashCode(), total2.hashCode());
+    }
+
+    @Test
+    public void snapshotComputesNewCoverage() {
+        Coverage base = new Coverage();
+        base.handleEvent(callEvent(1));
+        Coverage c = sampleCoverage();
+        CoverageSnapshot snapshot = new CoverageSnapshot(c);
+
+        Assert.assertEquals(IntHashSet.newSet(c.computeNewCoverage(base)),
+                IntHashSet.newSet(snapshot.computeNewCoverage(base)));
+        Assert.assertEquals(0, c.computeNewCoverage(snapshot).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsImmutable() {
+        new CoverageSnapshot(sampleCoverage()).updateBits(new Coverage());
+    }
+}
@@ -0,0 +1,131 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitQuickcheck.class)
+public class FastNonCollidingArrayCounterTest {
+
+    private static final int MAX_KEY = 100_000;
+
+    private static int key(int k) {
+        return Math.floorMod(k, MAX_KEY);
+    }
+
+    @Property
+    public void incrementWorks(int[] keys) {
+        FastNonCollidingArrayCounter counter = new FastNonCollidingArrayCounter(16);
+        IntIntHashMap expected = new IntIntHashMap();
+        for (int k : keys) {
+            int key = key(k);
+            int after = counter.increment(key);
+            assertEquals(expected.addToValue(key, 1), after);
+        }
+        for (int key : expected.keySet().toArray()) {
+            assertEquals(expected.get(key), counter.get(key));
+        }
+        assertEquals(expected.size(), counter.getNonZeroSize());
+        assertEquals(expected.keySet(), IntHashSet.newSet(counter.getNonZeroIndices()));
+    }
+
+    @Property
+    public void clearsToZero(int[] keys) {
+        FastNonCollidingArrayCounter counter = new FastNonCollidingArrayCounter(16);
+        for (int k : keys) {
+            counter.increment(key(k));
+        }
+        counter.clear();
+        for (int k : keys) {
+            assertEquals(0, counter.get(key(k)));
+        }
+        assertEquals(0, counter.getNonZeroSize());
+        assertFalse(counter.hasNonZeros());
+    }
+
+    @Property
+    public void mergeBitsMatchesHashMapCounter(int[] keys1, int[] keys2) {
+        FastNonCollidingArrayCoverage run1 = new FastNonCollidingArrayCoverage();
+        FastNonCollidingArrayCoverage run2 = new FastNonCollidingArrayCoverage();
+        FastNonCollidingCoverage ref1 = new FastNonCollidingCoverage();
+        FastNonCollidingCoverage ref2 = new FastNonCollidingCoverage();
+        for (int k : keys1) {
+            run1.logMethodBegin(key(k));
+            ref1.logMethodBegin(key(k));
+        }
+        for (int k : keys2) {
+            run2.logMethodBegin(key(k));
+            ref2.logMethodBegin(key(k));
+        }
+
+        FastNonCollidingArrayCoverage total = new FastNonCollidingArrayCoverage();
+        FastNonCollidingCoverage refTotal = new FastNonCollidingCoverage();
+        assertEquals(refTotal.updateBits(ref1), total.updateBits(run1));
+        assertEquals(IntHashSet.newSet(ref2.computeNewCoverage(refTotal)),
+                IntHashSet.newSet(run2.computeNewCoverage(total)));
+        assertEquals(refTotal.updateBits(ref2), total.updateBits(run2));
+        assertEquals(refTotal.getNonZeroCount(), total.getNonZeroCount());
+        for (int key : refTotal.getCovered().toArray()) {
+            assertEquals(refTotal.getCounter().get(key), total.getCounter().get(key));
+        }
+    }
+
+    @Test
+    public void concurrentIncrementsRecordKeysOnce() throws Exception {
+        final int numThreads = 4;
+        final int numKeys = 64;
+        final int numRounds = 5000;
+        FastNonCollidingArrayCounter counter = new FastNonCollidingArrayCounter(numKeys);
+        CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int round = 0; round < numRounds; round++) {
+                        // All threads increment the same keys from zero at the same time
+                        barrier.await();
+                        for (int key = 0; key < numKeys; key++) {
+                            counter.increment(key);
+                        }
+                        barrier.await();
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (int round = 0; round < numRounds; round++) {
+            counter.clear();
+            barrier.await();
+            barrier.await();
+            assertEquals(numKeys, counter.getNonZeroSize());
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(numKeys, IntHashSet.newSet(counter.getNonZeroIndices()).size());
+    }
+
+    @Test
+    public void keyBecomingNonZeroAgainIsRecordedOnce() {
+        FastNonCollidingArrayCounter counter = new FastNonCollidingArrayCounter(16);
+        counter.increment(5);
+        counter.setAtIndex(5, 0);
+        counter.increment(5);
+        assertEquals(1, counter.getNonZeroSize());
+        assertEquals(1, counter.getNonZeroIndices().size());
+
+        // Keys can be recorded again after the counter is cleared
+        counter.clear();
+        counter.increment(5);
+        assertEquals(1, counter.getNonZeroSize());
+    }
+}
@@ -0,0 +1,67 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import janala.instrument.ProbeReconstructionTable;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InlineCounterCoverageTest {
+
+    @Test
+    public void collectsCountsFromRegion() {
+        FastCoverageSnoop.ensureCounterCapacity(200_000);
+        InlineCounterCoverage runCoverage = new InlineCounterCoverage();
+        runCoverage.clear();
+
+        // Simulate instrumented probes
+        FastCoverageSnoop.COUNTERS[3] += 1;
+        FastCoverageSnoop.COUNTERS[7] += 5;
+        FastCoverageSnoop.COUNTERS[199_999] += 2;
+
+        assertEquals(3, runCoverage.getNonZeroCount());
+        assertEquals(IntHashSet.newSetWith(3, 7, 199_999), IntHashSet.newSet(runCoverage.getCovered()));
+        assertEquals(5, runCoverage.getCounter().get(7));
+
+        FastNonCollidingArrayCoverage total = new FastNonCollidingArrayCoverage();
+        CoverageEvaluation result = new CoverageEvaluation();
+        runCoverage.evaluate(total, null, result);
+        assertEquals(IntHashSet.newSetWith(3, 7, 199_999), IntHashSet.newSet(result.getNewEdges()));
+        assertEquals(4, total.getCounter().get(7));
+
+        // The next run starts from a zeroed region
+        runCoverage.clear();
+        assertEquals(0, FastCoverageSnoop.COUNTERS[7]);
+        FastCoverageSnoop.COUNTERS[7] += 1;
+        runCoverage.evaluate(total, null, result);
+        assertFalse(result.hasNewEdges());
+        assertTrue(result.hasNewCounts());
+        assertEquals(1, runCoverage.getNonZeroCount());
+    }
+
+    @Test
+    public void reconstructsPrunedProbes() {
+        FastCoverageSnoop.ensureCounterCapacity(150_010);
+        // A method entry (150_000) followed by a branch whose not-taken side (150_001)
+        // is pruned, and a call site (150_003) in the fall-through block
+        ProbeReconstructionTable.instance.addDifference(150_001, 150_000, 150_002);
+        ProbeReconstructionTable.instance.addCopy(150_003, 150_001);
+
+        InlineCounterCoverage runCoverage = new InlineCounterCoverage();
+        runCoverage.clear();
+        FastCoverageSnoop.COUNTERS[150_000] += 10;
+        FastCoverageSnoop.COUNTERS[150_002] += 4;
+
+        assertEquals(10, runCoverage.getCounter().get(150_000));
+        assertEquals(6, runCoverage.getCounter().get(150_001));
+        assertEquals(4, runCoverage.getCounter().get(150_002));
+        assertEquals(6, runCoverage.getCounter().get(150_003));
+
+        // A branch that is always taken leaves the pruned side uncovered
+        runCoverage.clear();
+        FastCoverageSnoop.COUNTERS[150_000] += 3;
+        FastCoverageSnoop.COUNTERS[150_002] += 3;
+        assertEquals(IntHashSet.newSetWith(150_000, 150_002), IntHashSet.newSet(runCoverage.getCovered()));
+    }
+}
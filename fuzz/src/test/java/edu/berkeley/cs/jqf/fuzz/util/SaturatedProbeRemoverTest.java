@@ -0,0 +1,102 @@
+package edu.berkeley.cs.jqf.fuzz.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SaturatedProbeRemoverTest {
+
+    /** A remover that records saturated probes instead of removing them. */
+    private static class RecordingRemover extends SaturatedProbeRemover {
+        final List<IntArrayList> removed = new ArrayList<>();
+
+        RecordingRemover(long checkInterval, int stableChecks) {
+            super(checkInterval, stableChecks);
+        }
+
+        @Override
+        protected void removeProbes(int[] probes) {
+            removed.add(IntArrayList.newListWith(probes));
+        }
+    }
+
+    private final FastNonCollidingArrayCoverage total = new FastNonCollidingArrayCoverage();
+
+    private void set(int key, int bits) {
+        ((FastNonCollidingArrayCounter) total.getCounter()).setAtIndex(key, bits);
+    }
+
+    @Test
+    public void testChecksOnlyEveryInterval() {
+        RecordingRemover remover = new RecordingRemover(3, 1);
+        set(10, 1);
+        remover.afterTrial(total);
+        remover.afterTrial(total);
+        remover.afterTrial(total); // First check: the bits are new
+        remover.afterTrial(total);
+        remover.afterTrial(total);
+        assertTrue(remover.removed.isEmpty());
+        remover.afterTrial(total); // Second check: unchanged once
+        assertEquals(1, remover.removed.size());
+        assertEquals(IntArrayList.newListWith(10), remover.removed.get(0));
+    }
+
+    @Test
+    public void testRemovesAfterStableChecks() {
+        RecordingRemover remover = new RecordingRemover(1, 3);
+        set(10, 1);
+        set(20, 1);
+        for (int check = 1; check <= 3; check++) {
+            // Edge 20 keeps getting new count bits
+            set(20, 1 << check);
+            remover.afterTrial(total);
+        }
+        assertTrue(remover.removed.isEmpty());
+
+        set(20, 1 << 4);
+        remover.afterTrial(total); // Edge 10 unchanged for a third check
+        assertEquals(1, remover.removed.size());
+        assertEquals(IntArrayList.newListWith(10), remover.removed.get(0));
+
+        // A saturated edge is only reported once
+        for (int check = 0; check < 5; check++) {
+            remover.afterTrial(total);
+        }
+        assertEquals(2, remover.removed.size());
+        assertEquals(IntArrayList.newListWith(20), remover.removed.get(1));
+    }
+
+    @Test
+    public void testChangedBitsRestartTheCount() {
+        RecordingRemover remover = new RecordingRemover(1, 2);
+        set(10, 1);
+        remover.afterTrial(total);
+        remover.afterTrial(total); // Unchanged once
+        set(10, 3);
+        remover.afterTrial(total); // Changed: starts over
+        remover.afterTrial(total); // Unchanged once
+        assertTrue(remover.removed.isEmpty());
+        remover.afterTrial(total); // Unchanged twice
+        assertEquals(1, remover.removed.size());
+    }
+
+    @Test
+    public void testNewlyCoveredEdgesAreTracked() {
+        RecordingRemover remover = new RecordingRemover(1, 1);
+        set(10, 1);
+        remover.afterTrial(total);
+        // An edge with a key beyond those seen at earlier checks
+        set(5000, 1);
+        remover.afterTrial(total);
+        assertEquals(IntArrayList.newListWith(10), remover.removed.get(0));
+        remover.afterTrial(total);
+        assertEquals(IntArrayList.newListWith(5000), remover.removed.get(1));
+    }
+}
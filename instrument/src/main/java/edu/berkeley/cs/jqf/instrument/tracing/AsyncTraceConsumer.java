@@ -0,0 +1,204 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.instrument.util.FastBlockingQueue;
+
+/**
+ * A daemon thread that passes batches of trace events to their callbacks,
+ * so that traced threads do not spend time on coverage bookkeeping.
+ *
+ * <p>Each traced thread owns a {@link Channel} with a fixed number of
+ * batches, which go back to the tracers' pool once the thread has died. Full batches go to the consumer through one
+ * {@link FastBlockingQueue}, and come back empty through another, so
+ * each queue has a single producer and a single consumer. A traced thread
+ * only waits if all of its batches are still being consumed.</p>
+ *
+ * <p>Waiting threads spin briefly and then yield, and an idle consumer
+ * parks until it is needed. This mode only pays off if a spare core is
+ * available for the consumer.</p>
+ *
+ * <p>Callbacks run on the consumer thread, in the order in which each
+ * thread's batches were filled. {@link #await()} waits until every batch
+ * handed over so far has been consumed, and must be called before the
+ * callbacks' state is read.</p>
+ */
+final class AsyncTraceConsumer implements Runnable {
+
+    /** The number of batches of each traced thread. */
+    private static final int BATCHES_PER_THREAD = 8;
+
+    /** The number of polls before a waiting thread yields, and before an idle consumer parks. */
+    private static final int SPINS = 1 << 10;
+
+    private static final long PARK_NANOS = 20_000;
+
+    private static final List<Channel> channels = new CopyOnWriteArrayList<>();
+
+    private static volatile Thread thread;
+
+    /** The batches and callback of a single traced thread. */
+    static final class Channel {
+        private final Thread tracee;
+        private final Consumer<TraceEventBatch> callback;
+        private final FastBlockingQueue<TraceEventBatch> filled;
+        private final FastBlockingQueue<TraceEventBatch> free;
+        private final AtomicReference<RuntimeException> exception = new AtomicReference<>();
+
+        // Each counter is only written by one thread
+        private volatile long submitted = 0;
+        private volatile long consumed = 0;
+
+        private Channel(Thread tracee, Consumer<TraceEventBatch> callback) {
+            this.tracee = tracee;
+            this.callback = callback;
+            // A queue holds one item less than its size
+            this.filled = new FastBlockingQueue<>(BATCHES_PER_THREAD + 1);
+            this.free = new FastBlockingQueue<>(BATCHES_PER_THREAD + 1);
+            for (int i = 0; i < BATCHES_PER_THREAD; i++) {
+                free.put(ThreadTracer.acquireBatch());
+            }
+        }
+
+        /**
+         * Returns an empty batch, waiting for one to be consumed if necessary.
+         *
+         * @return an empty batch owned by the traced thread
+         */
+        TraceEventBatch take() {
+            TraceEventBatch batch;
+            while ((batch = free.remove(SPINS)) == null) {
+                // The consumer may need this CPU to make progress
+                LockSupport.unpark(thread);
+                Thread.yield();
+            }
+            return batch;
+        }
+
+        /**
+         * Hands a batch over to the consumer.
+         *
+         * @param batch a batch returned by {@link #take()}
+         * @return an empty batch to continue with
+         */
+        TraceEventBatch submit(TraceEventBatch batch) {
+            submitted++;
+            filled.put(batch);
+            return take();
+        }
+
+        /**
+         * Returns and clears the last exception thrown by the callback.
+         *
+         * @return the exception, or <code>null</code>
+         */
+        RuntimeException takeException() {
+            return exception.getAndSet(null);
+        }
+
+        /** Consumes the submitted batches; called only by the consumer thread. */
+        private boolean consume() {
+            boolean consumedAny = false;
+            TraceEventBatch batch;
+            while ((batch = filled.remove(0)) != null) {
+                try {
+                    callback.accept(batch);
+                } catch (RuntimeException e) {
+                    exception.set(e);
+                } finally {
+                    if (callback instanceof TraceEventBatch.HandOff) {
+                        // The callback owns the batch now
+                        free.put(ThreadTracer.acquireBatch());
+                    } else {
+                        batch.clear();
+                        free.put(batch);
+                    }
+                    consumed++;
+                }
+                consumedAny = true;
+            }
+            return consumedAny;
+        }
+
+        private boolean isDrained() {
+            return consumed == submitted;
+        }
+
+        /** Returns the batches of a drained channel to the pool. */
+        private void release() {
+            TraceEventBatch batch;
+            while ((batch = free.remove(0)) != null) {
+                ThreadTracer.releaseBatch(batch);
+            }
+        }
+    }
+
+    private AsyncTraceConsumer() {
+        // Only constructed for the consumer thread
+    }
+
+    /**
+     * Creates the channel of a traced thread, starting the consumer thread
+     * if necessary.
+     *
+     * @param tracee the traced thread, which is the only one to use the channel
+     * @param callback the callback to pass batches to
+     * @return a new channel
+     */
+    static synchronized Channel register(Thread tracee, Consumer<TraceEventBatch> callback) {
+        Channel channel = new Channel(tracee, callback);
+        channels.add(channel);
+        if (thread == null) {
+            thread = new Thread(new AsyncTraceConsumer(), "jqf-trace-consumer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return channel;
+    }
+
+    /** Waits until all batches submitted so far by any thread have been consumed. */
+    static void await() {
+        for (Channel channel : channels) {
+            if (!channel.isDrained()) {
+                LockSupport.unpark(thread);
+                for (int spins = 0; !channel.isDrained(); spins++) {
+                    if (spins < SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (true) {
+            boolean consumedAny = false;
+            for (Channel channel : channels) {
+                consumedAny |= channel.consume();
+                if (!channel.tracee.isAlive() && channel.isDrained()) {
+                    channels.remove(channel);
+                    channel.release();
+                }
+            }
+            if (consumedAny) {
+                idle = 0;
+            } else if (idle < SPINS) {
+                idle++;
+                Thread.onSpinWait();
+            } else if (idle < 2 * SPINS) {
+                idle++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+}
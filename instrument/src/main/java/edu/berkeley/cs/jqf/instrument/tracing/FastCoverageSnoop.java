@@ -1,10 +1,28 @@
 package edu.berkeley.cs.jqf.instrument.tracing;
 
+import java.util.Arrays;
+
 import janala.instrument.FastCoverageListener;
 
 public class FastCoverageSnoop {
     static FastCoverageListener coverageListener = new FastCoverageListener.Default();
 
+    /**
+     * Counters indexed by fast coverage probe ID, incremented directly by
+     * instrumented code when inline counters are enabled (property
+     * {@code useFastCoverageInlineCounters}).
+     *
+     * <p>The array is replaced by a larger copy when newly instrumented
+     * classes allocate probe IDs beyond its length. This happens before
+     * such classes are defined, so their probes never index out of bounds;
+     * increments racing with a resize may be lost.</p>
+     */
+    @SuppressWarnings("unused") //Accessed by instrumentation
+    public static volatile int[] COUNTERS = new int[1 << 16];
+
+    /** One more than the highest probe ID allocated so far. */
+    private static volatile int counterLimit = 0;
+
     @SuppressWarnings("unused") //Invoked by instrumentation
     public static void LOGMETHODBEGIN(int iid) {
         coverageListener.logMethodBegin(iid);
@@ -32,4 +50,33 @@ public class FastCoverageSnoop {
     public static void setFastCoverageListener(FastCoverageListener runCoverage) {
         coverageListener = runCoverage;
     }
+
+    /**
+     * Ensures that {@link #COUNTERS} can be indexed by all probe IDs
+     * less than <code>limit</code>.
+     *
+     * @param limit one more than the highest allocated probe ID
+     */
+    public static synchronized void ensureCounterCapacity(int limit) {
+        if (limit > COUNTERS.length) {
+            int newLength = COUNTERS.length;
+            while (newLength < limit) {
+                newLength *= 2;
+            }
+            COUNTERS = Arrays.copyOf(COUNTERS, newLength);
+        }
+        if (limit > counterLimit) {
+            counterLimit = limit;
+        }
+    }
+
+    /**
+     * Returns one more than the highest probe ID that may have been
+     * incremented in {@link #COUNTERS}.
+     *
+     * @return the number of counters in use
+     */
+    public static int getCounterLimit() {
+        return counterLimit;
+    }
 }
@@ -0,0 +1,185 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import janala.logger.inst.MemberRef;
+
+/**
+ * A registry of the methods that appear in trace events, which assigns
+ * each method and each class a small integer ID.
+ *
+ * <p>Methods are registered when their class is instrumented, or when
+ * they are first traced if their class was loaded from the
+ * instrumentation cache. Trace events and their consumers refer to
+ * methods and classes by ID, and only resolve names for display.</p>
+ *
+ * <p>IDs are dense and start at 1; the ID 0 stands for an unknown method
+ * or class (e.g. the caller of the entry point). IDs are only valid within
+ * a JVM.</p>
+ */
+public final class MethodRegistry {
+
+    /** A registered method. */
+    public static final class Entry implements MemberRef {
+        private final int id;
+        private final int classId;
+        private final String owner;
+        private final String name;
+        private final String desc;
+
+        private Entry(int id, int classId, String owner, String name, String desc) {
+            this.id = id;
+            this.classId = classId;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        /**
+         * Returns the ID of this method.
+         *
+         * @return the ID, which is at least 1
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the ID of the class declaring this method.
+         *
+         * @return the class ID, which is at least 1
+         */
+        public int getClassId() {
+            return classId;
+        }
+
+        @Override
+        public String getOwner() {
+            return owner;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDesc() {
+            return desc;
+        }
+
+        @Override
+        public String toString() {
+            return owner + "#" + name + desc;
+        }
+    }
+
+    /** The owner, name and descriptor of a method. */
+    private static final class Key {
+        private final String owner;
+        private final String name;
+        private final String desc;
+
+        Key(String owner, String name, String desc) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return owner.equals(other.owner) && name.equals(other.name) && desc.equals(other.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * owner.hashCode() + name.hashCode()) * 31 + desc.hashCode();
+        }
+    }
+
+    /** Entries by method; looked up without locking, and only added to while holding the class lock. */
+    private static final Map<Key, Entry> byName = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> classIds = new HashMap<>();
+
+    /** Entries by ID; re-assigned after every registration to publish the new entry. */
+    private static volatile Entry[] entries = new Entry[1024];
+    private static int size = 1;
+
+    /** Class names by ID; re-assigned after every registration to publish the new name. */
+    private static volatile String[] classNames = new String[256];
+
+    private MethodRegistry() {
+        // Static utility: Prevent construction
+    }
+
+    /**
+     * Returns the entry of a method, registering it if necessary.
+     *
+     * @param owner the internal name of the class declaring the method
+     * @param name the name of the method
+     * @param desc the descriptor of the method
+     * @return the entry of the method
+     */
+    public static Entry register(String owner, String name, String desc) {
+        Key key = new Key(owner, name, desc);
+        Entry entry = byName.get(key);
+        return entry != null ? entry : insert(key);
+    }
+
+    private static synchronized Entry insert(Key key) {
+        Entry entry = byName.get(key);
+        if (entry == null) {
+            Entry[] table = entries;
+            if (size == table.length) {
+                table = Arrays.copyOf(table, size * 2);
+            }
+            entry = new Entry(size, registerClass(key.owner), key.owner, key.name, key.desc);
+            table[size++] = entry;
+            entries = table;
+            byName.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static int registerClass(String owner) {
+        Integer classId = classIds.get(owner);
+        if (classId == null) {
+            String[] table = classNames;
+            classId = classIds.size() + 1;
+            if (classId == table.length) {
+                table = Arrays.copyOf(table, classId * 2);
+            }
+            table[classId] = owner;
+            classNames = table;
+            classIds.put(owner, classId);
+        }
+        return classId;
+    }
+
+    /**
+     * Returns the method with the given ID.
+     *
+     * @param id an ID returned by {@link Entry#getId()}, or 0
+     * @return the method, or <code>null</code> for the ID 0
+     */
+    public static Entry get(int id) {
+        return entries[id];
+    }
+
+    /**
+     * Returns the name of the class with the given ID.
+     *
+     * @param classId an ID returned by {@link Entry#getClassId()}
+     * @return the internal name of the class, or <code>null</code> for the ID 0
+     */
+    public static String getClassName(int classId) {
+        return classNames[classId];
+    }
+}
@@ -0,0 +1,103 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The snooping state of a single thread: whether instrumented
+ * instructions are currently ignored, and the thread's tracer.
+ *
+ * <p>A context is only read and written by its own thread, so its
+ * fields need no synchronization. Contexts are looked up with
+ * {@link TraceLogger#context()}, once per instrumented instruction.</p>
+ */
+final class SnoopContext {
+
+    /** The thread that owns this context. */
+    final Thread thread;
+
+    /**
+     * Whether instructions of this thread are ignored, either because
+     * it is not snooped (e.g. JVM cleanup threads) or because it is
+     * already handling an instruction.
+     */
+    boolean blocked;
+
+    /**
+     * The supplier of callbacks for tracers of this thread, and of tasks
+     * that it hands to executors, or <code>null</code> to use
+     * {@link SingleSnoop#callbackGenerator}.
+     */
+    Function<Thread, Consumer<TraceEventBatch>> callbackGenerator;
+
+    private ThreadTracer tracer;
+
+    /** The tracer last used for propagated tasks, and the supplier of its callback. */
+    private ThreadTracer taskTracer;
+    private Function<Thread, Consumer<TraceEventBatch>> taskCallbackGenerator;
+
+    SnoopContext(Thread thread, boolean blocked) {
+        this.thread = thread;
+        this.blocked = blocked;
+    }
+
+    /**
+     * Returns the tracer of this context's thread, spawning it if necessary.
+     *
+     * @return the tracer
+     */
+    ThreadTracer tracer() {
+        ThreadTracer t = tracer;
+        if (t == null) {
+            t = tracer = ThreadTracer.spawn(thread, callbackGenerator());
+        }
+        return t;
+    }
+
+    /**
+     * Returns the supplier of callbacks for this thread.
+     *
+     * @return the thread's own supplier, or the global one if it has none
+     */
+    Function<Thread, Consumer<TraceEventBatch>> callbackGenerator() {
+        Function<Thread, Consumer<TraceEventBatch>> g = callbackGenerator;
+        return g != null ? g : SingleSnoop.callbackGenerator;
+    }
+
+    /**
+     * Replaces the tracer of this thread with one whose callback is
+     * supplied by the given generator, for the duration of a task.
+     *
+     * <p>The task tracer is kept for the next task with the same
+     * generator, as pool threads usually run many tasks for the same
+     * submitter.</p>
+     *
+     * @param generator the supplier of callbacks of the submitting thread
+     * @return the replaced tracer, to be restored with {@link #restoreTracer(ThreadTracer)}
+     */
+    ThreadTracer enterTaskTracer(Function<Thread, Consumer<TraceEventBatch>> generator) {
+        if (taskTracer == null || taskCallbackGenerator != generator) {
+            taskTracer = ThreadTracer.spawn(thread, generator);
+            taskCallbackGenerator = generator;
+        }
+        ThreadTracer previous = tracer;
+        tracer = taskTracer;
+        return previous;
+    }
+
+    /**
+     * Restores the tracer replaced by {@link #enterTaskTracer(Function)}.
+     *
+     * @param previous the replaced tracer, possibly <code>null</code>
+     */
+    void restoreTracer(ThreadTracer previous) {
+        tracer = previous;
+    }
+
+    /** Discards the tracer, so that the next instruction spawns a new one. */
+    void removeTracer() {
+        tracer = null;
+        taskTracer = null;
+        taskCallbackGenerator = null;
+    }
+}
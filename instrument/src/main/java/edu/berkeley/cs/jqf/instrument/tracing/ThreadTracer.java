@@ -30,28 +30,47 @@
 
 package edu.berkeley.cs.jqf.instrument.tracing;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import edu.berkeley.cs.jqf.instrument.InstrumentationException;
-import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.LineEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
-import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
-import janala.logger.inst.*;
+import janala.logger.inst.SPECIAL;
+
+import static edu.berkeley.cs.jqf.instrument.tracing.TraceEventBatch.*;
 
 /**
  * This class is responsible for tracing for an instruction stream
  * generated by a single thread in the application.
  *
  * <p>A ThreadTracer instance processes low-level bytecode instructions
- * instrumented by JQF/Janala and converts them into appropriate
- * {@link TraceEvent} instances, which are then emitted to be processed
- * by the guidance-provided callback.</p>
+ * instrumented by JQF/Janala and converts them into trace events, which
+ * are recorded in a {@link TraceEventBatch} to be processed by the
+ * guidance-provided callback.</p>
+ *
+ * <p>Instructions are passed in by {@link SingleSnoop} as primitive
+ * arguments and drive a state machine over a stack of method frames,
+ * which are reused across calls. No objects are allocated for
+ * instructions or trace events.</p>
+ *
+ * <p>The batch is passed to the callback when it is full, when the
+ * thread leaves the outermost instrumented method, and when it is
+ * {@linkplain #flush() flushed}. Callbacks for individual events (see
+ * {@link TraceEventBatch#forEachEvent(Consumer)}) are passed a batch
+ * for every event, as soon as it is generated.</p>
+ *
+ * <p>A tracer only holds a batch while its thread runs instrumented
+ * code; batches are shared by all tracers through a pool, so that
+ * applications that start many short-lived threads (e.g. virtual
+ * threads) do not allocate a batch for each of them.</p>
+ *
+ * <p>If the property <code>jqf.tracing.ASYNC</code> is set, batches are
+ * instead handed over to the {@link AsyncTraceConsumer} thread, which
+ * invokes the callback while this thread keeps running. Flushing then
+ * also waits until all batches have been consumed.</p>
  *
  * @author Rohan Padhye
  */
@@ -59,11 +78,39 @@ public class ThreadTracer {
     protected final Thread tracee;
     protected final String entryPointClass;
     protected final String entryPointMethod;
-    protected final Consumer<TraceEvent> callback;
-    private final Deque<IVisitor> handlers = new ArrayDeque<>();
+    protected final Consumer<TraceEventBatch> callback;
+
+    /** The number of events per batch, for callbacks that handle batches. */
+    private static final int BATCH_SIZE = Integer.getInteger("jqf.tracing.BATCH_SIZE", 4096);
+
+    /** Whether to pass batches to the callback on a separate thread. */
+    private static final boolean ASYNC = Boolean.getBoolean("jqf.tracing.ASYNC");
+
+    /** Batches of {@link #BATCH_SIZE} events that are not held by any tracer. */
+    private static final Queue<TraceEventBatch> idleBatches = new ConcurrentLinkedQueue<>();
+
+    /** The events that have not yet been passed to the callback, or <code>null</code> if none are pending. */
+    private TraceEventBatch batch;
+
+    /** Whether the batch is returned to the pool when the thread leaves instrumented code. */
+    private final boolean pooled;
+
+    /** Whether the callback keeps the batches it is passed. */
+    private final boolean handOff;
+
+    /** The channel to the consumer thread, in async mode. */
+    private final AsyncTraceConsumer.Channel channel;
+
+    /** The frames of the methods entered so far; only the first {@code depth} are live. */
+    private Frame[] frames = new Frame[64];
+    private int depth = 0;
+
+    /** Registered methods by owner, name and descriptor, cached for this thread. */
+    private final MethodRegistry.Entry[] methodRefs = new MethodRegistry.Entry[1024];
 
     // Values set by GETVALUE_* instructions inserted by Janala
-    private final Values values = new Values();
+    private boolean booleanValue;
+    private int intValue;
 
     // Whether to instrument generators
     // Set this to TRUE when computing execution indexes for generators
@@ -81,9 +128,9 @@ public class ThreadTracer {
      *
      * @param tracee the thread to trace
      * @param entryPoint the outermost method call to trace (formatted as fq-class#method)
-     * @param callback the callback to invoke whenever a trace event is emitted
+     * @param callback the callback to invoke with batches of trace events
      */
-    protected ThreadTracer(Thread tracee, String entryPoint, Consumer<TraceEvent> callback) {
+    protected ThreadTracer(Thread tracee, String entryPoint, Consumer<TraceEventBatch> callback) {
         this.tracee = tracee;
         if (entryPoint != null) {
             int separator = entryPoint.indexOf('#');
@@ -97,18 +144,52 @@ public class ThreadTracer {
             this.entryPointMethod = null;
         }
         this.callback = callback;
-        this.handlers.push(new BaseHandler());
+        this.handOff = callback instanceof TraceEventBatch.HandOff;
+        if (ASYNC) {
+            this.channel = AsyncTraceConsumer.register(tracee, callback);
+            this.batch = channel.take();
+            this.pooled = false;
+        } else if (callback instanceof TraceEventBatch.EventAdapter) {
+            this.channel = null;
+            this.batch = new TraceEventBatch(1);
+            this.pooled = false;
+        } else {
+            this.channel = null;
+            this.batch = null;
+            this.pooled = true;
+        }
+    }
+
+    /**
+     * Returns an empty batch of {@link #BATCH_SIZE} events from the pool,
+     * or a new one if the pool is empty.
+     *
+     * @return an empty batch
+     */
+    static TraceEventBatch acquireBatch() {
+        TraceEventBatch b = idleBatches.poll();
+        return b != null ? b : new TraceEventBatch(BATCH_SIZE);
+    }
+
+    /**
+     * Returns an empty batch to the pool.
+     *
+     * @param b a batch returned by {@link #acquireBatch()}, which is no longer used
+     */
+    static void releaseBatch(TraceEventBatch b) {
+        idleBatches.offer(b);
     }
 
     /**
      * Spawns a thread tracer for the given thread.
      *
      * @param thread the thread to trace
+     * @param callbackGenerator the supplier of the tracer's callback
      * @return a tracer for the given thread
      */
-    protected static ThreadTracer spawn(Thread thread) {
+    protected static ThreadTracer spawn(Thread thread, Function<Thread, Consumer<TraceEventBatch>> callbackGenerator) {
         String entryPoint = SingleSnoop.entryPoints.get(thread);
-        Consumer<TraceEvent> callback = SingleSnoop.callbackGenerator.apply(thread);
+        Consumer<TraceEventBatch> callback = callbackGenerator.apply(thread);
         ThreadTracer t =
                 new ThreadTracer(thread, entryPoint, callback);
         return t;
@@ -122,21 +203,60 @@ public class ThreadTracer {
      * @param e the event to emit
      */
     protected final void emit(TraceEvent e) {
+        record(EVENT, e.getIid(), 0, e.getLineNumber(), 0, e);
+    }
+
+    private void record(byte kind, int iid, int method, int line, int value, Object ref) {
+        TraceEventBatch b = batch;
+        if (b == null) {
+            b = batch = acquireBatch();
+        }
+        if (b.add(kind, iid, method, line, value, ref)) {
+            deliver();
+        }
+    }
+
+    /** Passes the pending events to the callback. */
+    private void deliver() {
+        if (channel != null) {
+            batch = channel.submit(batch);
+            RuntimeException ex = channel.takeException();
+            if (ex != null) {
+                callBackException = ex;
+            }
+            return;
+        }
         try {
-            callback.accept(e);
+            callback.accept(batch);
         } catch (RuntimeException ex) {
             callBackException = ex;
+        } finally {
+            if (handOff) {
+                // The callback owns the batch now; continue with one from the pool
+                batch = null;
+            } else {
+                batch.clear();
+            }
         }
     }
 
-    /**
-     * Handles tracing of a single bytecode instruction.
-     *
-     * @param ins the instruction to process
-     */
-    protected final void consume(Instruction ins) {
-        // Apply the visitor at the top of the stack
-        ins.visit(handlers.peek());
+    /** Passes any pending events to the callback, and waits until they are consumed. */
+    final void flush() {
+        if (batch != null && batch.size() > 0) {
+            deliver();
+        }
+        if (channel != null) {
+            AsyncTraceConsumer.await();
+            RuntimeException ex = channel.takeException();
+            if (ex != null) {
+                callBackException = ex;
+            }
+        }
+        rethrowCallBackException();
+    }
+
+    /** Rethrows an exception thrown by the callback, once the current instruction is handled. */
+    private void rethrowCallBackException() {
         if (callBackException != null) {
             RuntimeException e = callBackException;
             callBackException = null;
@@ -144,227 +264,313 @@ public class ThreadTracer {
         }
     }
 
-
-    private static boolean isReturnOrMethodThrow(Instruction inst) {
-        return  inst instanceof ARETURN ||
-                inst instanceof LRETURN ||
-                inst instanceof DRETURN ||
-                inst instanceof FRETURN ||
-                inst instanceof IRETURN ||
-                inst instanceof RETURN  ||
-                inst instanceof METHOD_THROW;
+    /**
+     * The state of a method on the traced call stack.
+     *
+     * <p>A frame is either traced, in which case its instructions are
+     * converted to trace events, or it belongs to a method that is not
+     * traced (e.g. class loading activity, or calls outside the entry
+     * point), in which case only calls and returns are matched.</p>
+     */
+    private static class Frame {
+        boolean traced;
+        MethodRegistry.Entry method;
+
+        // The invocation target, from an invoke instruction until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
+        boolean invoking;
+        int invokeIid;
+        int invokeMid;
+        String invokeOwner;
+        String invokeName;
+        String invokeDesc;
+
+        // Whether the method is calling super() or this()
+        boolean invokingSuperOrThis;
     }
 
+    private MethodRegistry.Entry methodRef(String owner, String name, String desc) {
+        int slot = ((31 * owner.hashCode() + name.hashCode()) * 31 + desc.hashCode()) & (methodRefs.length - 1);
+        MethodRegistry.Entry ref = methodRefs[slot];
+        if (ref == null || !ref.getName().equals(name) || !ref.getDesc().equals(desc) || !ref.getOwner().equals(owner)) {
+            ref = MethodRegistry.register(owner, name, desc);
+            methodRefs[slot] = ref;
+        }
+        return ref;
+    }
 
-    private static boolean isInvoke(Instruction inst) {
-        return  inst instanceof InvokeInstruction;
+    private static int id(MethodRegistry.Entry method) {
+        return method != null ? method.getId() : 0;
     }
 
-    private static boolean isIfJmp(Instruction inst) {
-        return  inst instanceof ConditionalBranch;
+    private void push(boolean traced, MethodRegistry.Entry method) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = frames[depth] = new Frame();
+        }
+        frame.traced = traced;
+        frame.method = method;
+        frame.invoking = false;
+        frame.invokeOwner = frame.invokeName = frame.invokeDesc = null;
+        frame.invokingSuperOrThis = false;
+        depth++;
     }
 
+    private void pop() {
+        Frame frame = frames[--depth];
+        frame.method = null;
+        frame.invokeOwner = frame.invokeName = frame.invokeDesc = null;
+    }
 
-    private static class Values {
-        private boolean booleanValue;
-        private byte byteValue;
-        private char charValue;
-        private double doubleValue;
-        private float floatValue;
-        private int intValue;
-        private long longValue;
-        private Object objectValue;
-        private short shortValue;
+    /** Returns the frame of the current method if it is traced, or else <code>null</code>. */
+    private Frame tracedFrame() {
+        if (depth == 0) {
+            return null;
+        }
+        Frame frame = frames[depth - 1];
+        return frame.traced ? frame : null;
     }
-    
-    private static boolean sameNameDesc(MemberRef m1, MemberRef m2) {
+
+    private static boolean sameNameDesc(String name, String desc, Frame caller) {
         // Bypass checks for all function calls from java/util/function
         // which are used by lambda function calls.
-        if ((m2 != null && m2.getOwner().contains("java/util/function")) ||
-                (m1 != null && m1.getName().startsWith("lambda$")) ||
-                (m2 != null && m2.getOwner().startsWith("java/util/stream"))
+        if ((caller.invoking && caller.invokeOwner.contains("java/util/function")) ||
+                name.startsWith("lambda$") ||
+                (caller.invoking && caller.invokeOwner.startsWith("java/util/stream"))
         ) {
             return true;
         }
-        return m1 != null && m2 != null &&
-                m1.getName().equals(m2.getName()) &&
-                m1.getDesc().equals(m2.getDesc());
+        return caller.invoking &&
+                name.equals(caller.invokeName) &&
+                desc.equals(caller.invokeDesc);
     }
 
-
-
-    class BaseHandler extends ControlFlowInstructionVisitor {
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
+    /**
+     * Handles the beginning of a method.
+     *
+     * @param owner the internal name of the class declaring the method
+     * @param name the name of the method
+     * @param desc the descriptor of the method
+     * @param obj the receiver object, or <code>null</code>
+     */
+    final void methodBegin(String owner, String name, String desc, Object obj) {
+        if (depth == 0) {
             // Try to match the top-level call with the entry point
-            String clazz = begin.getOwner();
-            String method = begin.getName();
-            if (MATCH_CALLEE_NAMES == false || (clazz.equals(entryPointClass) && method.equals(entryPointMethod)) ||
-                    (traceGenerators && clazz.endsWith("Generator") && method.equals("generate")) ) {
-                emit(new CallEvent(0, null, 0, begin));
-                handlers.push(new TraceEventGeneratingHandler(begin, 0));
+            if (MATCH_CALLEE_NAMES == false || (owner.equals(entryPointClass) && name.equals(entryPointMethod)) ||
+                    (traceGenerators && owner.endsWith("Generator") && name.equals("generate")) ) {
+                MethodRegistry.Entry method = methodRef(owner, name, desc);
+                record(CALL, 0, 0, 0, method.getId(), null);
+                push(true, method);
             } else {
                 // Ignore all top-level calls that are not the entry point
-                handlers.push(new MatchingNullHandler());
+                push(false, null);
             }
-        }
-    }
-
-    class TraceEventGeneratingHandler extends ControlFlowInstructionVisitor {
-
-        private final int depth;
-        private final MemberRef method;
-        TraceEventGeneratingHandler(METHOD_BEGIN begin, int depth) {
-            this.depth = depth;
-            this.method = begin;
-            //logger.log(tabs() + begin);
-        }
-
-        private String tabs() {
-            StringBuffer sb = new StringBuffer(depth);
-            for (int i = 0; i < depth; i++) {
-                sb.append("  ");
-            }
-            return sb.toString();
-        }
-
-        private MemberRef invokeTarget = null;
-        private boolean invokingSuperOrThis = false;
-
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
-            if ((MATCH_CALLEE_NAMES == false && begin.name.equals("<clinit>") == false) || sameNameDesc(begin, this.invokeTarget)) {
+        } else {
+            Frame caller = frames[depth - 1];
+            if (caller.traced &&
+                    ((MATCH_CALLEE_NAMES == false && name.equals("<clinit>") == false) || sameNameDesc(name, desc, caller))) {
                 // Trace continues with callee
-                int invokerIid = invokeTarget != null ? ((Instruction) invokeTarget).iid : -1;
-                int invokerMid = invokeTarget != null ? ((Instruction) invokeTarget).mid : -1;
-                emit(new CallEvent(invokerIid, this.method, invokerMid, begin, begin.getObject()));
-                handlers.push(new TraceEventGeneratingHandler(begin, depth+1));
+                int invokerIid = caller.invoking ? caller.invokeIid : -1;
+                int invokerMid = caller.invoking ? caller.invokeMid : -1;
+                MethodRegistry.Entry method = methodRef(owner, name, desc);
+                record(CALL, invokerIid, id(caller.method), invokerMid, method.getId(), obj);
+                push(true, method);
             } else {
-                // Class loading or static initializer
-                handlers.push(new MatchingNullHandler());
+                // Class loading, static initializer, or a call from an untraced method
+                push(false, null);
             }
-
-            super.visitMETHOD_BEGIN(begin);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitINVOKEMETHOD_EXCEPTION(INVOKEMETHOD_EXCEPTION ins) {
-            if (this.invokeTarget == null) {
-                throw new InstrumentationException("Unexpected INVOKEMETHOD_EXCEPTION", ins.getException());
-            } else {
-                // Unset the invocation target for the rest of the instruction stream
-                this.invokeTarget = null;
-                // Handle end of super() or this() call
-                if (invokingSuperOrThis) {
-                    while (true) { // will break when outer caller of <init> found
-                        emit(new ReturnEvent(-1, this.method, -1));
-                        handlers.pop();
-                        IVisitor handler = handlers.peek();
-                        // We should not reach the BaseHandler without finding
-                        // the TraceEventGeneratingHandler who called the outer <init>().
-                        assert (handler instanceof TraceEventGeneratingHandler);
-                        TraceEventGeneratingHandler traceEventGeneratingHandler = (TraceEventGeneratingHandler) handler;
-                        if (traceEventGeneratingHandler.invokingSuperOrThis) {
-                            // Go down the stack further
-                            continue;
-                        } else {
-                            // Found caller of new()
-                            assert(traceEventGeneratingHandler.invokeTarget.getName().startsWith("<init>"));
-                            // Let this handler (now top-of-stack) process the instruction
-                            ins.visit(traceEventGeneratingHandler);
-                            break;
-                        }
-                    }
+    /**
+     * Handles a return, or an exceptional exit of a method (in which case
+     * the instruction ID and line number are <code>-1</code>).
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     */
+    final void methodEnd(int iid, int mid) {
+        if (depth > 0) {
+            Frame frame = frames[depth - 1];
+            if (frame.traced) {
+                record(RETURN, iid, id(frame.method), mid, 0, null);
+            }
+            pop();
+            if (depth == 0 && batch != null) {
+                // Leaving instrumented code, e.g. at the end of a run
+                if (batch.size() > 0) {
+                    deliver();
+                }
+                if (pooled && batch != null) {
+                    releaseBatch(batch);
+                    batch = null;
                 }
             }
+        }
+        rethrowCallBackException();
+    }
 
-            super.visitINVOKEMETHOD_EXCEPTION(ins);
+    /**
+     * Handles an invoke instruction, which is followed by METHOD_BEGIN
+     * if the callee is instrumented.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     * @param owner the internal name of the class of the invoked method
+     * @param name the name of the invoked method
+     * @param desc the descriptor of the invoked method
+     */
+    final void invoke(int iid, int mid, String owner, String name, String desc) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            // Remember invocation target until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
+            frame.invoking = true;
+            frame.invokeIid = iid;
+            frame.invokeMid = mid;
+            frame.invokeOwner = owner;
+            frame.invokeName = name;
+            frame.invokeDesc = desc;
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitINVOKEMETHOD_END(INVOKEMETHOD_END ins) {
-            if (this.invokeTarget == null) {
+    /** Handles the normal end of an invocation. */
+    final void invokeEnd() {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            if (frame.invoking == false) {
                 throw new InstrumentationException("Unexpected INVOKEMETHOD_END");
-            } else {
-                // Unset the invocation target for the rest of the instruction stream
-                this.invokeTarget = null;
-                // Handle end of super() or this() call
-                if (invokingSuperOrThis) {
-                    // For normal end, simply unset the flag
-                    this.invokingSuperOrThis = false;
-                }
             }
-
-            super.visitINVOKEMETHOD_END(ins);
+            // Unset the invocation target for the rest of the instruction stream
+            frame.invoking = false;
+            // Handle end of super() or this() call; for normal end, simply unset the flag
+            frame.invokingSuperOrThis = false;
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitSPECIAL(SPECIAL special) {
-            // Handle marker that says calling super() or this()
-            if (special.i == SPECIAL.CALLING_SUPER_OR_THIS) {
-                this.invokingSuperOrThis = true;
+    /**
+     * Handles the exceptional end of an invocation.
+     *
+     * @param err the exception thrown by the invoked method
+     */
+    final void invokeException(Throwable err) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            if (frame.invoking == false) {
+                throw new InstrumentationException("Unexpected INVOKEMETHOD_EXCEPTION", err);
+            }
+            // Unset the invocation target for the rest of the instruction stream
+            frame.invoking = false;
+            // Handle end of super() or this() call
+            int method = id(frame.method);
+            while (frame.invokingSuperOrThis) { // will break when outer caller of <init> found
+                record(RETURN, -1, method, -1, 0, null);
+                pop();
+                // We should not reach the bottom of the stack without finding
+                // the traced frame that called the outer <init>().
+                frame = frames[depth - 1];
+                assert frame.traced;
+                if (frame.invokingSuperOrThis == false) {
+                    // Found caller of new(), whose invocation also ends here
+                    if (frame.invoking == false) {
+                        throw new InstrumentationException("Unexpected INVOKEMETHOD_EXCEPTION", err);
+                    }
+                    assert frame.invokeName.startsWith("<init>");
+                    frame.invoking = false;
+                }
             }
-            return; // Do not process SPECIAL instructions further
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitInvokeInstruction(InvokeInstruction ins) {
-            // Remember invocation target until METHOD_BEGIN or INVOKEMETHOD_END/INVOKEMETHOD_EXCEPTION
-            this.invokeTarget = ins;
-
-            super.visitInvokeInstruction(ins);
+    /**
+     * Handles a special marker instruction.
+     *
+     * @param i the kind of marker, e.g. {@link SPECIAL#CALLING_SUPER_OR_THIS}
+     */
+    final void special(int i) {
+        Frame frame = tracedFrame();
+        if (frame != null && i == SPECIAL.CALLING_SUPER_OR_THIS) {
+            frame.invokingSuperOrThis = true;
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitGETVALUE_int(GETVALUE_int gv) {
-            values.intValue = gv.v;
-
-            super.visitGETVALUE_int(gv);
+    /**
+     * Records the int operand of the next instruction.
+     *
+     * @param v the value
+     */
+    final void intValue(int v) {
+        if (tracedFrame() != null) {
+            intValue = v;
         }
+    }
 
-        @Override
-        public void visitGETVALUE_boolean(GETVALUE_boolean gv) {
-            values.booleanValue = gv.v;
-
-            super.visitGETVALUE_boolean(gv);
+    /**
+     * Records whether the next conditional branch is taken.
+     *
+     * @param v the value
+     */
+    final void booleanValue(boolean v) {
+        if (tracedFrame() != null) {
+            booleanValue = v;
         }
+    }
 
-        @Override
-        public void visitConditionalBranch(Instruction ins) {
-            int iid = ins.iid;
-            int lineNum = ins.mid;
-
+    /**
+     * Handles a conditional jump.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     */
+    final void conditionalBranch(int iid, int mid) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
             // The branch taken-or-not would have been set by a previous
             // GETVALUE instruction
-            boolean taken = values.booleanValue;
-            emit(new BranchEvent(iid, this.method, lineNum, taken ? 1 : 0));
-
-            super.visitConditionalBranch(ins);
+            record(BRANCH, iid, id(frame.method), mid, booleanValue ? 1 : 0, null);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitTABLESWITCH(TABLESWITCH tableSwitch) {
-            int iid = tableSwitch.iid;
-            int lineNum = tableSwitch.mid;
-            int value = values.intValue;
-            int numCases = tableSwitch.labels.length;
+    /**
+     * Handles a table switch.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     * @param numCases the number of arms, excluding the default
+     */
+    final void tableSwitch(int iid, int mid, int numCases) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            int value = intValue;
             // Compute arm index or else default
             int arm = -1;
             if (value >= 0 && value < numCases) {
                 arm = value;
             }
             // Emit a branch instruction corresponding to the arm
-            emit(new BranchEvent(iid, this.method, lineNum, arm));
-
-            super.visitTABLESWITCH(tableSwitch);
+            record(BRANCH, iid, id(frame.method), mid, arm, null);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitLOOKUPSWITCH(LOOKUPSWITCH lookupSwitch) {
-            int iid = lookupSwitch.iid;
-            int lineNum = lookupSwitch.mid;
-            int value = values.intValue;
-            int[] cases = lookupSwitch.keys;
+    /**
+     * Handles a lookup switch.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     * @param cases the keys of the arms, excluding the default
+     */
+    final void lookupSwitch(int iid, int mid, int[] cases) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            int value = intValue;
             // Compute arm index or else default
             int arm = -1;
             for (int i = 0; i < cases.length; i++) {
@@ -374,73 +580,68 @@ public class ThreadTracer {
                 }
             }
             // Emit a branch instruction corresponding to the arm
-            emit(new BranchEvent(iid, this.method, lineNum, arm));
-
-            super.visitLOOKUPSWITCH(lookupSwitch);
-        }
-
-        @Override
-        public void visitHEAPLOAD(HEAPLOAD heapload) {
-            int iid = heapload.iid;
-            int lineNum = heapload.mid;
-            int objectId = heapload.objectId;
-            String field = heapload.field;
-            // Log the object access (unless it was a NPE)
-            if (objectId != 0) {
-                emit(new ReadEvent(iid, this.method, lineNum, objectId, field));
-            }
-
-            super.visitHEAPLOAD(heapload);
-        }
-
-        @Override
-        public void visitNEW(NEW newInst) {
-            int iid = newInst.iid;
-            int lineNum = newInst.mid;
-            emit(new AllocEvent(iid, this.method, lineNum, 1));
-
-            super.visitNEW(newInst);
-        }
-
-        @Override
-        public void visitNEWARRAY(NEWARRAY newArray) {
-            int iid = newArray.iid;
-            int lineNum = newArray.mid;
-            int size = values.intValue;
-            emit(new AllocEvent(iid, this.method, lineNum, size));
-
-            super.visitNEWARRAY(newArray);
+            record(BRANCH, iid, id(frame.method), mid, arm, null);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitReturnOrMethodThrow(Instruction ins) {
-            emit(new ReturnEvent(ins.iid, this.method, ins.mid));
-            handlers.pop();
-
-            super.visitReturnOrMethodThrow(ins);
+    /**
+     * Handles a heap load.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     * @param objectId the identity hash code of the object, or 0 for <code>null</code>
+     * @param field the field name or array index
+     */
+    final void heapLoad(int iid, int mid, int objectId, String field) {
+        Frame frame = tracedFrame();
+        // Log the object access (unless it was a NPE)
+        if (frame != null && objectId != 0) {
+            record(READ, iid, id(frame.method), mid, objectId, field);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitLINE(LINE line) {
-            int iid = line.iid;
-            int lineNum = line.mid;
-            emit(new LineEvent(iid, this.method, lineNum));
-
-            super.visitLINE(line);
+    /**
+     * Handles the allocation of an object.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     */
+    final void newObject(int iid, int mid) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            record(ALLOC, iid, id(frame.method), mid, 1, null);
         }
-
+        rethrowCallBackException();
     }
 
-    class MatchingNullHandler extends ControlFlowInstructionVisitor {
-
-        @Override
-        public void visitMETHOD_BEGIN(METHOD_BEGIN begin) {
-            handlers.push(new MatchingNullHandler());
+    /**
+     * Handles the allocation of an array of primitives, whose size was
+     * recorded by {@link #intValue(int)}.
+     *
+     * @param iid the instruction ID
+     * @param mid the line number
+     */
+    final void newArray(int iid, int mid) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            record(ALLOC, iid, id(frame.method), mid, intValue, null);
         }
+        rethrowCallBackException();
+    }
 
-        @Override
-        public void visitReturnOrMethodThrow(Instruction ins) {
-            handlers.pop();
+    /**
+     * Handles the start of a source line.
+     *
+     * @param iid the instruction ID
+     * @param lineNum the line number
+     */
+    final void line(int iid, int lineNum) {
+        Frame frame = tracedFrame();
+        if (frame != null) {
+            record(LINE, iid, id(frame.method), lineNum, 0, null);
         }
+        rethrowCallBackException();
     }
 }
@@ -0,0 +1,266 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.function.Consumer;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.LineEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+
+/**
+ * A batch of trace events generated by a single thread, stored as
+ * primitive records instead of {@link TraceEvent} objects.
+ *
+ * <p>Each record has a kind, an instruction ID, the ID of the containing
+ * method (see {@link MethodRegistry}), a line number and a value whose
+ * meaning depends on the kind:</p>
+ *
+ * <ul>
+ *     <li>{@link #CALL}: the ID of the invoked method</li>
+ *     <li>{@link #BRANCH}: the arm taken</li>
+ *     <li>{@link #ALLOC}: the size allocated</li>
+ *     <li>{@link #READ}: the identity hash code of the object read</li>
+ * </ul>
+ *
+ * <p>Events emitted programmatically with {@link TraceLogger#emit(TraceEvent)}
+ * are recorded with the kind {@link #EVENT}.</p>
+ *
+ * <p>A batch is only valid while it is being consumed; the tracer reuses
+ * it for the next events, unless the callback keeps it (see
+ * {@link #handOff(Consumer)}). Records can be converted to {@link TraceEvent}s
+ * with {@link #event(int)}, which is what {@link #forEachEvent(Consumer)}
+ * does for callbacks that handle individual events.</p>
+ */
+public final class TraceEventBatch {
+
+    public static final byte CALL = 0;
+    public static final byte RETURN = 1;
+    public static final byte BRANCH = 2;
+    public static final byte LINE = 3;
+    public static final byte ALLOC = 4;
+    public static final byte READ = 5;
+    public static final byte EVENT = 6;
+
+    private final byte[] kinds;
+    private final int[] iids;
+    private final int[] methods;
+    private final int[] lines;
+    private final int[] values;
+
+    /** The calling object of calls, the field of reads, or the event of programmatic events. */
+    private final Object[] refs;
+
+    private int size = 0;
+
+    TraceEventBatch(int capacity) {
+        this.kinds = new byte[capacity];
+        this.iids = new int[capacity];
+        this.methods = new int[capacity];
+        this.lines = new int[capacity];
+        this.values = new int[capacity];
+        this.refs = new Object[capacity];
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return <code>true</code> iff the batch is full
+     */
+    boolean add(byte kind, int iid, int method, int line, int value, Object ref) {
+        int i = size++;
+        kinds[i] = kind;
+        iids[i] = iid;
+        methods[i] = method;
+        lines[i] = line;
+        values[i] = value;
+        refs[i] = ref;
+        return size == kinds.length;
+    }
+
+    /**
+     * Returns a copy of this batch, which remains valid after this batch
+     * is reused.
+     *
+     * @return a new batch with the same records
+     */
+    public TraceEventBatch copy() {
+        TraceEventBatch copy = new TraceEventBatch(Math.max(size, 1));
+        System.arraycopy(kinds, 0, copy.kinds, 0, size);
+        System.arraycopy(iids, 0, copy.iids, 0, size);
+        System.arraycopy(methods, 0, copy.methods, 0, size);
+        System.arraycopy(lines, 0, copy.lines, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        System.arraycopy(refs, 0, copy.refs, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /** Removes all records. */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            refs[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the number of records in this batch.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the kind of a record.
+     *
+     * @param i the index of the record
+     * @return one of {@link #CALL}, {@link #RETURN}, {@link #BRANCH},
+     *         {@link #LINE}, {@link #ALLOC}, {@link #READ} or {@link #EVENT}
+     */
+    public byte kind(int i) {
+        return kinds[i];
+    }
+
+    /**
+     * Returns the instruction ID of a record.
+     *
+     * @param i the index of the record
+     * @return the instruction ID
+     */
+    public int iid(int i) {
+        return iids[i];
+    }
+
+    /**
+     * Returns the ID of the method containing the instruction of a record.
+     *
+     * @param i the index of the record
+     * @return the method ID, or 0 if unknown
+     */
+    public int methodId(int i) {
+        return methods[i];
+    }
+
+    /**
+     * Returns the line number of a record.
+     *
+     * @param i the index of the record
+     * @return the line number
+     */
+    public int line(int i) {
+        return lines[i];
+    }
+
+    /**
+     * Returns the kind-specific value of a record.
+     *
+     * @param i the index of the record
+     * @return the value
+     */
+    public int value(int i) {
+        return values[i];
+    }
+
+    /**
+     * Converts a record to a trace event.
+     *
+     * @param i the index of the record
+     * @return the event
+     */
+    public TraceEvent event(int i) {
+        MethodRegistry.Entry method = MethodRegistry.get(methods[i]);
+        switch (kinds[i]) {
+            case CALL:
+                return new CallEvent(iids[i], method, lines[i], MethodRegistry.get(values[i]), refs[i]);
+            case RETURN:
+                return new ReturnEvent(iids[i], method, lines[i]);
+            case BRANCH:
+                return new BranchEvent(iids[i], method, lines[i], values[i]);
+            case LINE:
+                return new LineEvent(iids[i], method, lines[i]);
+            case ALLOC:
+                return new AllocEvent(iids[i], method, lines[i], values[i]);
+            case READ:
+                return new ReadEvent(iids[i], method, lines[i], values[i], (String) refs[i]);
+            case EVENT:
+                return (TraceEvent) refs[i];
+            default:
+                throw new IllegalStateException("Unknown event kind: " + kinds[i]);
+        }
+    }
+
+    /**
+     * Returns a batch callback that passes each event to a callback for
+     * individual events.
+     *
+     * <p>Tracers deliver batches of a single event to such a callback,
+     * so that events are handled as soon as they are generated.</p>
+     *
+     * @param callback the callback for individual events
+     * @return a batch callback
+     */
+    public static Consumer<TraceEventBatch> forEachEvent(Consumer<TraceEvent> callback) {
+        return new EventAdapter(callback);
+    }
+
+    /**
+     * Returns a batch callback that keeps the batches it is passed, e.g.
+     * to handle them later on another thread.
+     *
+     * <p>Tracers do not reuse a batch passed to such a callback, but
+     * continue with an empty one. Once handled, the batch should be
+     * returned with {@link #recycle(TraceEventBatch)}.</p>
+     *
+     * @param callback the callback, which takes ownership of each batch
+     * @return a batch callback
+     */
+    public static Consumer<TraceEventBatch> handOff(Consumer<TraceEventBatch> callback) {
+        return new HandOff(callback);
+    }
+
+    /**
+     * Returns a batch that was passed to a {@linkplain #handOff(Consumer)
+     * hand-off callback} to the tracers, once it has been handled.
+     *
+     * @param batch the batch, which must not be used afterwards
+     */
+    public static void recycle(TraceEventBatch batch) {
+        batch.clear();
+        ThreadTracer.releaseBatch(batch);
+    }
+
+    /** A callback that takes ownership of batches; see {@link #handOff(Consumer)}. */
+    static final class HandOff implements Consumer<TraceEventBatch> {
+        private final Consumer<TraceEventBatch> callback;
+
+        HandOff(Consumer<TraceEventBatch> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void accept(TraceEventBatch batch) {
+            callback.accept(batch);
+        }
+    }
+
+    /** Adapts a callback for individual events; see {@link #forEachEvent(Consumer)}. */
+    static final class EventAdapter implements Consumer<TraceEventBatch> {
+        private final Consumer<TraceEvent> callback;
+
+        EventAdapter(Consumer<TraceEvent> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void accept(TraceEventBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                callback.accept(batch.event(i));
+            }
+        }
+    }
+}
@@ -30,52 +30,72 @@
 
 package edu.berkeley.cs.jqf.instrument.tracing;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
-import janala.logger.AbstractLogger;
-import janala.logger.inst.Instruction;
 
 /**
  * A singleton class which manages per-thread tracers.
  *
- * This class is used both to log instrumented instructions
- * via {@link SingleSnoop}, as well as to provide programmatic
- * access to emit {@link TraceEvent}s.
+ * This class is used both to dispatch instrumented instructions
+ * from {@link SingleSnoop} to the tracer of the current thread,
+ * as well as to provide programmatic access to emit {@link TraceEvent}s.
  *
  * @author Rohan Padhye
  */
-public class TraceLogger extends AbstractLogger {
+public class TraceLogger {
 
     private static final TraceLogger singleton = new TraceLogger();
 
-    // Each thread (except the first; see below) has a thread-local tracer object
-    private final ThreadLocal<ThreadTracer> threadLocalTracer
-            = ThreadLocal.withInitial(() -> ThreadTracer.spawn(Thread.currentThread()));
+    // Each thread has a thread-local context holding its tracer
+    private final ThreadLocal<SnoopContext> threadLocalContext
+            = ThreadLocal.withInitial(() -> {
+                Thread thread = Thread.currentThread();
+                // Snoop on threads that were added to the queue explicitly, and block all
+                // other threads (e.g. JVM cleanup threads)
+                boolean blocked = !SingleSnoop.threadsToUnblock.remove(thread);
+                return new SnoopContext(thread, blocked);
+            });
 
-    // The first thread is often the main program or test thread
-    private Thread firstThread = null;
+    // The first thread is often the main program or test thread. For performance reasons (e.g. to
+    // optimize single-threaded fuzzing), its context is also kept in this field, which is written
+    // only once. All other threads look up their context in the thread-local map.
+    private volatile SnoopContext firstContext;
 
-    // For performance reasons (e.g. to optimize single-threaded fuzzing), we remember the tracer for this thread
-    private ThreadTracer firstTracer;
+    private static final AtomicReferenceFieldUpdater<TraceLogger, SnoopContext> FIRST_CONTEXT =
+            AtomicReferenceFieldUpdater.newUpdater(TraceLogger.class, SnoopContext.class, "firstContext");
 
     private TraceLogger() {
         // Singleton: Prevent outside construction
     }
 
-    private ThreadTracer getTracer() {
-        // The vast majority of fuzzing sessions are single-threaded; so, return the tracer quickly instead of
-        // looking up the thread-local map. This provides about a 10-20% speedup.
-        if (Thread.currentThread() == firstThread) {
-            return firstTracer;
-        } else if (firstThread == null) {
-            // The first time this method is called, remember the "first" thread and its associated treacer
-            assert firstTracer == null;
-            firstThread = Thread.currentThread();
-            firstTracer = ThreadTracer.spawn(firstThread);
-            return firstTracer;
-        } else {
-            // In multi-threaded fuzzing mode, we have to use thread-local variables
-            return threadLocalTracer.get();
+    /**
+     * Returns the snooping context of the current thread, creating it if necessary.
+     *
+     * @return the context of the current thread
+     */
+    SnoopContext context() {
+        // The vast majority of fuzzing sessions are single-threaded; so, return the context quickly
+        // instead of looking up the thread-local map
+        SnoopContext first = firstContext;
+        if (first != null && first.thread == Thread.currentThread()) {
+            return first;
         }
+        SnoopContext context = threadLocalContext.get();
+        if (first == null) {
+            // The first thread to get here is remembered; the context stays in the map as well
+            FIRST_CONTEXT.compareAndSet(this, null, context);
+        }
+        return context;
+    }
+
+    /**
+     * Returns the tracer of the current thread, spawning it if necessary.
+     *
+     * @return the tracer of the current thread
+     */
+    ThreadTracer getTracer() {
+        return context().tracer();
     }
 
     /**
@@ -87,12 +107,6 @@ public class TraceLogger extends AbstractLogger {
         return singleton;
     }
 
-    /** Logs an instrumented byteode instruction for the current thread. */
-    @Override
-    protected void log(Instruction instruction) {
-        getTracer().consume(instruction);
-    }
-
     /**
      * Emits a trace event for the current thread.
      *
@@ -106,13 +120,7 @@ public class TraceLogger extends AbstractLogger {
      * Removes the trace logger for the current thread
      */
     public void remove() {
-        // Make sure to remove the right tracer depending on whether its in the thread-local map or in the field
-        if (Thread.currentThread() == firstThread) {
-            firstTracer = null;
-            firstThread = null;
-        } else {
-            threadLocalTracer.remove();
-        }
+        context().removeTracer();
     }
 
 }
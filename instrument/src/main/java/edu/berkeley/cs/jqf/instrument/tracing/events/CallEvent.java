@@ -28,6 +28,7 @@
  */
 package edu.berkeley.cs.jqf.instrument.tracing.events;
 
+import edu.berkeley.cs.jqf.instrument.tracing.MethodRegistry;
 import janala.logger.inst.MemberRef;
 
 /**
@@ -57,6 +58,16 @@ public class CallEvent extends TraceEvent {
         return str;
     }
 
+    /**
+     * Returns the ID of the invoked method in the {@link MethodRegistry}.
+     *
+     * @return the method ID, or 0 if unknown
+     */
+    public int getInvokedMethodId() {
+        MethodRegistry.Entry entry = registryEntry(invokedMethod);
+        return entry != null ? entry.getId() : 0;
+    }
+
     public Object getCallingObject() {
         return obj;
     }
@@ -28,6 +28,7 @@
  */
 package edu.berkeley.cs.jqf.instrument.tracing.events;
 
+import edu.berkeley.cs.jqf.instrument.tracing.MethodRegistry;
 import janala.logger.inst.MemberRef;
 
 /**
@@ -85,6 +86,34 @@ public abstract class TraceEvent {
         }
     }
 
+    /**
+     * Returns the ID of the containing method in the {@link MethodRegistry}.
+     *
+     * @return the method ID, or 0 if unknown
+     */
+    public int getContainingMethodId() {
+        MethodRegistry.Entry entry = registryEntry(containingMethod);
+        return entry != null ? entry.getId() : 0;
+    }
+
+    /**
+     * Returns the ID of the containing class in the {@link MethodRegistry}.
+     *
+     * @return the class ID, or 0 if unknown
+     */
+    public int getContainingClassId() {
+        MethodRegistry.Entry entry = registryEntry(containingMethod);
+        return entry != null ? entry.getClassId() : 0;
+    }
+
+    /** Returns the registry entry of a method, registering it if it is not an entry already. */
+    protected static MethodRegistry.Entry registryEntry(MemberRef method) {
+        if (method == null || method instanceof MethodRegistry.Entry) {
+            return (MethodRegistry.Entry) method;
+        }
+        return MethodRegistry.register(method.getOwner(), method.getName(), method.getDesc());
+    }
+
     public String getContainingMethodDesc() {
         if (containingMethod == null) {
             return "(?)";
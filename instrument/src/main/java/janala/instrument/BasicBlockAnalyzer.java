@@ -0,0 +1,111 @@
+package janala.instrument;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A pre-pass over a class that finds, for each method, the labels at which
+ * a basic block may be entered other than by falling through: targets of
+ * jumps and switches, and exception handlers.
+ *
+ * <p>Labels are identified by the order in which they are visited, which
+ * is the same in every pass of a {@link ClassReader} with the same flags.
+ * This lets {@link FastCoverageMethodAdapter} know, while it instruments a
+ * method in a single streaming pass, whether straight-line code continues
+ * past a label.</p>
+ */
+public class BasicBlockAnalyzer extends ClassVisitor {
+
+  /** Block-start label ordinals, keyed by method name and descriptor. */
+  private final Map<String, BitSet> blockStarts = new HashMap<>();
+
+  private BasicBlockAnalyzer() {
+    super(Opcodes.ASM8);
+  }
+
+  /**
+   * Analyzes a class.
+   *
+   * @param cr the reader of the class
+   * @param readerFlags the flags with which the instrumenting pass accepts
+   *                    the reader as well
+   * @return the analysis result
+   */
+  public static BasicBlockAnalyzer analyze(ClassReader cr, int readerFlags) {
+    BasicBlockAnalyzer analyzer = new BasicBlockAnalyzer();
+    cr.accept(analyzer, readerFlags);
+    return analyzer;
+  }
+
+  /**
+   * Returns the ordinals of labels that start a basic block in a method.
+   *
+   * @param name the method name
+   * @param desc the method descriptor
+   * @return the set of visited-label ordinals at which a block may be
+   *         entered by a jump, or <code>null</code> if the method was not seen
+   */
+  public BitSet getBlockStarts(String name, String desc) {
+    return blockStarts.get(name + desc);
+  }
+
+  @Override
+  public MethodVisitor visitMethod(int access, String name, String desc,
+                                   String signature, String[] exceptions) {
+    final String key = name + desc;
+    return new MethodVisitor(Opcodes.ASM8) {
+      final List<Label> visited = new ArrayList<>();
+      final Set<Label> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+
+      @Override
+      public void visitLabel(Label label) {
+        visited.add(label);
+      }
+
+      @Override
+      public void visitJumpInsn(int opcode, Label label) {
+        targets.add(label);
+      }
+
+      @Override
+      public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        targets.add(dflt);
+        Collections.addAll(targets, labels);
+      }
+
+      @Override
+      public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        targets.add(dflt);
+        Collections.addAll(targets, labels);
+      }
+
+      @Override
+      public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+        targets.add(handler);
+      }
+
+      @Override
+      public void visitEnd() {
+        BitSet starts = new BitSet(visited.size());
+        for (int i = 0; i < visited.size(); i++) {
+          if (targets.contains(visited.get(i))) {
+            starts.set(i);
+          }
+        }
+        blockStarts.put(key, starts);
+      }
+    };
+  }
+}
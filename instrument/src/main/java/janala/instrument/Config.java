@@ -1,8 +1,11 @@
 package janala.instrument;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 class Config {
@@ -15,12 +18,30 @@ class Config {
   public final String analysisClass;
   public final String[] excludeInst;
   public final String[] includeInst;
+  public final String[] levelPrefixes;
+  public final InstrumentationLevel[] levels;
+  public final InstrumentationLevel defaultLevel;
+  private final String levelSpec;
   public final boolean instrumentHeapLoad;
   public final boolean instrumentAlloc;
+  public final boolean propagateTaskContext;
   public final String instrumentationCacheDir;
+  public final String probeIdManifest;
   public final boolean useFastCoverageInstrumentation;
+  public final boolean useFastCoverageInlineCounters;
+  public final boolean useFastCoverageProbePruning;
+
+  /** Warnings about configured levels that the selected instrumentation does not honour. */
+  final List<String> levelWarnings = new ArrayList<>();
 
   private Config() {
+      this(loadProperties());
+      for (String warning : levelWarnings) {
+          System.err.println("[WARNING] " + warning);
+      }
+  }
+
+  private static Properties loadProperties() {
       // Read properties from the conf file
       Properties properties = new Properties();
       try (InputStream propStream = new FileInputStream(propFile)) {
@@ -32,10 +53,18 @@ class Config {
 
       // Let JVM command-line properties override these
       properties.putAll(System.getProperties());
+      return properties;
+  }
 
+  /* Reads the configuration from properties, without printing warnings */
+  Config(Properties properties) {
       verbose = Boolean.parseBoolean(properties.getProperty("janala.verbose", "false"));
 
       useFastCoverageInstrumentation = Boolean.parseBoolean(properties.getProperty("useFastNonCollidingCoverageInstrumentation", "false"));
+      useFastCoverageInlineCounters = useFastCoverageInstrumentation &&
+              Boolean.parseBoolean(properties.getProperty("useFastCoverageInlineCounters", "false"));
+      useFastCoverageProbePruning = useFastCoverageInlineCounters &&
+              Boolean.parseBoolean(properties.getProperty("useFastCoverageProbePruning", "false"));
       if(useFastCoverageInstrumentation){
           analysisClass = "edu/berkeley/cs/jqf/instrument/tracing/FastCoverageSnoop";
       } else {
@@ -48,6 +77,10 @@ class Config {
       instrumentHeapLoad = Boolean.parseBoolean(properties.getProperty("janala.instrumentHeapLoad", "false"));
       instrumentAlloc = Boolean.parseBoolean(properties.getProperty("janala.instrumentAlloc", "false"));
 
+      // Trace tasks that instrumented code hands to executors on the pool threads that run them
+      propagateTaskContext = !useFastCoverageInstrumentation &&
+              Boolean.parseBoolean(properties.getProperty("janala.propagateTaskContext", "false"));
+
       if((instrumentAlloc || instrumentHeapLoad) && useFastCoverageInstrumentation){
           throw new UnsupportedOperationException("It is currently not possible to use allocation or heap load tracking in conjunction with fast coverage");
       }
@@ -67,7 +100,83 @@ class Config {
           includeInst = new String[0];
       }
 
+      // Per-package levels, e.g. "org/slf4j:method,com/google/common:method,org/example:edge"
+      defaultLevel = InstrumentationLevel.parse(properties.getProperty("janala.defaultLevel", "full"));
+      levelSpec = properties.getProperty("janala.levels", "");
+      String[] levelEntries = levelSpec.isEmpty() ? new String[0] : levelSpec.replace('.', '/').split(",");
+      levelPrefixes = new String[levelEntries.length];
+      levels = new InstrumentationLevel[levelEntries.length];
+      for (int i = 0; i < levelEntries.length; i++) {
+          int colon = levelEntries[i].lastIndexOf(':');
+          if (colon < 0) {
+              throw new IllegalArgumentException("Invalid janala.levels entry (expected prefix:level): " + levelEntries[i]);
+          }
+          levelPrefixes[i] = levelEntries[i].substring(0, colon).trim();
+          levels[i] = InstrumentationLevel.parse(levelEntries[i].substring(colon + 1));
+      }
+      checkLevel("janala.defaultLevel", defaultLevel);
+      for (int i = 0; i < levels.length; i++) {
+          checkLevel("janala.levels entry " + levelPrefixes[i], levels[i]);
+      }
+
       instrumentationCacheDir = properties.getProperty("janala.instrumentationCacheDir");
 
+      // Cached classes embed probe IDs, so the cache keeps its own manifest by default
+      String defaultManifest = instrumentationCacheDir != null ?
+              new File(instrumentationCacheDir, ProbeIdManifest.DEFAULT_FILE_NAME).getPath() : null;
+      probeIdManifest = useFastCoverageInstrumentation ?
+              properties.getProperty("janala.probeIdManifest", defaultManifest) : null;
+
+  }
+
+  /** Records a warning if the selected instrumentation treats a configured level like FULL. */
+  private void checkLevel(String source, InstrumentationLevel level) {
+      String mode = null;
+      if (!useFastCoverageInstrumentation && (level == InstrumentationLevel.METHOD || level == InstrumentationLevel.EDGE)) {
+          mode = "janala tracing";
+      } else if (useFastCoverageInstrumentation && level == InstrumentationLevel.EDGE) {
+          mode = "fast coverage";
+      }
+      if (mode != null) {
+          levelWarnings.add(source + ": level " + level + " is instrumented like FULL with " + mode);
+      }
+  }
+
+  /**
+   * Returns the instrumentation level of a class, which is given by the
+   * longest matching prefix in <code>janala.levels</code>, or else by
+   * <code>janala.defaultLevel</code>.
+   *
+   * @param cname the internal name of the class
+   * @return the level at which to instrument the class
+   */
+  public InstrumentationLevel levelFor(String cname) {
+    InstrumentationLevel level = defaultLevel;
+    int matched = -1;
+    for (int i = 0; i < levelPrefixes.length; i++) {
+      if (levelPrefixes[i].length() > matched && cname.startsWith(levelPrefixes[i])) {
+        level = levels[i];
+        matched = levelPrefixes[i].length();
+      }
+    }
+    return level;
+  }
+
+  /**
+   * Returns a string that identifies the settings which affect how
+   * classes are instrumented (but not which classes are instrumented).
+   *
+   * @return a fingerprint of the instrumentation settings
+   */
+  public String fingerprint() {
+    return "analysisClass=" + analysisClass +
+        ",fast=" + useFastCoverageInstrumentation +
+        ",inlineCounters=" + useFastCoverageInlineCounters +
+        ",probePruning=" + useFastCoverageProbePruning +
+        ",heapLoad=" + instrumentHeapLoad +
+        ",alloc=" + instrumentAlloc +
+        ",propagateTaskContext=" + propagateTaskContext +
+        ",defaultLevel=" + defaultLevel +
+        ",levels=" + levelSpec;
   }
 }
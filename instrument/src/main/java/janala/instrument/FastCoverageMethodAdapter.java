@@ -1,5 +1,14 @@
 package janala.instrument;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -15,10 +24,72 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
   private final GlobalStateForInstrumentation instrumentationState;
 
   private final int methodIID;
+
+  // Whether probes increment FastCoverageSnoop.COUNTERS directly instead of calling the snoop
+  private final boolean inlineCounters = Config.instance.useFastCoverageInlineCounters;
+
+  // Whether call sites, branches and switches are probed, or only the method entry
+  private final boolean edgeProbes;
+
+  // Ordinals of visited labels that start basic blocks, or null if probes are not pruned
+  private final BitSet blockStarts;
+  private int labelOrdinal = 0;
+
+  // A probe whose count equals the number of times execution reaches the current
+  // instruction, since no label or instruction in between can divert control flow.
+  // Probes at this point can be derived from it instead of being instrumented.
+  private static final int NO_LEADER = -1;
+  private int leader = NO_LEADER;
+
+  // The number of objects created by NEW whose constructor has not been called yet
+  private int uninitializedObjects = 0;
+
+  // Expanded stack map frames ({locals, stack}) of the labels visited so far
+  private final Map<Label, Object[][]> frames = new HashMap<>();
+  private final List<Label> unframedLabels = new ArrayList<>();
+
+  /** A probe on a jump target, emitted as <code>label: probe; GOTO target</code>. */
+  private static class Trampoline {
+    final Label label = new Label();
+    final Label target;
+    final int iid;
+    final int arm;
+
+    Trampoline(Label target, int iid, int arm) {
+      this.target = target;
+      this.iid = iid;
+      this.arm = arm;
+    }
+  }
+
+  // Trampolines emitted after the code of the method, each with the frame of its target
+  private final List<Trampoline> trampolines = new ArrayList<>();
+
   public FastCoverageMethodAdapter(MethodVisitor mv, String className,
                                    String methodName, String descriptor, String superName,
                                    GlobalStateForInstrumentation instrumentationState) {
+    this(mv, className, methodName, descriptor, superName, instrumentationState, null, true);
+  }
+
+  /**
+   * Creates an adapter that prunes probes whose counts can be derived from
+   * other probes, recording them in the derived probes of the instrumentation state.
+   * Pruning requires inline counters, since derived counts are reconstructed
+   * from the counter region.
+   *
+   * @param blockStarts the block-start label ordinals computed by
+   *                    {@link BasicBlockAnalyzer}, or <code>null</code> to
+   *                    instrument every probe
+   * @param edgeProbes whether to probe call sites, branches and switches,
+   *                   or only the method entry ({@link InstrumentationLevel#METHOD})
+   */
+  public FastCoverageMethodAdapter(MethodVisitor mv, String className,
+                                   String methodName, String descriptor, String superName,
+                                   GlobalStateForInstrumentation instrumentationState,
+                                   BitSet blockStarts, boolean edgeProbes) {
     super(ASM8, mv);
+    this.edgeProbes = edgeProbes;
+    this.blockStarts = inlineCounters ? blockStarts : null;
     this.isInit = methodName.equals("<init>");
     this.isSuperInitCalled = false;
     this.className = className;
@@ -33,12 +104,131 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
     Utils.addBipushInsn(mv, val);
   }
 
+  /** Increment the inline counter of a probe, i.e. COUNTERS[id]++, unless the probe was removed. */
+  private void addInlineCounterInsn(int id) {
+    if (instrumentationState.isProbeRemoved(id)) {
+      return;
+    }
+    mv.visitFieldInsn(GETSTATIC, Config.instance.analysisClass, "COUNTERS", "[I");
+    addBipushInsn(mv, id);
+    mv.visitInsn(DUP2);
+    mv.visitInsn(IALOAD);
+    mv.visitInsn(ICONST_1);
+    mv.visitInsn(IADD);
+    mv.visitInsn(IASTORE);
+  }
+
+  /** Log a probe with the given arm, either inline or via the snoop. */
+  private void addProbeInsn(int iid, int arm) {
+    if (inlineCounters) {
+      addInlineCounterInsn(iid + arm);
+    } else {
+      addBipushInsn(mv, iid);
+      addBipushInsn(mv, arm);
+      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGJUMP", "(II)V", false);
+    }
+  }
+
+  /** Returns whether a probe is instrumented, i.e. has not been removed. */
+  private boolean isProbed(int id) {
+    return !(inlineCounters && instrumentationState.isProbeRemoved(id));
+  }
+
+  /**
+   * Returns the label to jump to instead of <code>target</code> so that
+   * probe <code>iid + arm</code> is counted on the way, adding a trampoline
+   * to <code>into</code> unless the probe was removed.
+   */
+  private Label probeTarget(Label target, int iid, int arm, List<Trampoline> into) {
+    if (!isProbed(iid + arm)) {
+      return target;
+    }
+    Trampoline trampoline = new Trampoline(target, iid, arm);
+    into.add(trampoline);
+    return trampoline.label;
+  }
+
+  /**
+   * Emits trampolines. Each one starts with the stack map frame of its
+   * target, which is the state of every jump to the trampoline, so no
+   * frames need to be recomputed.
+   */
+  private void emitTrampolines(List<Trampoline> trampolines) {
+    for (Trampoline trampoline : trampolines) {
+      mv.visitLabel(trampoline.label);
+      if (instrumentationState.areFramesRequired()) {
+        Object[][] frame = frames.get(trampoline.target);
+        if (frame == null) {
+          throw new IllegalStateException("No stack map frame at jump target");
+        }
+        mv.visitFrame(F_NEW, frame[0].length, frame[0], frame[1].length, frame[1]);
+      }
+      addProbeInsn(trampoline.iid, trampoline.arm);
+      mv.visitJumpInsn(GOTO, trampoline.target);
+    }
+  }
+
+  /** Returns whether a probe can be derived from the current leader. */
+  private boolean hasLeader() {
+    return blockStarts != null && leader != NO_LEADER;
+  }
+
+  /** Returns whether an instruction without operands may throw or transfer control. */
+  private static boolean mayDivert(int opcode) {
+    switch (opcode) {
+      case IDIV:
+      case LDIV:
+      case IREM:
+      case LREM:
+        return true; // ArithmeticException
+      default:
+        return !((opcode >= NOP && opcode <= DCONST_1) ||
+                (opcode >= POP && opcode <= LXOR) ||
+                (opcode >= I2L && opcode <= DCMPG));
+    }
+  }
+
+  @Override
+  public void visitLabel(Label label) {
+    if (blockStarts != null && blockStarts.get(labelOrdinal++)) {
+      leader = NO_LEADER;
+    }
+    unframedLabels.add(label);
+    super.visitLabel(label);
+  }
+
+  @Override
+  public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+    if (type == F_NEW) {
+      // A frame follows the labels of its offset (and their line numbers)
+      Object[][] frame = {
+          numLocal > 0 ? Arrays.copyOf(local, numLocal) : new Object[0],
+          numStack > 0 ? Arrays.copyOf(stack, numStack) : new Object[0]
+      };
+      for (Label label : unframedLabels) {
+        frames.put(label, frame);
+      }
+    }
+    unframedLabels.clear();
+    super.visitFrame(type, numLocal, local, numStack, stack);
+  }
+
   @Override
   public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+    if (opcode == INVOKESPECIAL && name.equals("<init>") && uninitializedObjects > 0) {
+      uninitializedObjects--;
+    }
+    if (!edgeProbes) {
+      mv.visitMethodInsn(opcode, owner, name, desc, itf);
+      return;
+    }
     int iid = instrumentationState.incAndGetFastCoverageId();
-    addBipushInsn(mv, iid);
-    mv.visitInsn(ICONST_0);
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGJUMP", "(II)V", false);
+    if (hasLeader()) {
+      instrumentationState.getDerivedProbes().addCopy(iid, leader);
+    } else {
+      addProbeInsn(iid, 0);
+    }
+    leader = NO_LEADER; // The call may throw
 
     if (opcode == INVOKESPECIAL && name.equals("<init>")) {
 
@@ -76,15 +266,50 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
   @Override
   public void visitCode() {
     super.visitCode();
-    addBipushInsn(mv, methodIID);
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGMETHODBEGIN", "(I)V", false);
+    if (inlineCounters) {
+      addInlineCounterInsn(methodIID);
+    } else {
+      addBipushInsn(mv, methodIID);
+      mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGMETHODBEGIN", "(I)V", false);
+    }
+    leader = methodIID;
   }
 
-  private void addConditionalJumpInstrumentation(int opcode, Label finalBranchTarget,
-                                                 String instMethodName, String instMethodDesc) {
+  private void addConditionalJumpInstrumentation(int opcode, Label finalBranchTarget) {
     int iid = instrumentationState.incAndGetFastCoverageId();
     instrumentationState.incAndGetFastCoverageId(); //reserve another counter for the other side of this branch
 
+    if (uninitializedObjects == 0) {
+      // Count the taken side in a trampoline after the code of the method
+      mv.visitJumpInsn(opcode, probeTarget(finalBranchTarget, iid, 1, trampolines));
+      if (hasLeader()) {
+        // Every time the jump is reached, exactly one of the two sides is taken
+        instrumentationState.getDerivedProbes().addDifference(iid, leader, iid + 1);
+      } else {
+        addProbeInsn(iid, 0); // Mark branch as not taken
+      }
+      leader = iid;
+      return;
+    }
+
+    // Trampolines jump backwards, which the verifier rejects while an object is uninitialized
+    if (inlineCounters) {
+      // Count how often the jump is reached and not taken; taken is the difference
+      int reached = leader;
+      if (!hasLeader()) {
+        reached = iid + 1;
+        addInlineCounterInsn(reached);
+      }
+      mv.visitJumpInsn(opcode, finalBranchTarget);
+      addInlineCounterInsn(iid);
+      instrumentationState.getDerivedProbes().addDifference(iid + 1, reached, iid);
+      leader = iid;
+      return;
+    }
+    if (instrumentationState.areFramesRequired()) {
+      throw new IllegalStateException("Cannot probe a jump with uninitialized objects without computing frames");
+    }
+
     Label intermediateBranchTarget = new Label();
     Label fallthrough = new Label();
 
@@ -95,22 +320,28 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
     // Now instrument the branch target
     mv.visitLabel(intermediateBranchTarget);
-    addBipushInsn(mv, iid);
-    addBipushInsn(mv, 1); // Mark branch as taken
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, instMethodName, instMethodDesc, false);
+    addProbeInsn(iid, 1); // Mark branch as taken
     mv.visitJumpInsn(GOTO, finalBranchTarget); // Go to actual branch target
 
     // Now instrument the fall through
     mv.visitLabel(fallthrough);
-    addBipushInsn(mv, iid);
-    addBipushInsn(mv, 0); // Mark branch as not taken
-    mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, instMethodName, instMethodDesc, false);
+    if (hasLeader()) {
+      // Every time the jump is reached, exactly one of the two sides is taken
+      instrumentationState.getDerivedProbes().addDifference(iid, leader, iid + 1);
+    } else {
+      addProbeInsn(iid, 0); // Mark branch as not taken
+    }
+    leader = iid;
 
     // continue with fall-through code visiting
   }
 
   @Override
   public void visitJumpInsn(int opcode, Label label) {
+    if (!edgeProbes) {
+      mv.visitJumpInsn(opcode, label);
+      return;
+    }
     if (isInit && !isSuperInitCalled) {
       // Jumps in a constructor before super() or this() mess up the analysis
       throw new RuntimeException("Cannot handle jumps before super/this");
@@ -133,10 +364,11 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
       case IF_ACMPNE:
       case IFNULL:
       case IFNONNULL:
-        addConditionalJumpInstrumentation(opcode, label,  "LOGJUMP", "(II)V");
+        addConditionalJumpInstrumentation(opcode, label);
         break;
       case GOTO:
       case JSR:
+        leader = NO_LEADER;
         mv.visitJumpInsn(opcode, label);
         break;
       default:
@@ -153,12 +385,70 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
       case DRETURN:
       case ARETURN:
       case RETURN:
+        if (inlineCounters) {
+          break; // Method exits are not counted
+        }
         addBipushInsn(mv, methodIID);
         mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "LOGMETHODEND", "(I)V", false);
     }
+    if (mayDivert(opcode)) {
+      leader = NO_LEADER;
+    }
     super.visitInsn(opcode);
   }
 
+  @Override
+  public void visitIntInsn(int opcode, int operand) {
+    if (opcode == NEWARRAY) {
+      leader = NO_LEADER;
+    }
+    super.visitIntInsn(opcode, operand);
+  }
+
+  @Override
+  public void visitVarInsn(int opcode, int var) {
+    if (opcode == RET) {
+      leader = NO_LEADER;
+    }
+    super.visitVarInsn(opcode, var);
+  }
+
+  @Override
+  public void visitTypeInsn(int opcode, String type) {
+    if (opcode == NEW) {
+      uninitializedObjects++;
+    }
+    leader = NO_LEADER;
+    super.visitTypeInsn(opcode, type);
+  }
+
+  @Override
+  public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+    leader = NO_LEADER;
+    super.visitFieldInsn(opcode, owner, name, descriptor);
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                     Object... bootstrapMethodArguments) {
+    leader = NO_LEADER;
+    super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+  }
+
+  @Override
+  public void visitLdcInsn(Object value) {
+    if (!(value instanceof Number || value instanceof String)) {
+      leader = NO_LEADER; // Class, method handle and dynamic constants may fail to resolve
+    }
+    super.visitLdcInsn(value);
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+    leader = NO_LEADER;
+    super.visitMultiANewArrayInsn(descriptor, numDimensions);
+  }
+
   private Integer lastLineNumber = 0;
 
   @Override
@@ -178,6 +468,19 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
   @Override
   public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+    if (!edgeProbes) {
+      mv.visitTableSwitchInsn(min, max, dflt, labels);
+      return;
+    }
+    if (inlineCounters) {
+      List<Trampoline> armProbes = switchArmTrampolines();
+      int iid = instrumentationState.incAndGetFastCoverageId();
+      Label[] targets = addSwitchArmProbes(iid, labels, armProbes);
+      Label dfltTarget = addSwitchDefaultProbe(iid, dflt, labels.length, armProbes);
+      mv.visitTableSwitchInsn(min, max, dfltTarget, targets);
+      emitSwitchArmTrampolines(armProbes);
+      return;
+    }
     // Save operand value
     //addValueReadInsn(mv, "I", "GETVALUE_");
     mv.visitInsn(Opcodes.DUP);
@@ -202,6 +505,19 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
 
   @Override
   public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+    if (!edgeProbes) {
+      mv.visitLookupSwitchInsn(dflt, keys, labels);
+      return;
+    }
+    if (inlineCounters) {
+      List<Trampoline> armProbes = switchArmTrampolines();
+      int iid = instrumentationState.incAndGetFastCoverageId();
+      Label[] targets = addSwitchArmProbes(iid, labels, armProbes);
+      Label dfltTarget = addSwitchDefaultProbe(iid, dflt, labels.length, armProbes);
+      mv.visitLookupSwitchInsn(dfltTarget, keys, targets);
+      emitSwitchArmTrampolines(armProbes);
+      return;
+    }
     // Save operand value
     mv.visitInsn(Opcodes.DUP);
 
@@ -227,8 +543,76 @@ public class FastCoverageMethodAdapter extends MethodVisitor implements Opcodes
     mv.visitLookupSwitchInsn(dflt, keys, labels);
   }
 
+  /**
+   * Returns the list to which trampolines for the arms of a switch are
+   * added: those after the code of the method, or a separate list if
+   * uninitialized objects prevent jumping back from there.
+   */
+  private List<Trampoline> switchArmTrampolines() {
+    if (uninitializedObjects == 0) {
+      return trampolines;
+    }
+    if (instrumentationState.areFramesRequired()) {
+      throw new IllegalStateException("Cannot probe a switch with uninitialized objects without computing frames");
+    }
+    return new ArrayList<>();
+  }
+
+  /**
+   * Allocates a probe for each arm of a switch and returns the targets to
+   * jump to instead of <code>labels</code>. Arm <code>i</code> is logged as
+   * <code>iid + i + 1</code>, the same as the snoop-based probes.
+   */
+  private Label[] addSwitchArmProbes(int iid, Label[] labels, List<Trampoline> armProbes) {
+    Label[] targets = new Label[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      instrumentationState.incAndGetFastCoverageId();
+      targets[i] = probeTarget(labels[i], iid, i + 1, armProbes);
+    }
+    return targets;
+  }
+
+  /**
+   * Allocates a probe for the default arm of a switch, logged as
+   * <code>iid + numArms + 1</code>, and returns the target to jump to
+   * instead of <code>dflt</code>.
+   */
+  private Label addSwitchDefaultProbe(int iid, Label dflt, int numArms, List<Trampoline> armProbes) {
+    instrumentationState.incAndGetFastCoverageId();
+    Label dfltTarget = dflt;
+    if (hasLeader()) {
+      // Every time the switch is reached, exactly one arm is taken
+      int[] arms = new int[numArms];
+      for (int i = 0; i < numArms; i++) {
+        arms[i] = iid + i + 1;
+      }
+      instrumentationState.getDerivedProbes().addDifference(iid + numArms + 1, leader, arms);
+    } else {
+      dfltTarget = probeTarget(dflt, iid, numArms + 1, armProbes);
+    }
+    leader = NO_LEADER;
+    return dfltTarget;
+  }
+
+  /** Emits the trampolines of a switch right after it, unless they are emitted after the code. */
+  private void emitSwitchArmTrampolines(List<Trampoline> armProbes) {
+    if (armProbes != trampolines) {
+      emitTrampolines(armProbes);
+    }
+  }
+
+  @Override
+  public void visitEnd() {
+    if (inlineCounters) {
+      // Grow the counter region before the class using these probes is defined
+      FastCoverageSnoop.ensureCounterCapacity(instrumentationState.getFastCoverageId() + 1);
+    }
+    super.visitEnd();
+  }
+
   @Override
   public void visitMaxs(int maxStack, int maxLocals) {
+    emitTrampolines(trampolines);
     //Allow ASM to calculate the correct maxStack by passing '0' as the maximum stack value.
     mv.visitMaxs(0, maxLocals);
   }
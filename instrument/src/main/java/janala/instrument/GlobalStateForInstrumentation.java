@@ -1,20 +1,109 @@
 package janala.instrument;
 
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /** An object to keep track of (classId, methodId, instructionId) tuples during
- instrumentation. */
+ the instrumentation of a single class.
+
+ Each transformation uses its own instance, so classes can be instrumented
+ concurrently. Janala IDs are derived from the class name and the position
+ of instructions in the class, and fast coverage IDs are a contiguous block
+ per class, so neither depends on what else is being instrumented. */
 public class GlobalStateForInstrumentation {
-  public static GlobalStateForInstrumentation instance = new GlobalStateForInstrumentation();
   private int iid = 0;
   private int mid = 0;
   private int cid = 0;
 
   // JQF's Fast Coverage implementation uses a plain int, no bit packing, no truncation errors
+  private int fastCoverageBase = 0;
   private int fastCoverageIID = 0;
+
+  // The next fast coverage ID that has not been reserved by any class
+  private static final AtomicInteger nextFastCoverageId = new AtomicInteger(1);
+
+  // Probes of this class whose counts are derived from other probes
+  private ProbeReconstructionTable derivedProbes = new ProbeReconstructionTable();
+
+  // Probes that are allocated as usual but not instrumented, or null
+  private BitSet removedProbes = null;
+
+  // Whether inserted code must carry stack map frames, as the class writer does not compute them
+  private boolean framesRequired = false;
+
   public int incAndGetFastCoverageId(){
-    fastCoverageIID++;
+    return fastCoverageBase + fastCoverageIID++;
+  }
+
+  /** Returns the highest fast coverage ID handed out so far. */
+  public int getFastCoverageId() {
+    return fastCoverageBase + fastCoverageIID - 1;
+  }
+
+  /** Returns the number of fast coverage IDs handed out so far. */
+  public int getFastCoverageIdCount() {
     return fastCoverageIID;
   }
 
+  /** Sets the first fast coverage ID of this class, before any are handed out. */
+  public void setFastCoverageBase(int base) {
+    assert fastCoverageIID == 0;
+    this.fastCoverageBase = base;
+  }
+
+  public int getFastCoverageBase() {
+    return fastCoverageBase;
+  }
+
+  public ProbeReconstructionTable getDerivedProbes() {
+    return derivedProbes;
+  }
+
+  /** Sets the probes to leave out when re-instrumenting a class, see {@link RemovedProbes}. */
+  public void setRemovedProbes(BitSet removedProbes) {
+    this.removedProbes = removedProbes;
+  }
+
+  public boolean isProbeRemoved(int id) {
+    return removedProbes != null && removedProbes.get(id);
+  }
+
+  public void setFramesRequired(boolean framesRequired) {
+    this.framesRequired = framesRequired;
+  }
+
+  public boolean areFramesRequired() {
+    return framesRequired;
+  }
+
+  /**
+   * Forgets the IDs handed out so far, to instrument the same class again.
+   * The class ID, fast coverage base and removed probes are kept, so the
+   * second pass hands out the same IDs as the first.
+   */
+  public void restart() {
+    this.iid = 0;
+    this.mid = 0;
+    this.fastCoverageIID = 0;
+    this.derivedProbes = new ProbeReconstructionTable();
+    this.framesRequired = false;
+  }
+
+  /**
+   * Reserves a contiguous block of fast coverage IDs for a class.
+   *
+   * @param count the number of IDs
+   * @return the first ID of the block
+   */
+  public static int reserveFastCoverageIds(int count) {
+    return nextFastCoverageId.getAndAdd(count);
+  }
+
+  /** Ensures that IDs reserved later are greater than <code>id</code>. */
+  public static void reserveFastCoverageIdsUpTo(int id) {
+    nextFastCoverageId.accumulateAndGet(id + 1, Math::max);
+  }
+
 
   // When one gets the id, she gets the result of merging all three ids.
   // NOTE: Beaware of truncation errors.
@@ -0,0 +1,332 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A content-addressed cache of instrumented classes, stored in a single
+ * append-only pack file that may be shared by concurrently running JVMs.
+ *
+ * <p>Entries are keyed by a SHA-256 digest of the original class bytes, the
+ * instrumentation {@linkplain Config#fingerprint() configuration} and the
+ * version of JQF, so a class instrumented under one configuration is never
+ * served under another. Each record in the pack is laid out as:</p>
+ *
+ * <pre>
+ *   int magic | byte[32] key | int metadataLength | int dataLength | int crc32
+ *   | int[metadataLength] metadata | byte[dataLength] data
+ * </pre>
+ *
+ * <p>Writers append records while holding an exclusive lock on the pack
+ * file. Readers memory-map the file without locking and build an in-memory
+ * index of record offsets, which is extended when a lookup misses and the
+ * file has grown. Records that are incomplete (still being written) or
+ * corrupt (e.g. torn by a crashed writer) fail the checksum and are skipped
+ * by searching for the next valid record.</p>
+ */
+public class InstrumentationCache {
+
+  /** The name of the pack file in the cache directory. */
+  public static final String PACK_FILE_NAME = "instrumented-classes.pack";
+
+  private static final int MAGIC = 0x4A514643; // "JQFC"
+  private static final int KEY_LENGTH = 32;
+  private static final int HEADER_LENGTH = 4 + KEY_LENGTH + 4 + 4 + 4;
+
+  /** A cached instrumented class. */
+  public static class Entry {
+    public final byte[] data;
+    public final int[] metadata;
+
+    Entry(byte[] data, int[] metadata) {
+      this.data = data;
+      this.metadata = metadata;
+    }
+  }
+
+  private final FileChannel channel;
+  private final byte[] salt;
+
+  /** Offsets of valid records in the pack, by key. */
+  private final Map<ByteBuffer, Integer> index = new HashMap<>();
+  private MappedByteBuffer map;
+
+  /** The offset from which the pack has not yet been indexed. */
+  private int indexedUpTo = 0;
+
+  private InstrumentationCache(FileChannel channel, String configFingerprint) {
+    this.channel = channel;
+    this.salt = (configFingerprint + "\n" + jqfVersion() + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Opens (creating if necessary) the cache in a directory.
+   *
+   * @param dir the cache directory
+   * @return the cache
+   * @throws IOException if the pack file cannot be opened
+   */
+  public static InstrumentationCache open(File dir) throws IOException {
+    return open(dir, Config.instance.fingerprint());
+  }
+
+  /* Opens the cache for classes instrumented with the given settings */
+  static InstrumentationCache open(File dir, String configFingerprint) throws IOException {
+    dir.mkdirs();
+    FileChannel channel = FileChannel.open(new File(dir, PACK_FILE_NAME).toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new InstrumentationCache(channel, configFingerprint);
+  }
+
+  /**
+   * Closes the pack file.
+   *
+   * @throws IOException if the pack file cannot be closed
+   */
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Computes the cache key of a class.
+   *
+   * @param original the original class bytes
+   * @param probeBase the first fast coverage probe ID of the class, or 0
+   * @return the key under which the instrumented class is cached
+   */
+  public byte[] key(byte[] original, int probeBase) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(salt);
+      digest.update(ByteBuffer.allocate(4).putInt(probeBase).array());
+      return digest.digest(original);
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("SHA-256 is always supported", e);
+    }
+  }
+
+  /**
+   * Looks up an instrumented class.
+   *
+   * @param key the cache key
+   * @return the cached entry, or <code>null</code> if there is none
+   * @throws IOException if the pack file cannot be read
+   */
+  public synchronized Entry get(byte[] key) throws IOException {
+    ByteBuffer k = ByteBuffer.wrap(key);
+    Integer offset = index.get(k);
+    if (offset == null) {
+      refresh();
+      offset = index.get(k);
+      if (offset == null) {
+        return null;
+      }
+    }
+    ByteBuffer record = map.duplicate();
+    record.position(offset + 4 + KEY_LENGTH);
+    int metadataLength = record.getInt();
+    int dataLength = record.getInt();
+    record.getInt(); // crc32, checked when indexed
+    int[] metadata = new int[metadataLength];
+    record.asIntBuffer().get(metadata);
+    record.position(record.position() + 4 * metadataLength);
+    byte[] data = new byte[dataLength];
+    record.get(data);
+    return new Entry(data, metadata);
+  }
+
+  /**
+   * Adds an instrumented class to the cache, unless another JVM has
+   * already added it.
+   *
+   * @param key the cache key
+   * @param data the instrumented class bytes
+   * @param metadata additional information to restore on a cache hit
+   * @throws IOException if the pack file cannot be written
+   */
+  public synchronized void put(byte[] key, byte[] data, int[] metadata) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + 4 * metadata.length + data.length);
+    record.putInt(MAGIC);
+    record.put(key);
+    record.putInt(metadata.length);
+    record.putInt(data.length);
+    record.putInt(0); // crc32, filled in below
+    for (int m : metadata) {
+      record.putInt(m);
+    }
+    record.put(data);
+    record.putInt(4 + KEY_LENGTH + 8, crc(record, 0));
+    record.flip();
+
+    try (FileLock lock = channel.lock()) {
+      refresh();
+      if (index.containsKey(ByteBuffer.wrap(key))) {
+        return;
+      }
+      long position = channel.size();
+      if (position + record.remaining() > Integer.MAX_VALUE) {
+        return; // The pack is full
+      }
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+    }
+  }
+
+  /** Maps the current contents of the pack and indexes new records. */
+  private void refresh() throws IOException {
+    long size = Math.min(channel.size(), Integer.MAX_VALUE);
+    if (map != null && size == map.capacity()) {
+      return;
+    }
+    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    int offset = indexedUpTo;
+    while (offset < size) {
+      int length = validRecordLength(offset);
+      if (length < 0) {
+        // Skip a torn record if a valid one follows; otherwise it may still be being written
+        int next = findValidRecord(offset + 1);
+        if (next < 0) {
+          break;
+        }
+        offset = next;
+        continue;
+      }
+      byte[] key = new byte[KEY_LENGTH];
+      ByteBuffer record = map.duplicate();
+      record.position(offset + 4);
+      record.get(key);
+      index.putIfAbsent(ByteBuffer.wrap(key), offset);
+      offset += length;
+    }
+    indexedUpTo = offset;
+  }
+
+  /* Returns the offset of the next valid record at or after `from`, or -1 */
+  private int findValidRecord(int from) {
+    for (int offset = from; offset + HEADER_LENGTH <= map.capacity(); offset++) {
+      if (map.getInt(offset) == MAGIC && validRecordLength(offset) >= 0) {
+        return offset;
+      }
+    }
+    return -1;
+  }
+
+  /* Returns the length of the complete, valid record at `offset`, or -1 */
+  private int validRecordLength(int offset) {
+    int capacity = map.capacity();
+    if (offset + HEADER_LENGTH > capacity || map.getInt(offset) != MAGIC) {
+      return -1;
+    }
+    long metadataLength = map.getInt(offset + 4 + KEY_LENGTH);
+    long dataLength = map.getInt(offset + 4 + KEY_LENGTH + 4);
+    if (metadataLength < 0 || dataLength < 0) {
+      return -1;
+    }
+    long length = HEADER_LENGTH + 4 * metadataLength + dataLength;
+    if (offset + length > capacity) {
+      return -1;
+    }
+    ByteBuffer record = map.duplicate();
+    record.position(offset);
+    record.limit((int) (offset + length));
+    if (crc(record.slice(), map.getInt(offset + 4 + KEY_LENGTH + 8)) != 0) {
+      return -1;
+    }
+    return (int) length;
+  }
+
+  /**
+   * Computes the checksum of a record, excluding its magic number, with
+   * the stored checksum replaced by zero.
+   *
+   * @return the checksum XOR <code>stored</code>, which is zero iff the stored checksum matches
+   */
+  private static int crc(ByteBuffer record, int stored) {
+    CRC32 crc = new CRC32();
+    ByteBuffer body = record.duplicate();
+    body.position(4);
+    body.limit(4 + KEY_LENGTH + 8);
+    crc.update(body);
+    crc.update(new byte[4]);
+    body.limit(record.limit());
+    body.position(HEADER_LENGTH);
+    crc.update(body);
+    return (int) crc.getValue() ^ stored;
+  }
+
+  /** Returns the version of JQF, including the build time of snapshot builds. */
+  static String jqfVersion() {
+    Package pkg = InstrumentationCache.class.getPackage();
+    String version = pkg != null ? pkg.getImplementationVersion() : null;
+    if (version == null || version.endsWith("-SNAPSHOT")) {
+      // Instrumentation may change between snapshot builds of the same version
+      CodeSource source = InstrumentationCache.class.getProtectionDomain().getCodeSource();
+      URL location = source != null ? source.getLocation() : null;
+      version = version + "@" + buildStamp(location);
+    }
+    return version;
+  }
+
+  /**
+   * Returns a stamp of the classes of JQF that changes whenever they are
+   * rebuilt.
+   *
+   * <p>For a JAR, this is its modification time and size. For a directory
+   * of classes (e.g. <code>instrument/target/classes</code> when running
+   * from a source tree), whose own modification time does not change when
+   * the files in it are recompiled, the modification times and sizes of
+   * all class files are hashed. If the classes cannot be found, the stamp
+   * is unique to this JVM, so that cached classes are never reused.</p>
+   *
+   * @param location the location of the code source, or <code>null</code>
+   * @return the stamp
+   */
+  static String buildStamp(URL location) {
+    try {
+      if (location != null && "file".equals(location.getProtocol())) {
+        Path path = Paths.get(location.toURI());
+        if (Files.isRegularFile(path)) {
+          return Files.getLastModifiedTime(path).toMillis() + "-" + Files.size(path);
+        }
+        if (Files.isDirectory(path)) {
+          CRC32 crc = new CRC32();
+          List<Path> classFiles;
+          try (Stream<Path> files = Files.walk(path)) {
+            classFiles = files.filter(f -> f.toString().endsWith(".class"))
+                .sorted()
+                .collect(Collectors.toList());
+          }
+          for (Path f : classFiles) {
+            String entry = path.relativize(f) + " " + Files.getLastModifiedTime(f).toMillis() + " " + Files.size(f) + "\n";
+            crc.update(entry.getBytes(StandardCharsets.UTF_8));
+          }
+          return "dir-" + Long.toHexString(crc.getValue()) + "-" + classFiles.size();
+        }
+      }
+    } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+      // Fall through
+    }
+    return "unknown-" + System.identityHashCode(InstrumentationCache.class) + "-" + System.nanoTime();
+  }
+}
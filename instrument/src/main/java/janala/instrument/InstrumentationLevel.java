@@ -0,0 +1,42 @@
+package janala.instrument;
+
+/**
+ * How much instrumentation a class receives, configured per package or
+ * class with the property <code>janala.levels</code>.
+ *
+ * <p>Levels below {@link #FULL} only reduce fast coverage instrumentation.
+ * Janala tracing follows every instruction of an instrumented method to
+ * reconstruct calls and returns, so in that mode {@link #METHOD} and
+ * {@link #EDGE} classes are traced in full. Fast coverage has no probes
+ * beyond edges, so there {@link #EDGE} is the same as {@link #FULL}. A
+ * warning is printed when such a level is configured.</p>
+ */
+public enum InstrumentationLevel {
+  /** The class is not instrumented, as if it were excluded. */
+  NONE,
+
+  /** Only method entries are counted. */
+  METHOD,
+
+  /** Method entries, call sites, branches and switch arms are counted. */
+  EDGE,
+
+  /** Everything the selected instrumentation supports. */
+  FULL;
+
+  /**
+   * Parses a level name.
+   *
+   * @param name one of <code>none</code>, <code>method</code>,
+   *             <code>edge</code> or <code>full</code>, ignoring case
+   * @return the level
+   * @throws IllegalArgumentException if the name is not a level
+   */
+  public static InstrumentationLevel parse(String name) {
+    try {
+      return valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid instrumentation level (expected none, method, edge or full): " + name);
+    }
+  }
+}
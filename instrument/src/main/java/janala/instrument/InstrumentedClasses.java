@@ -0,0 +1,84 @@
+package janala.instrument;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A record of the classes that have been instrumented in this JVM.
+ *
+ * <p>Coverage keys are derived from class names and the positions of
+ * instructions, so the keys recorded by one JVM mean the same in
+ * another JVM if the instrumentation {@linkplain #configFingerprint()
+ * settings} are the same and every class that was instrumented in the
+ * first JVM has the same bytes in the second. This allows fuzzing
+ * state to be persisted across runs.</p>
+ */
+public class InstrumentedClasses {
+
+  /** Hashes of original class bytes, by internal class name. */
+  private static final Map<String, Long> hashes = new ConcurrentHashMap<>();
+
+  private InstrumentedClasses() { }
+
+  /**
+   * Records that a class has been instrumented.
+   *
+   * @param cname the internal name of the class
+   * @param original the original class bytes
+   */
+  static void record(String cname, byte[] original) {
+    hashes.computeIfAbsent(cname, k -> hash(original));
+  }
+
+  /**
+   * Returns the classes instrumented so far.
+   *
+   * @return the {@linkplain #hash(byte[]) hashes} of the original bytes of
+   *         the instrumented classes, by internal class name
+   */
+  public static SortedMap<String, Long> snapshot() {
+    return new TreeMap<>(hashes);
+  }
+
+  /**
+   * Computes the hash that identifies a version of a class.
+   *
+   * @param original the original class bytes
+   * @return a 64-bit hash of the class bytes
+   */
+  public static long hash(byte[] original) {
+    try {
+      byte[] sha = MessageDigest.getInstance("SHA-256").digest(original);
+      return ByteBuffer.wrap(sha).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("SHA-256 is always supported", e);
+    }
+  }
+
+  /**
+   * Returns a string that identifies the instrumentation settings and
+   * the version of JQF that instruments classes.
+   *
+   * @return a fingerprint of the instrumentation settings
+   */
+  public static String configFingerprint() {
+    return Config.instance.fingerprint() + ",jqf=" + InstrumentationCache.jqfVersion();
+  }
+
+  /**
+   * Returns whether coverage keys only depend on the instrumented
+   * classes and settings, and not on the order in which classes were
+   * loaded. Fast coverage probe IDs are assigned in load order unless
+   * they are persisted in a probe ID manifest.
+   *
+   * @return whether coverage keys are the same in every JVM
+   */
+  public static boolean hasStableKeys() {
+    return !Config.instance.useFastCoverageInstrumentation || Config.instance.probeIdManifest != null;
+  }
+}
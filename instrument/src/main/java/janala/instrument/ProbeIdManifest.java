@@ -0,0 +1,307 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A persisted assignment of fast coverage probe IDs to classes, which
+ * makes probe IDs independent of the order in which classes are loaded.
+ *
+ * <p>Each instrumented class owns a contiguous block of probe IDs. A class
+ * is identified by its internal name together with a hash of its original
+ * bytes and the instrumentation {@linkplain Config#fingerprint() settings};
+ * a class that is seen again gets the same block in every JVM that shares
+ * the manifest, whereas a class whose bytes or probe count changed gets a
+ * fresh block, so that IDs recorded for one version of a class are never
+ * attributed to another. IDs stay dense, as expected by the array-backed
+ * coverage counters.</p>
+ *
+ * <p>The manifest is a text file with a header line followed by one line
+ * per block:</p>
+ *
+ * <pre>
+ *   # jqf probe ID manifest version
+ *   base count hash className
+ * </pre>
+ *
+ * <p>Lines are only ever appended, while holding an exclusive lock on the
+ * file, so the manifest may be shared by concurrently running JVMs of the
+ * same version of JQF with the same settings. A block that overlaps an
+ * earlier one (e.g. in a manifest that was edited or concatenated by hand)
+ * is ignored.</p>
+ *
+ * <p>The version in the header identifies the version of JQF and the
+ * instrumentation settings. A manifest with another version is emptied
+ * when it is opened; otherwise, the blocks of classes that are no longer
+ * instrumented that way would take up probe IDs forever.</p>
+ */
+public class ProbeIdManifest {
+
+  /** The default name of the manifest in the instrumentation cache directory. */
+  public static final String DEFAULT_FILE_NAME = "probe-ids.manifest";
+
+  /** A block of probe IDs. */
+  public static class Block {
+    public final int base;
+    public final int count;
+
+    /** Whether the block is recorded in a manifest, and is therefore the same in every run. */
+    public final boolean fromManifest;
+
+    public Block(int base, int count) {
+      this(base, count, true);
+    }
+
+    public Block(int base, int count, boolean fromManifest) {
+      this.base = base;
+      this.count = count;
+      this.fromManifest = fromManifest;
+    }
+  }
+
+  private final FileChannel channel;
+  private final byte[] salt;
+  private final String header;
+
+  /** Blocks by class name and hash. */
+  private final Map<String, Block> blocks = new HashMap<>();
+
+  /** Block sizes by base, for detecting overlapping blocks. */
+  private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+
+  /** The first ID after all blocks in the manifest. */
+  private int limit = 1;
+
+  /** The offset from which the file has not yet been read. */
+  private long readUpTo = 0;
+
+  private ProbeIdManifest(FileChannel channel, String configFingerprint) {
+    this.channel = channel;
+    this.salt = (configFingerprint + "\n").getBytes(StandardCharsets.UTF_8);
+    this.header = "# jqf probe ID manifest " +
+        hash((InstrumentationCache.jqfVersion() + "\n").getBytes(StandardCharsets.UTF_8)) + "\n";
+  }
+
+  /**
+   * Opens (creating if necessary) a manifest.
+   *
+   * @param file the manifest file
+   * @return the manifest
+   * @throws IOException if the file cannot be opened or read
+   */
+  public static ProbeIdManifest open(File file) throws IOException {
+    return open(file, Config.instance.fingerprint());
+  }
+
+  /* Opens the manifest for classes instrumented with the given settings */
+  static ProbeIdManifest open(File file, String configFingerprint) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null) {
+      dir.mkdirs();
+    }
+    FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ProbeIdManifest manifest = new ProbeIdManifest(channel, configFingerprint);
+    synchronized (manifest) {
+      manifest.checkVersion();
+      manifest.refresh();
+    }
+    return manifest;
+  }
+
+  /**
+   * Closes the manifest file.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Computes the hash that identifies a version of a class.
+   *
+   * @param original the original class bytes
+   * @return a hash of the class bytes and the instrumentation settings
+   */
+  public String hash(byte[] original) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(salt);
+      byte[] sha = digest.digest(original);
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        sb.append(String.format("%02x", sha[i]));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("SHA-256 is always supported", e);
+    }
+  }
+
+  /**
+   * Looks up the block of a class.
+   *
+   * @param className the internal name of the class
+   * @param hash the {@linkplain #hash(byte[]) hash} of the class
+   * @return the block of the class, or <code>null</code> if it has none yet
+   * @throws IOException if the manifest cannot be read
+   */
+  public synchronized Block get(String className, String hash) throws IOException {
+    Block block = blocks.get(key(className, hash));
+    if (block == null) {
+      refresh();
+      block = blocks.get(key(className, hash));
+    }
+    return block;
+  }
+
+  /**
+   * Returns the block of a class, appending a new block to the manifest
+   * if the class has none or if its block has a different size.
+   *
+   * @param className the internal name of the class
+   * @param hash the {@linkplain #hash(byte[]) hash} of the class
+   * @param count the number of probe IDs of the class
+   * @return the block of the class
+   * @throws IOException if the manifest cannot be read or written
+   */
+  public synchronized Block assign(String className, String hash, int count) throws IOException {
+    Block block = blocks.get(key(className, hash));
+    if (block != null && block.count == count) {
+      return block;
+    }
+    try (FileLock lock = channel.lock()) {
+      refresh(); // Another JVM may have assigned a block in the meantime
+      block = blocks.get(key(className, hash));
+      if (block != null && block.count == count) {
+        return block;
+      }
+      // IDs handed out in this JVM without the manifest must not be reused
+      int base = Math.max(limit, GlobalStateForInstrumentation.reserveFastCoverageIds(0));
+      String line = base + " " + count + " " + hash + " " + className + "\n";
+      long position = channel.size();
+      if (position > readUpTo) {
+        // A partial line left by a crashed writer must not swallow this one
+        line = "\n" + line;
+      }
+      ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+      while (buf.hasRemaining()) {
+        position += channel.write(buf, position);
+      }
+      refresh();
+      return blocks.get(key(className, hash));
+    }
+  }
+
+  /**
+   * Returns the first ID after all blocks in the manifest.
+   *
+   * @return the number of IDs that the manifest accounts for, plus one
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  private static String key(String className, String hash) {
+    return className + " " + hash;
+  }
+
+  /** Empties the manifest if it was written by another version or with other settings. */
+  private void checkVersion() throws IOException {
+    byte[] expected = header.getBytes(StandardCharsets.UTF_8);
+    try (FileLock lock = channel.lock()) {
+      ByteBuffer buf = ByteBuffer.allocate(expected.length);
+      while (buf.hasRemaining()) {
+        if (channel.read(buf, buf.position()) < 0) {
+          break;
+        }
+      }
+      if (buf.hasRemaining() || !Arrays.equals(buf.array(), expected)) {
+        channel.truncate(0);
+        ByteBuffer headerBuf = ByteBuffer.wrap(expected);
+        long position = 0;
+        while (headerBuf.hasRemaining()) {
+          position += channel.write(headerBuf, position);
+        }
+      }
+    }
+  }
+
+  /** Reads the lines appended to the manifest since it was last read. */
+  private void refresh() throws IOException {
+    long size = channel.size();
+    if (size <= readUpTo) {
+      return;
+    }
+    ByteBuffer buf = ByteBuffer.allocate((int) (size - readUpTo));
+    long position = readUpTo;
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, position);
+      if (n < 0) {
+        break;
+      }
+      position += n;
+    }
+    byte[] bytes = buf.array();
+    int start = 0;
+    for (int i = 0; i < buf.position(); i++) {
+      if (bytes[i] == '\n') {
+        // Only complete lines are read; a partial line is still being written
+        parse(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+        start = i + 1;
+      }
+    }
+    readUpTo += start;
+  }
+
+  private void parse(String line) {
+    if (line.startsWith("#")) {
+      return;
+    }
+    String[] fields = line.trim().split(" ");
+    if (fields.length != 4) {
+      return;
+    }
+    int base, count;
+    try {
+      base = Integer.parseInt(fields[0]);
+      count = Integer.parseInt(fields[1]);
+    } catch (NumberFormatException e) {
+      return;
+    }
+    if (base <= 0 || count < 0 || base + count < base || overlaps(base, count)) {
+      return;
+    }
+    String key = key(fields[3], fields[2]);
+    Block block = new Block(base, count);
+    blocks.put(key, block); // A later block replaces one with a different size
+    if (count > 0) {
+      ranges.put(base, count);
+    }
+    limit = Math.max(limit, base + count);
+  }
+
+  private boolean overlaps(int base, int count) {
+    if (count == 0) {
+      return false;
+    }
+    Map.Entry<Integer, Integer> before = ranges.floorEntry(base);
+    if (before != null && before.getKey() + before.getValue() > base) {
+      return true;
+    }
+    Integer after = ranges.higherKey(base);
+    return after != null && after < base + count;
+  }
+}
@@ -0,0 +1,130 @@
+package janala.instrument;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A table of fast coverage probes that are not instrumented because their
+ * counts can be derived from those of other probes.
+ *
+ * <p>Each entry defines the count of a derived probe as the count of a
+ * source probe minus the sum of the counts of zero or more other probes.
+ * A source may itself be derived by an earlier entry; entries are applied
+ * in the order in which they were added.</p>
+ */
+public class ProbeReconstructionTable {
+  /** The table of all derived probes in this JVM. */
+  public static final ProbeReconstructionTable instance = new ProbeReconstructionTable();
+
+  /** Entries, each encoded as (derived, source, n, subtracted_1, ..., subtracted_n). */
+  private int[] entries = new int[1024];
+  private int length = 0;
+  private int numDerived = 0;
+
+  /** Probes from which the counts of derived probes are computed. */
+  private final BitSet referenced = new BitSet();
+
+  /**
+   * Records that a probe always has the same count as another.
+   *
+   * @param derived the probe that is not instrumented
+   * @param source the probe whose count it has
+   */
+  public void addCopy(int derived, int source) {
+    addDifference(derived, source);
+  }
+
+  /**
+   * Records that a probe's count is that of a source probe minus the
+   * counts of some other probes.
+   *
+   * @param derived the probe that is not instrumented
+   * @param source the probe whose count bounds the derived count
+   * @param subtracted the probes whose counts are subtracted
+   */
+  public synchronized void addDifference(int derived, int source, int... subtracted) {
+    int required = length + 3 + subtracted.length;
+    if (required > entries.length) {
+      entries = Arrays.copyOf(entries, Math.max(required, entries.length * 2));
+    }
+    entries[length++] = derived;
+    entries[length++] = source;
+    entries[length++] = subtracted.length;
+    referenced.set(source);
+    for (int probe : subtracted) {
+      entries[length++] = probe;
+      referenced.set(probe);
+    }
+    numDerived++;
+  }
+
+  /**
+   * Returns the entries of this table in encoded form.
+   *
+   * @return the entries, which can be added to a table with {@link #addEntries(int[])}
+   */
+  public synchronized int[] encode() {
+    return Arrays.copyOf(entries, length);
+  }
+
+  /**
+   * Adds encoded entries, e.g. those recorded while instrumenting a class,
+   * or those of a class whose instrumentation was loaded from a cache.
+   *
+   * @param encoded entries returned by {@link #encode()}
+   */
+  public void addEntries(int[] encoded) {
+    int i = 0;
+    while (i < encoded.length) {
+      int n = encoded[i + 2];
+      addDifference(encoded[i], encoded[i + 1], Arrays.copyOfRange(encoded, i + 3, i + 3 + n));
+      i += 3 + n;
+    }
+  }
+
+  /**
+   * Returns the number of derived probes.
+   *
+   * @return the number of probes that are not instrumented
+   */
+  public synchronized int size() {
+    return numDerived;
+  }
+
+  /**
+   * Returns whether the count of any derived probe depends on a probe.
+   *
+   * @param probe the probe ID
+   * @return <code>true</code> iff the probe is the source of, or is
+   *         subtracted from, some derived probe
+   */
+  public synchronized boolean isReferenced(int probe) {
+    return referenced.get(probe);
+  }
+
+  /**
+   * Writes the counts of all derived probes into an array of counts
+   * indexed by probe ID, in which the instrumented probes are already set.
+   *
+   * @param counts the counts to update
+   */
+  public void reconstruct(int[] counts) {
+    int[] entries;
+    int length;
+    synchronized (this) {
+      entries = this.entries;
+      length = this.length;
+    }
+    int i = 0;
+    while (i < length) {
+      int derived = entries[i++];
+      int count = counts[entries[i++]];
+      int n = entries[i++];
+      for (int j = 0; j < n; j++) {
+        count -= counts[entries[i++]];
+      }
+      // Lost (racy) increments must not produce negative counts
+      counts[derived] = Math.max(count, 0);
+    }
+  }
+}
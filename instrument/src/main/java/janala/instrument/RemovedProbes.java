@@ -0,0 +1,141 @@
+package janala.instrument;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The fast coverage probes that have been removed from instrumented
+ * classes while they are running, e.g. because their coverage is
+ * saturated and counting them no longer guides fuzzing.
+ *
+ * <p>Probes are removed by retransforming the classes that contain them
+ * through the agent's {@link Instrumentation}. A retransformed class keeps
+ * its block of probe IDs and all other probes, so coverage collected before
+ * and after the removal stays comparable; a removed probe simply stays at
+ * zero. Probes are only removed from inline counters, and only when the
+ * JVM was started with the agent, since classes loaded by an instrumenting
+ * class loader cannot be retransformed.</p>
+ */
+public class RemovedProbes {
+
+  private static volatile Instrumentation instrumentation;
+
+  /** The removed probes; replaced, never modified, when probes are removed. */
+  private static volatile BitSet removed = new BitSet();
+
+  /** The probe ID blocks of instrumented classes, by defining loader and class name. */
+  private static final Map<ClassLoader, Map<String, ProbeIdManifest.Block>> blocks = new WeakHashMap<>();
+  private static final Map<String, ProbeIdManifest.Block> bootstrapBlocks = new HashMap<>();
+
+  /**
+   * Sets the instrumentation through which classes are retransformed.
+   *
+   * @param inst the instrumentation of the agent
+   */
+  static void setInstrumentation(Instrumentation inst) {
+    instrumentation = inst;
+  }
+
+  /**
+   * Returns whether probes can be removed in this JVM.
+   *
+   * @return <code>true</code> iff inline counter probes are instrumented by
+   *         an agent that can retransform classes
+   */
+  public static boolean isSupported() {
+    Instrumentation inst = instrumentation;
+    return inst != null && inst.isRetransformClassesSupported() &&
+        Config.instance.useFastCoverageInlineCounters;
+  }
+
+  /**
+   * Returns the removed probes.
+   *
+   * @return the set of removed probe IDs, which must not be modified
+   */
+  public static BitSet get() {
+    return removed;
+  }
+
+  /**
+   * Records the probe ID block of a class that has been instrumented, so
+   * that it can be retransformed with the same IDs.
+   *
+   * @param loader the defining loader of the class, or <code>null</code>
+   * @param className the internal name of the class
+   * @param block the probe IDs of the class
+   */
+  static synchronized void register(ClassLoader loader, String className, ProbeIdManifest.Block block) {
+    if (!isSupported()) {
+      return;
+    }
+    Map<String, ProbeIdManifest.Block> map = loader == null ? bootstrapBlocks :
+        blocks.computeIfAbsent(loader, l -> new HashMap<>());
+    map.put(className, block);
+  }
+
+  /**
+   * Returns the probe ID block of an instrumented class.
+   *
+   * @param loader the defining loader of the class, or <code>null</code>
+   * @param className the internal name of the class
+   * @return the block recorded by {@link #register}, or <code>null</code>
+   */
+  static synchronized ProbeIdManifest.Block getBlock(ClassLoader loader, String className) {
+    Map<String, ProbeIdManifest.Block> map = loader == null ? bootstrapBlocks : blocks.get(loader);
+    return map != null ? map.get(className) : null;
+  }
+
+  /**
+   * Removes probes and retransforms the classes that contain them.
+   *
+   * <p>Probes from which the counts of pruned probes are derived (see
+   * {@link ProbeReconstructionTable}) are not removed.</p>
+   *
+   * @param probes the IDs of the probes to remove
+   * @return the number of classes that were retransformed
+   */
+  public static synchronized int remove(int[] probes) {
+    if (!isSupported()) {
+      return 0;
+    }
+    BitSet added = new BitSet();
+    for (int probe : probes) {
+      if (probe > 0 && !removed.get(probe) && !ProbeReconstructionTable.instance.isReferenced(probe)) {
+        added.set(probe);
+      }
+    }
+    if (added.isEmpty()) {
+      return 0;
+    }
+    BitSet updated = (BitSet) removed.clone();
+    updated.or(added);
+    removed = updated;
+
+    List<Class<?>> classes = new ArrayList<>();
+    for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+      ProbeIdManifest.Block block = getBlock(clazz.getClassLoader(), clazz.getName().replace('.', '/'));
+      if (block != null) {
+        int next = added.nextSetBit(block.base);
+        if (next >= 0 && next < block.base + block.count && instrumentation.isModifiableClass(clazz)) {
+          classes.add(clazz);
+        }
+      }
+    }
+    int retransformed = 0;
+    for (Class<?> clazz : classes) {
+      try {
+        instrumentation.retransformClasses(clazz);
+        retransformed++;
+      } catch (Throwable e) {
+        // The class keeps its probes
+      }
+    }
+    return retransformed;
+  }
+}
@@ -9,10 +9,23 @@ import org.objectweb.asm.Opcodes;
 public class SnoopInstructionClassAdapter extends ClassVisitor {
   private final String className;
   private String superName;
+  private final GlobalStateForInstrumentation instrumentationState;
+  private final BasicBlockAnalyzer basicBlocks;
+  private final InstrumentationLevel level;
 
-  public SnoopInstructionClassAdapter(ClassVisitor cv, String className) {
+  public SnoopInstructionClassAdapter(ClassVisitor cv, String className,
+                                      GlobalStateForInstrumentation instrumentationState) {
+    this(cv, className, instrumentationState, null);
+  }
+
+  public SnoopInstructionClassAdapter(ClassVisitor cv, String className,
+                                      GlobalStateForInstrumentation instrumentationState,
+                                      BasicBlockAnalyzer basicBlocks) {
     super(Opcodes.ASM8, cv);
     this.className = className;
+    this.instrumentationState = instrumentationState;
+    this.basicBlocks = basicBlocks;
+    this.level = Config.instance.levelFor(className);
   }
 
   @Override
@@ -33,10 +46,12 @@ public class SnoopInstructionClassAdapter extends ClassVisitor {
     MethodVisitor mv = cv.visitMethod(access, name, desc, signature, exceptions);
     if (mv != null) {
       if(Config.instance.useFastCoverageInstrumentation){
-        return new FastCoverageMethodAdapter(mv, className, name, desc, superName, GlobalStateForInstrumentation.instance);
+        return new FastCoverageMethodAdapter(mv, className, name, desc, superName, instrumentationState,
+                basicBlocks != null ? basicBlocks.getBlockStarts(name, desc) : null,
+                level != InstrumentationLevel.METHOD);
       }else {
         return new SnoopInstructionMethodAdapter(mv, className, name, desc, superName,
-                GlobalStateForInstrumentation.instance, (access & Opcodes.ACC_STATIC) != 0);
+                instrumentationState, (access & Opcodes.ACC_STATIC) != 0);
       }
     }
     return null;
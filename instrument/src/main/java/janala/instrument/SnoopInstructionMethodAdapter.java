@@ -2,6 +2,7 @@ package janala.instrument;
 
 import java.util.LinkedList;
 
+import edu.berkeley.cs.jqf.instrument.tracing.MethodRegistry;
 import janala.logger.inst.SPECIAL;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
@@ -41,6 +42,8 @@ public class SnoopInstructionMethodAdapter extends MethodVisitor implements Opco
   @Override
   public void visitCode() {
     instrumentationState.incMid();
+    // Assign the method and class IDs of trace events up front
+    MethodRegistry.register(className, methodName, descriptor);
     mv.visitLdcInsn(className);
     mv.visitLdcInsn(methodName);
     mv.visitLdcInsn(descriptor);
@@ -821,10 +824,36 @@ public class SnoopInstructionMethodAdapter extends MethodVisitor implements Opco
         addBipushInsn(mv, lastLineNumber);
         mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "HEAPLOAD2", "(Ljava/lang/Object;III)V", false);
       }
+      if (Config.instance.propagateTaskContext) {
+        addTaskContextPropagation(owner, name, desc);
+      }
       addMethodWithTryCatch(opcode, owner, name, desc, itf);
     }
   }
 
+  /**
+   * If a method hands a task to an executor as its only argument (e.g.
+   * Executor.execute(Runnable) or CompletableFuture.supplyAsync(Supplier)),
+   * wrap the task so that it is traced on the thread that runs it.
+   */
+  private void addTaskContextPropagation(String owner, String name, String desc) {
+    if (!owner.startsWith("java/util/concurrent/")) {
+      return;
+    }
+    if (!name.equals("execute") && !name.equals("submit") &&
+        !name.equals("runAsync") && !name.equals("supplyAsync")) {
+      return;
+    }
+    String[] taskTypes = { "Ljava/lang/Runnable;", "Ljava/util/concurrent/Callable;", "Ljava/util/function/Supplier;" };
+    for (String taskType : taskTypes) {
+      if (desc.startsWith("(" + taskType + ")")) {
+        mv.visitMethodInsn(INVOKESTATIC, Config.instance.analysisClass, "PROPAGATE_CONTEXT",
+            "(" + taskType + ")" + taskType, false);
+        return;
+      }
+    }
+  }
+
   private void addConditionalJumpInstrumentation(int opcode, Label finalBranchTarget,
                                                  String instMethodName, String instMethodDesc) {
     int iid = instrumentationState.incAndGetId();
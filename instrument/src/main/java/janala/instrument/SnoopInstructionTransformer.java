@@ -1,24 +1,33 @@
 package janala.instrument;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
-import java.nio.file.Files;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import edu.berkeley.cs.jqf.instrument.tracing.FastCoverageSnoop;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 @SuppressWarnings("unused") // Registered via -javaagent
 public class SnoopInstructionTransformer implements ClassFileTransformer {
   private static final String instDir = Config.instance.instrumentationCacheDir;
+  private static final InstrumentationCache cache = openCache();
+  private static final ProbeIdManifest manifest = openManifest();
   private static final boolean verbose = Config.instance.verbose;
   private static String[] banned = {"[", "java/lang", "org/eclipse/collections", "edu/berkeley/cs/jqf/fuzz/util", "janala", "org/objectweb/asm", "sun", "jdk", "java/util/function"};
   private static String[] excludes = Config.instance.excludeInst;
@@ -27,28 +36,103 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
 
     preloadClasses();
 
+    RemovedProbes.setInstrumentation(inst);
     inst.addTransformer(new SnoopInstructionTransformer(), true);
     if (inst.isRetransformClassesSupported()) {
-      for (Class clazz : inst.getAllLoadedClasses()) {
-        try {
-          String cname = clazz.getName().replace(".","/");
-          if (shouldExclude(cname) == false) {
-            if (inst.isModifiableClass(clazz)) {
-              inst.retransformClasses(clazz);
-            } else {
-              println("[WARNING] Could not instrument " + clazz);
-            }
-          }
-        } catch (Exception e){
-          if (verbose) {
-            println("[WARNING] Could not instrument " + clazz);
-            e.printStackTrace();
-          }
+      retransformLoadedClasses(inst);
+    }
+  }
+
+  /** The number of classes to retransform in one call when starting up. */
+  private static final int RETRANSFORM_BATCH_SIZE = 64;
+
+  /**
+   * Instruments the classes that were loaded before the agent, in batches
+   * that are retransformed concurrently by a small pool of threads.
+   */
+  private static void retransformLoadedClasses(Instrumentation inst) {
+    List<Class<?>> classes = new ArrayList<>();
+    for (Class<?> clazz : inst.getAllLoadedClasses()) {
+      String cname = clazz.getName().replace(".","/");
+      if (shouldExclude(cname) == false) {
+        if (inst.isModifiableClass(clazz)) {
+          classes.add(clazz);
+        } else {
+          println("[WARNING] Could not instrument " + clazz);
+        }
+      }
+    }
+
+    int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "jqf-retransform");
+      t.setDaemon(true);
+      return t;
+    });
+    List<Future<?>> batches = new ArrayList<>();
+    for (int i = 0; i < classes.size(); i += RETRANSFORM_BATCH_SIZE) {
+      List<Class<?>> batch = classes.subList(i, Math.min(i + RETRANSFORM_BATCH_SIZE, classes.size()));
+      batches.add(executor.submit(() -> retransform(inst, batch)));
+    }
+    try {
+      for (Future<?> batch : batches) {
+        batch.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /* Retransforms a batch of classes, retrying one at a time if the batch fails */
+  private static void retransform(Instrumentation inst, List<Class<?>> batch) {
+    try {
+      inst.retransformClasses(batch.toArray(new Class<?>[0]));
+      return;
+    } catch (Throwable e) {
+      // Find out which classes could not be instrumented
+    }
+    for (Class<?> clazz : batch) {
+      try {
+        inst.retransformClasses(clazz);
+      } catch (Throwable e){
+        if (verbose) {
+          println("[WARNING] Could not instrument " + clazz);
+          e.printStackTrace();
         }
       }
     }
   }
 
+  private static InstrumentationCache openCache() {
+    if (instDir == null) {
+      return null;
+    }
+    try {
+      return InstrumentationCache.open(new File(instDir));
+    } catch (IOException e) {
+      System.err.println("[WARNING] Could not open instrumentation cache in " + instDir + ": " + e);
+      return null;
+    }
+  }
+
+  private static ProbeIdManifest openManifest() {
+    String file = Config.instance.probeIdManifest;
+    if (file == null) {
+      return null;
+    }
+    try {
+      // Counters are sized as classes are bound to their blocks, not for every block in the manifest
+      return ProbeIdManifest.open(new File(file));
+    } catch (IOException e) {
+      System.err.println("[WARNING] Could not open probe ID manifest " + file + ": " + e);
+      return null;
+    }
+  }
+
   private static void preloadClasses() throws ClassNotFoundException {
     Class.forName("java.util.ArrayDeque");
     Class.forName("java.util.LinkedList");
@@ -67,6 +151,9 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
         return true;
       }
     }
+    if (Config.instance.levelFor(cname) == InstrumentationLevel.NONE) {
+      return true;
+    }
     for (String e : includes) {
       if (cname.startsWith(e)) {
         return false;
@@ -81,7 +168,7 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
   }
 
   @Override
-  synchronized public byte[] transform(ClassLoader loader, String cname, Class<?> classBeingRedefined,
+  public byte[] transform(ClassLoader loader, String cname, Class<?> classBeingRedefined,
       ProtectionDomain d, byte[] cbuf)
     throws IllegalClassFormatException {
 
@@ -97,22 +184,44 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
         print("* ");
       }
       print("Instrumenting: " + cname + "... ");
-      GlobalStateForInstrumentation.instance.setCid(cname.hashCode());
+      InstrumentedClasses.record(cname, cbuf);
+      GlobalStateForInstrumentation instrumentationState = new GlobalStateForInstrumentation();
+      instrumentationState.setCid(cname.hashCode());
 
-      if (instDir != null) {
-        File cachedFile = new File(instDir + "/" + cname + ".instrumented.class");
-        File referenceFile = new File(instDir + "/" + cname + ".original.class");
-        if (cachedFile.exists() && referenceFile.exists()) {
-          try {
-            byte[] origBytes = Files.readAllBytes(referenceFile.toPath());
-            if (Arrays.equals(cbuf, origBytes)) {
-              byte[] instBytes = Files.readAllBytes(cachedFile.toPath());
-              println(" Found in disk-cache!");
-              return instBytes;
+      boolean fastCoverage = Config.instance.useFastCoverageInstrumentation;
+      String classHash = null;
+      ProbeIdManifest.Block block = null;
+
+      // Classes that are retransformed to remove probes keep their IDs, and are not cached
+      ProbeIdManifest.Block retransformedBlock = fastCoverage && classBeingRedefined != null ?
+          RemovedProbes.getBlock(loader, cname) : null;
+      if (retransformedBlock != null) {
+        instrumentationState.setRemovedProbes(RemovedProbes.get());
+      } else if (manifest != null) {
+        try {
+          classHash = manifest.hash(cbuf);
+          block = manifest.get(cname, classHash);
+        } catch (IOException e) {
+          print(" <manifest error> ");
+        }
+      }
+
+      // Cached classes embed their probe IDs, so they are only valid for the block they were instrumented in
+      byte[] cacheKey = null;
+      if (cache != null && retransformedBlock == null && (!fastCoverage || block != null)) {
+        try {
+          cacheKey = cache.key(cbuf, block != null ? block.base : 0);
+          InstrumentationCache.Entry cached = cache.get(cacheKey);
+          if (cached != null) {
+            restoreProbeState(cached.metadata);
+            if (fastCoverage && cached.metadata.length >= 2) {
+              RemovedProbes.register(loader, cname, new ProbeIdManifest.Block(cached.metadata[0], cached.metadata[1]));
             }
-          } catch (IOException e) {
-            print(" <cache error> ");
+            println(" Found in disk-cache!");
+            return cached.data;
           }
+        } catch (IOException e) {
+          print(" <cache error> ");
         }
       }
 
@@ -120,13 +229,38 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
       try {
 
         ClassReader cr = new ClassReader(cbuf);
-        ClassWriter cw = new SafeClassWriter(cr,  loader,
-                ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-        ClassVisitor cv = new SnoopInstructionClassAdapter(cw, cname);
-
-        cr.accept(cv, 0);
-
-        ret = cw.toByteArray();
+        // Fast coverage keeps the original stack map frames, which are only mandatory since Java 7
+        boolean preserveFrames = fastCoverage && cr.readUnsignedShort(6) >= Opcodes.V1_7;
+        int readerFlags = fastCoverage ? ClassReader.EXPAND_FRAMES : 0;
+        BasicBlockAnalyzer basicBlocks = Config.instance.useFastCoverageProbePruning ?
+                BasicBlockAnalyzer.analyze(cr, readerFlags) : null;
+        if (retransformedBlock != null) {
+          instrumentationState.setFastCoverageBase(retransformedBlock.base);
+        } else if (fastCoverage) {
+          int count = countFastCoverageIds(cr, readerFlags, cname, basicBlocks);
+          block = assignFastCoverageIds(cname, classHash, count);
+          instrumentationState.setFastCoverageBase(block.base);
+          // IDs reserved in load order differ between runs, so only manifest blocks are cached
+          if (cache != null && cacheKey == null && block.fromManifest) {
+            cacheKey = cache.key(cbuf, block.base);
+          }
+        }
+        ret = null;
+        if (preserveFrames) {
+          try {
+            instrumentationState.setFramesRequired(true);
+            ret = instrument(cr, readerFlags, loader, cname, instrumentationState, basicBlocks,
+                ClassWriter.COMPUTE_MAXS);
+          } catch (RuntimeException e) {
+            // Fall back to computing all frames
+            print(" <recomputing frames> ");
+            instrumentationState.restart();
+          }
+        }
+        if (ret == null) {
+          ret = instrument(cr, readerFlags, loader, cname, instrumentationState, basicBlocks,
+              ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        }
       } catch (Throwable e) {
         println("\n[WARNING] Could not instrument " + cname);
         if (verbose) {
@@ -137,19 +271,20 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
 
       println("Done!");
 
-      if (instDir != null) {
+      if (retransformedBlock != null) {
+        return ret; // Derived probes were recorded when the class was first instrumented
+      }
+
+      int[] derivedProbes = instrumentationState.getDerivedProbes().encode();
+      ProbeReconstructionTable.instance.addEntries(derivedProbes);
+      if (fastCoverage) {
+        RemovedProbes.register(loader, cname, block);
+      }
+
+      if (cacheKey != null) {
         try {
-          File cachedFile = new File(instDir + "/" + cname + ".instrumented.class");
-          File referenceFile = new File(instDir + "/" + cname + ".original.class");
-          File parent = new File(cachedFile.getParent());
-          parent.mkdirs();
-          try(FileOutputStream out = new FileOutputStream(cachedFile)) {
-            out.write(ret);
-          }
-          try(FileOutputStream out = new FileOutputStream(referenceFile)) {
-            out.write(cbuf);
-          }
-        } catch(Exception e) {
+          cache.put(cacheKey, ret, saveProbeState(instrumentationState, derivedProbes));
+        } catch(IOException e) {
           e.printStackTrace();
         }
       }
@@ -159,6 +294,78 @@ public class SnoopInstructionTransformer implements ClassFileTransformer {
     }
   }
 
+  /** Instruments a class in a single pass, writing it with the given {@link ClassWriter} flags. */
+  private static byte[] instrument(ClassReader cr, int readerFlags, ClassLoader loader, String cname,
+                                   GlobalStateForInstrumentation instrumentationState,
+                                   BasicBlockAnalyzer basicBlocks, int writerFlags) {
+    ClassWriter cw = new SafeClassWriter(cr, loader, writerFlags);
+    ClassVisitor cv = new SnoopInstructionClassAdapter(cw, cname, instrumentationState, basicBlocks);
+    cr.accept(cv, readerFlags);
+    return cw.toByteArray();
+  }
+
+  /**
+   * Counts the fast coverage IDs that instrumenting a class will hand out,
+   * by running the instrumentation without writing a class, so that a
+   * contiguous block of IDs can be reserved for it.
+   */
+  private static int countFastCoverageIds(ClassReader cr, int readerFlags, String cname, BasicBlockAnalyzer basicBlocks) {
+    GlobalStateForInstrumentation counter = new GlobalStateForInstrumentation();
+    ClassVisitor discard = new ClassVisitor(Opcodes.ASM8) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM8) {};
+      }
+    };
+    cr.accept(new SnoopInstructionClassAdapter(discard, cname, counter, basicBlocks), readerFlags);
+    return counter.getFastCoverageIdCount();
+  }
+
+  /**
+   * Returns the block of fast coverage IDs of a class, which is taken from
+   * the probe ID manifest if there is one, or else reserved in load order.
+   */
+  private static ProbeIdManifest.Block assignFastCoverageIds(String cname, String classHash, int count) {
+    if (manifest != null && classHash != null) {
+      try {
+        ProbeIdManifest.Block block = manifest.assign(cname, classHash, count);
+        if (count > 0) {
+          GlobalStateForInstrumentation.reserveFastCoverageIdsUpTo(block.base + count - 1);
+        }
+        return block;
+      } catch (IOException e) {
+        print(" <manifest error> ");
+      }
+    }
+    return new ProbeIdManifest.Block(GlobalStateForInstrumentation.reserveFastCoverageIds(count), count, false);
+  }
+
+  /**
+   * Returns the fast coverage state that a class instrumented just now
+   * relies on: its block of probe IDs and any derived probes.
+   */
+  private static int[] saveProbeState(GlobalStateForInstrumentation instrumentationState, int[] derivedProbes) {
+    int[] state = new int[2 + derivedProbes.length];
+    state[0] = instrumentationState.getFastCoverageBase();
+    state[1] = instrumentationState.getFastCoverageIdCount();
+    System.arraycopy(derivedProbes, 0, state, 2, derivedProbes.length);
+    return state;
+  }
+
+  /** Restores the fast coverage state saved for a class loaded from the cache. */
+  private static void restoreProbeState(int[] state) {
+    if (!Config.instance.useFastCoverageInstrumentation || state.length < 2) {
+      return;
+    }
+    // Probe IDs of the cached class must not be handed out again
+    int limit = state[0] + state[1];
+    GlobalStateForInstrumentation.reserveFastCoverageIdsUpTo(limit - 1);
+    if (Config.instance.useFastCoverageInlineCounters) {
+      FastCoverageSnoop.ensureCounterCapacity(limit);
+    }
+    ProbeReconstructionTable.instance.addEntries(Arrays.copyOfRange(state, 2, state.length));
+  }
+
   private static void print(String str) {
     if (verbose) {
       System.out.print(str);
@@ -0,0 +1,78 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AsyncTraceConsumerTest {
+
+    /** The number of batches submitted by each test, more than a channel holds. */
+    private static final int BATCHES = 50;
+
+    private static final int EVENTS_PER_BATCH = 3;
+
+    @Test
+    public void testAwaitDeliversAllBatchesInOrder() {
+        List<Integer> iids = Collections.synchronizedList(new ArrayList<>());
+        AsyncTraceConsumer.Channel channel = AsyncTraceConsumer.register(Thread.currentThread(), batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                iids.add(batch.iid(i));
+            }
+        });
+
+        TraceEventBatch batch = channel.take();
+        int iid = 0;
+        for (int b = 0; b < BATCHES; b++) {
+            for (int e = 0; e < EVENTS_PER_BATCH; e++) {
+                batch.add(TraceEventBatch.LINE, iid++, 0, 0, 0, null);
+            }
+            batch = channel.submit(batch);
+            // Batches come back empty
+            assertEquals(0, batch.size());
+        }
+        AsyncTraceConsumer.await();
+
+        assertEquals(BATCHES * EVENTS_PER_BATCH, iids.size());
+        for (int i = 0; i < iids.size(); i++) {
+            assertEquals(i, (int) iids.get(i));
+        }
+        assertNull(channel.takeException());
+    }
+
+    @Test
+    public void testCallbackExceptionIsReportedAfterAwait() {
+        List<Integer> consumed = Collections.synchronizedList(new ArrayList<>());
+        RuntimeException failure = new RuntimeException("callback failed");
+        AsyncTraceConsumer.Channel channel = AsyncTraceConsumer.register(Thread.currentThread(), batch -> {
+            consumed.add(batch.iid(0));
+            if (batch.iid(0) == 1) {
+                throw failure;
+            }
+        });
+
+        TraceEventBatch batch = channel.take();
+        for (int b = 0; b < 3; b++) {
+            batch.add(TraceEventBatch.LINE, b, 0, 0, 0, null);
+            batch = channel.submit(batch);
+        }
+        AsyncTraceConsumer.await();
+
+        // Batches after the failing one are still consumed
+        assertEquals(3, consumed.size());
+        assertSame(failure, channel.takeException());
+        assertNull(channel.takeException());
+    }
+
+    @Test
+    public void testAwaitWithoutPendingBatchesReturns() {
+        AsyncTraceConsumer.register(Thread.currentThread(), batch -> fail());
+        AsyncTraceConsumer.await();
+    }
+}
@@ -0,0 +1,122 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.instrument.tracing.events.AllocEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.BranchEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.CallEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.LineEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReadEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.ReturnEvent;
+import edu.berkeley.cs.jqf.instrument.tracing.events.TraceEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class TraceEventBatchTest {
+
+    private static final MethodRegistry.Entry CALLER = MethodRegistry.register("Foo", "caller", "()V");
+    private static final MethodRegistry.Entry CALLEE = MethodRegistry.register("Bar", "callee", "(I)I");
+
+    /* Records one event of each kind */
+    private static TraceEventBatch fill(TraceEventBatch batch, Object receiver, TraceEvent programmatic) {
+        int m = CALLER.getId();
+        batch.add(TraceEventBatch.CALL, 1, m, 10, CALLEE.getId(), receiver);
+        batch.add(TraceEventBatch.RETURN, 2, m, 11, 0, null);
+        batch.add(TraceEventBatch.BRANCH, 3, m, 12, 1, null);
+        batch.add(TraceEventBatch.LINE, 4, m, 13, 0, null);
+        batch.add(TraceEventBatch.ALLOC, 5, m, 14, 64, null);
+        batch.add(TraceEventBatch.READ, 6, m, 15, 42, "Foo#field");
+        batch.add(TraceEventBatch.EVENT, 7, 0, 16, 0, programmatic);
+        return batch;
+    }
+
+    private static void assertEvent(Class<?> type, int iid, int line, TraceEvent e) {
+        assertEquals(type, e.getClass());
+        assertEquals(iid, e.getIid());
+        assertEquals(line, e.getLineNumber());
+    }
+
+    @Test
+    public void testRecordsConvertToEvents() {
+        Object receiver = new Object();
+        TraceEvent programmatic = new BranchEvent(7, null, 16, 3);
+        TraceEventBatch batch = fill(new TraceEventBatch(16), receiver, programmatic);
+        assertEquals(7, batch.size());
+
+        CallEvent call = (CallEvent) batch.event(0);
+        assertEvent(CallEvent.class, 1, 10, call);
+        assertEquals("Foo", call.getContainingClass());
+        assertEquals("caller", call.getContainingMethodName());
+        assertEquals(CALLER.getId(), call.getContainingMethodId());
+        assertEquals(CALLEE.getId(), call.getInvokedMethodId());
+        assertSame(receiver, call.getCallingObject());
+
+        assertEvent(ReturnEvent.class, 2, 11, batch.event(1));
+        assertEvent(BranchEvent.class, 3, 12, batch.event(2));
+        assertEquals(1, ((BranchEvent) batch.event(2)).getArm());
+        assertEvent(LineEvent.class, 4, 13, batch.event(3));
+        assertEvent(AllocEvent.class, 5, 14, batch.event(4));
+        assertEquals(64, ((AllocEvent) batch.event(4)).getSize());
+        assertEvent(ReadEvent.class, 6, 15, batch.event(5));
+        assertEquals(42, ((ReadEvent) batch.event(5)).getObjectId());
+        assertEquals("Foo#field", ((ReadEvent) batch.event(5)).getField());
+        assertSame(programmatic, batch.event(6));
+    }
+
+    @Test
+    public void testPrimitiveAccessors() {
+        TraceEventBatch batch = fill(new TraceEventBatch(16), null, null);
+        assertEquals(TraceEventBatch.BRANCH, batch.kind(2));
+        assertEquals(3, batch.iid(2));
+        assertEquals(CALLER.getId(), batch.methodId(2));
+        assertEquals(12, batch.line(2));
+        assertEquals(1, batch.value(2));
+        assertEquals(CALLEE.getId(), batch.value(0));
+    }
+
+    @Test
+    public void testAddReportsWhenFull() {
+        TraceEventBatch batch = new TraceEventBatch(2);
+        assertFalse(batch.add(TraceEventBatch.LINE, 1, 0, 1, 0, null));
+        assertTrue(batch.add(TraceEventBatch.LINE, 2, 0, 2, 0, null));
+    }
+
+    @Test
+    public void testCopySurvivesReuse() {
+        Object receiver = new Object();
+        TraceEventBatch batch = fill(new TraceEventBatch(16), receiver, null);
+        TraceEventBatch copy = batch.copy();
+        batch.clear();
+        assertEquals(0, batch.size());
+        batch.add(TraceEventBatch.LINE, 99, 0, 99, 0, null);
+
+        assertEquals(7, copy.size());
+        assertSame(receiver, ((CallEvent) copy.event(0)).getCallingObject());
+        assertEquals(3, copy.iid(2));
+        assertEquals(0, new TraceEventBatch(4).copy().size());
+    }
+
+    @Test
+    public void testClearDropsReferences() {
+        TraceEventBatch batch = fill(new TraceEventBatch(16), new Object(), null);
+        batch.clear();
+        assertEquals(0, batch.size());
+        // Cleared records keep their primitives, but do not keep objects alive
+        assertNull(((CallEvent) batch.event(0)).getCallingObject());
+        assertNull(((ReadEvent) batch.event(5)).getField());
+    }
+
+    @Test
+    public void testForEachEventPreservesOrder() {
+        List<Integer> iids = new ArrayList<>();
+        TraceEventBatch batch = fill(new TraceEventBatch(16), null, new LineEvent(7, null, 16));
+        TraceEventBatch.forEachEvent(e -> iids.add(e.getIid())).accept(batch);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), iids);
+    }
+}
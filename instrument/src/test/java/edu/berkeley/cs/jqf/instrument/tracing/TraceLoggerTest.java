@@ -0,0 +1,55 @@
+package edu.berkeley.cs.jqf.instrument.tracing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class TraceLoggerTest {
+
+    @Test
+    public void testEachThreadGetsItsOwnContext() throws Exception {
+        int numThreads = 4;
+        int lookups = 10_000;
+        TraceLogger logger = TraceLogger.get();
+        ConcurrentHashMap<SnoopContext, Thread> owners = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CyclicBarrier start = new CyclicBarrier(numThreads);
+
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    SnoopContext mine = logger.context();
+                    for (int i = 0; i < lookups; i++) {
+                        // Lookups by other threads never hand this thread a foreign context
+                        assertSame(mine, logger.context());
+                    }
+                    assertSame(Thread.currentThread(), mine.thread);
+                    owners.put(mine, Thread.currentThread());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        SnoopContext main = logger.context();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        assertEquals(numThreads, owners.size());
+        assertSame(main, logger.context());
+        assertSame(Thread.currentThread(), main.thread);
+    }
+}
@@ -0,0 +1,96 @@
+package janala.instrument;
+
+import java.util.Properties;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ConfigTest {
+
+  private static Config config(String... keysAndValues) {
+    Properties properties = new Properties();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return new Config(properties);
+  }
+
+  @Test
+  public void testLongestPrefixWins() {
+    Config config = config(
+        "useFastNonCollidingCoverageInstrumentation", "true",
+        "janala.levels", "org.example:none,org.example.core:method,org.example.core.Parser:full");
+    assertEquals(InstrumentationLevel.NONE, config.levelFor("org/example/util/Strings"));
+    assertEquals(InstrumentationLevel.METHOD, config.levelFor("org/example/core/Lexer"));
+    assertEquals(InstrumentationLevel.FULL, config.levelFor("org/example/core/Parser"));
+    assertEquals(InstrumentationLevel.FULL, config.levelFor("org/example/core/Parser$Node"));
+    assertEquals(InstrumentationLevel.FULL, config.levelFor("com/example/Main"));
+  }
+
+  @Test
+  public void testOrderOfEntriesDoesNotMatter() {
+    Config config = config(
+        "useFastNonCollidingCoverageInstrumentation", "true",
+        "janala.levels", "org/example/core:method, org/example:none");
+    assertEquals(InstrumentationLevel.METHOD, config.levelFor("org/example/core/Lexer"));
+    assertEquals(InstrumentationLevel.NONE, config.levelFor("org/example/Main"));
+  }
+
+  @Test
+  public void testDefaultLevel() {
+    Config config = config(
+        "useFastNonCollidingCoverageInstrumentation", "true",
+        "janala.defaultLevel", "Method",
+        "janala.levels", "org/example:full");
+    assertEquals(InstrumentationLevel.METHOD, config.levelFor("com/example/Main"));
+    assertEquals(InstrumentationLevel.FULL, config.levelFor("org/example/Main"));
+    assertEquals(InstrumentationLevel.FULL, config().levelFor("com/example/Main"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLevel() {
+    config("janala.levels", "org/example:branch");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEntryWithoutLevel() {
+    config("janala.levels", "org/example");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDefaultLevel() {
+    config("janala.defaultLevel", "most");
+  }
+
+  @Test
+  public void testInvalidLevelMessageNamesTheLevel() {
+    try {
+      InstrumentationLevel.parse("branch");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("branch"));
+    }
+  }
+
+  @Test
+  public void testWarnsAboutLevelsTracedInFull() {
+    Config janala = config("janala.levels", "org/a:none,org/b:method,org/c:edge,org/d:full");
+    assertEquals(2, janala.levelWarnings.size());
+    assertTrue(janala.levelWarnings.get(0).contains("org/b"));
+    assertTrue(janala.levelWarnings.get(1).contains("org/c"));
+
+    Config fast = config(
+        "useFastNonCollidingCoverageInstrumentation", "true",
+        "janala.defaultLevel", "edge",
+        "janala.levels", "org/a:none,org/b:method,org/c:edge,org/d:full");
+    assertEquals(2, fast.levelWarnings.size());
+    assertTrue(fast.levelWarnings.get(0).contains("janala.defaultLevel"));
+    assertTrue(fast.levelWarnings.get(1).contains("org/c"));
+
+    assertTrue(config().levelWarnings.isEmpty());
+  }
+}
@@ -0,0 +1,153 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class InstrumentationCacheTest {
+
+  private static final byte[] ORIGINAL = "original class".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] INSTRUMENTED = "instrumented class".getBytes(StandardCharsets.UTF_8);
+
+  private File dir;
+
+  @Before
+  public void createDir() throws IOException {
+    dir = Files.createTempDirectory("inst-cache").toFile();
+  }
+
+  private File pack() {
+    return new File(dir, InstrumentationCache.PACK_FILE_NAME);
+  }
+
+  @Test
+  public void testEntriesAreReadBackFromThePack() throws IOException {
+    InstrumentationCache writer = InstrumentationCache.open(dir, "fast");
+    writer.put(writer.key(ORIGINAL, 7), INSTRUMENTED, new int[]{7, 3, 42});
+    writer.close();
+
+    // A fresh reader maps the pack written by another instance
+    InstrumentationCache reader = InstrumentationCache.open(dir, "fast");
+    InstrumentationCache.Entry entry = reader.get(reader.key(ORIGINAL, 7));
+    assertNotNull(entry);
+    assertArrayEquals(INSTRUMENTED, entry.data);
+    assertArrayEquals(new int[]{7, 3, 42}, entry.metadata);
+    reader.close();
+  }
+
+  @Test
+  public void testReaderSeesRecordsAppendedLater() throws IOException {
+    InstrumentationCache reader = InstrumentationCache.open(dir, "fast");
+    byte[] key = reader.key(ORIGINAL, 0);
+    assertNull(reader.get(key));
+
+    InstrumentationCache writer = InstrumentationCache.open(dir, "fast");
+    writer.put(key, INSTRUMENTED, new int[0]);
+    writer.close();
+
+    assertArrayEquals(INSTRUMENTED, reader.get(key).data);
+    reader.close();
+  }
+
+  @Test
+  public void testStaleKeysMiss() throws IOException {
+    InstrumentationCache cache = InstrumentationCache.open(dir, "fast");
+    cache.put(cache.key(ORIGINAL, 7), INSTRUMENTED, new int[0]);
+
+    // Other class bytes or another block of probe IDs
+    assertNull(cache.get(cache.key("changed class".getBytes(StandardCharsets.UTF_8), 7)));
+    assertNull(cache.get(cache.key(ORIGINAL, 8)));
+    cache.close();
+
+    // Other instrumentation settings
+    InstrumentationCache other = InstrumentationCache.open(dir, "janala");
+    assertNull(other.get(other.key(ORIGINAL, 7)));
+    other.close();
+  }
+
+  @Test
+  public void testExistingKeysAreNotAppendedAgain() throws IOException {
+    InstrumentationCache cache = InstrumentationCache.open(dir, "fast");
+    byte[] key = cache.key(ORIGINAL, 0);
+    cache.put(key, INSTRUMENTED, new int[0]);
+    long size = pack().length();
+    cache.put(key, INSTRUMENTED, new int[0]);
+    assertEquals(size, pack().length());
+    cache.close();
+  }
+
+  @Test
+  public void testCorruptRecordsAreSkipped() throws IOException {
+    InstrumentationCache writer = InstrumentationCache.open(dir, "fast");
+    byte[] first = writer.key(ORIGINAL, 1);
+    byte[] second = writer.key(ORIGINAL, 2);
+    writer.put(first, INSTRUMENTED, new int[0]);
+    long firstEnd = pack().length();
+    writer.put(second, INSTRUMENTED, new int[0]);
+    writer.close();
+
+    // Flip the last byte of the first record's data
+    try (RandomAccessFile file = new RandomAccessFile(pack(), "rw")) {
+      file.seek(firstEnd - 1);
+      int b = file.read();
+      file.seek(firstEnd - 1);
+      file.write(b ^ 0xFF);
+    }
+
+    InstrumentationCache reader = InstrumentationCache.open(dir, "fast");
+    assertNull(reader.get(first));
+    assertArrayEquals(INSTRUMENTED, reader.get(second).data);
+    reader.close();
+  }
+
+  @Test
+  public void testTruncatedRecordsAreIgnored() throws IOException {
+    InstrumentationCache writer = InstrumentationCache.open(dir, "fast");
+    byte[] key = writer.key(ORIGINAL, 0);
+    writer.put(key, INSTRUMENTED, new int[0]);
+    writer.close();
+
+    // A writer that crashed halfway through its record
+    try (RandomAccessFile file = new RandomAccessFile(pack(), "rw")) {
+      file.setLength(file.length() - 1);
+    }
+
+    InstrumentationCache cache = InstrumentationCache.open(dir, "fast");
+    assertNull(cache.get(key));
+    cache.put(key, INSTRUMENTED, new int[0]);
+    cache.close();
+
+    InstrumentationCache reader = InstrumentationCache.open(dir, "fast");
+    assertArrayEquals(INSTRUMENTED, reader.get(key).data);
+    reader.close();
+  }
+
+  @Test
+  public void testBuildStampOfClassDirectoryChangesWithItsClasses() throws IOException {
+    // Directory names with spaces are percent-encoded in the code source
+    File classes = new File(dir, "target classes");
+    File classFile = new File(classes, "janala/Foo.class");
+    assertTrue(classFile.getParentFile().mkdirs());
+    Files.write(classFile.toPath(), ORIGINAL);
+    assertTrue(classFile.setLastModified(1000000));
+    long dirModified = classes.lastModified();
+
+    String stamp = InstrumentationCache.buildStamp(classes.toURI().toURL());
+    assertEquals(stamp, InstrumentationCache.buildStamp(classes.toURI().toURL()));
+
+    // Recompiling rewrites the file, but not the directory holding it
+    Files.write(classFile.toPath(), INSTRUMENTED);
+    assertTrue(classes.setLastModified(dirModified));
+    assertNotEquals(stamp, InstrumentationCache.buildStamp(classes.toURI().toURL()));
+  }
+}
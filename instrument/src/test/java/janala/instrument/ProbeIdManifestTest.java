@@ -0,0 +1,177 @@
+package janala.instrument;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ProbeIdManifestTest {
+
+  private File file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = new File(Files.createTempDirectory("probe-ids").toFile(), ProbeIdManifest.DEFAULT_FILE_NAME);
+  }
+
+  private void append(String text) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /* Opens the manifest once so that it has a header, and appends lines to it */
+  private void writeLines(String text) throws IOException {
+    ProbeIdManifest.open(file, "fast").close();
+    append(text);
+  }
+
+  private static void assertBlock(int base, int count, ProbeIdManifest.Block block) {
+    assertNotNull(block);
+    assertEquals(base, block.base);
+    assertEquals(count, block.count);
+    assertTrue(block.fromManifest);
+  }
+
+  @Test
+  public void testBlocksAreStableAcrossInstances() throws IOException {
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    ProbeIdManifest.Block a = manifest.assign("A", "h1", 3);
+    ProbeIdManifest.Block b = manifest.assign("B", "h2", 5);
+    assertTrue(a.base + a.count <= b.base);
+    assertSame(a, manifest.assign("A", "h1", 3));
+    manifest.close();
+
+    ProbeIdManifest reopened = ProbeIdManifest.open(file, "fast");
+    assertBlock(a.base, 3, reopened.get("A", "h1"));
+    assertBlock(b.base, 5, reopened.get("B", "h2"));
+    assertNull(reopened.get("A", "h2"));
+    assertEquals(b.base + 5, reopened.getLimit());
+    reopened.close();
+  }
+
+  @Test
+  public void testChangedCountGetsFreshBlock() throws IOException {
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    ProbeIdManifest.Block old = manifest.assign("A", "h1", 3);
+    ProbeIdManifest.Block changed = manifest.assign("A", "h1", 4);
+    assertTrue(changed.base >= old.base + old.count);
+    manifest.close();
+
+    ProbeIdManifest reopened = ProbeIdManifest.open(file, "fast");
+    assertBlock(changed.base, 4, reopened.get("A", "h1"));
+    reopened.close();
+  }
+
+  @Test
+  public void testMalformedLinesAreIgnored() throws IOException {
+    writeLines("garbage\n" +
+        "1 x h1 NotANumber\n" +
+        "-1 2 h1 NegativeBase\n" +
+        "3 -2 h1 NegativeCount\n" +
+        "2147483647 2 h1 Overflow\n" +
+        "5 2 h1 Good\n" +
+        "7 1 h1 Partial");
+
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    assertBlock(5, 2, manifest.get("Good", "h1"));
+    for (String name : new String[]{"NotANumber", "NegativeBase", "NegativeCount", "Overflow"}) {
+      assertNull(name, manifest.get(name, "h1"));
+    }
+    assertEquals(7, manifest.getLimit());
+
+    // A partial line is read once it is complete
+    assertNull(manifest.get("Partial", "h1"));
+    append("\n");
+    assertBlock(7, 1, manifest.get("Partial", "h1"));
+    manifest.close();
+  }
+
+  @Test
+  public void testOverlappingBlocksAreIgnored() throws IOException {
+    writeLines("10 5 h1 A\n" +
+        "12 2 h1 Inside\n" +
+        "8 3 h1 Before\n" +
+        "14 4 h1 After\n" +
+        "15 1 h1 Adjacent\n" +
+        "15 0 h1 Empty\n");
+
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    assertBlock(10, 5, manifest.get("A", "h1"));
+    assertNull(manifest.get("Inside", "h1"));
+    assertNull(manifest.get("Before", "h1"));
+    assertNull(manifest.get("After", "h1"));
+    assertBlock(15, 1, manifest.get("Adjacent", "h1"));
+    assertBlock(15, 0, manifest.get("Empty", "h1"));
+    assertEquals(16, manifest.getLimit());
+    manifest.close();
+  }
+
+  @Test
+  public void testAssignSeesBlocksOfOtherInstances() throws IOException {
+    ProbeIdManifest first = ProbeIdManifest.open(file, "fast");
+    ProbeIdManifest second = ProbeIdManifest.open(file, "fast");
+
+    // Each assignment re-reads the manifest under the lock before appending
+    ProbeIdManifest.Block a = first.assign("A", "h1", 10);
+    ProbeIdManifest.Block b = second.assign("B", "h1", 4);
+    assertTrue(b.base >= a.base + a.count);
+    assertBlock(a.base, 10, second.assign("A", "h1", 10));
+    assertBlock(b.base, 4, first.get("B", "h1"));
+
+    first.close();
+    second.close();
+  }
+
+  @Test
+  public void testPartialLineOfCrashedWriterIsSkipped() throws IOException {
+    writeLines("20 5 h");
+
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    ProbeIdManifest.Block block = manifest.assign("A", "h1", 3);
+    manifest.close();
+
+    ProbeIdManifest reopened = ProbeIdManifest.open(file, "fast");
+    assertBlock(block.base, 3, reopened.get("A", "h1"));
+    reopened.close();
+  }
+
+  @Test
+  public void testManifestOfOtherSettingsIsEmptied() throws IOException {
+    ProbeIdManifest manifest = ProbeIdManifest.open(file, "fast");
+    manifest.assign("A", "h1", 3);
+    manifest.close();
+
+    ProbeIdManifest other = ProbeIdManifest.open(file, "other");
+    assertNull(other.get("A", "h1"));
+    assertEquals(1, other.getLimit());
+    other.close();
+
+    ProbeIdManifest reopened = ProbeIdManifest.open(file, "fast");
+    assertNull(reopened.get("A", "h1"));
+    reopened.close();
+  }
+
+  @Test
+  public void testHashDependsOnSettings() throws IOException {
+    ProbeIdManifest fast = ProbeIdManifest.open(file, "fast");
+    byte[] bytes = "class".getBytes(StandardCharsets.UTF_8);
+    String hash = fast.hash(bytes);
+    assertEquals(16, hash.length());
+    assertEquals(hash, fast.hash(bytes));
+    fast.close();
+
+    ProbeIdManifest other = ProbeIdManifest.open(file, "other");
+    assertNotEquals(hash, other.hash(bytes));
+    other.close();
+  }
+}
@@ -0,0 +1,116 @@
+package janala.instrument;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link RemovedProbes} with an instrumentation that records which
+ * classes are retransformed. The removed probes are shared by all tests,
+ * so each test uses its own probe IDs.
+ */
+@RunWith(JUnit4.class)
+public class RemovedProbesTest {
+
+  static class Foo {}
+  static class Bar {}
+  static class Unregistered {}
+
+  private final List<Class<?>> retransformed = new ArrayList<>();
+
+  @Before
+  public void setInstrumentation() {
+    Class<?>[] loaded = {Foo.class, Bar.class, Unregistered.class};
+    Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[]{Instrumentation.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isRetransformClassesSupported":
+            case "isModifiableClass":
+              return true;
+            case "getAllLoadedClasses":
+              return loaded;
+            case "retransformClasses":
+              retransformed.addAll(Arrays.asList((Class<?>[]) args[0]));
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    RemovedProbes.setInstrumentation(inst);
+    assertTrue(RemovedProbes.isSupported());
+  }
+
+  private static void register(Class<?> clazz, int base, int count) {
+    RemovedProbes.register(clazz.getClassLoader(), clazz.getName().replace('.', '/'),
+        new ProbeIdManifest.Block(base, count));
+  }
+
+  @Test
+  public void testRetransformsOnlyClassesOwningRemovedProbes() {
+    register(Foo.class, 100, 10);
+    register(Bar.class, 110, 10);
+    assertEquals(1, RemovedProbes.remove(new int[]{101, 105}));
+    assertEquals(Arrays.asList(Foo.class), retransformed);
+    assertTrue(RemovedProbes.get().get(101));
+    assertTrue(RemovedProbes.get().get(105));
+    assertFalse(RemovedProbes.get().get(110));
+  }
+
+  @Test
+  public void testRemovedProbesAreNotRemovedAgain() {
+    register(Foo.class, 200, 10);
+    assertEquals(1, RemovedProbes.remove(new int[]{201}));
+    retransformed.clear();
+    assertEquals(0, RemovedProbes.remove(new int[]{201}));
+    assertTrue(retransformed.isEmpty());
+  }
+
+  @Test
+  public void testReferencedProbesAreKept() {
+    register(Foo.class, 300, 10);
+    // Probe 308 is derived from 302 minus 303
+    ProbeReconstructionTable.instance.addDifference(308, 302, 303);
+    assertEquals(0, RemovedProbes.remove(new int[]{302, 303}));
+    assertTrue(retransformed.isEmpty());
+    assertFalse(RemovedProbes.get().get(302));
+    assertFalse(RemovedProbes.get().get(303));
+
+    // Other probes of the class can still be removed
+    assertEquals(1, RemovedProbes.remove(new int[]{302, 304}));
+    assertEquals(Arrays.asList(Foo.class), retransformed);
+    assertFalse(RemovedProbes.get().get(302));
+    assertTrue(RemovedProbes.get().get(304));
+  }
+
+  @Test
+  public void testProbesOutsideRegisteredBlocks() {
+    register(Foo.class, 400, 10);
+    register(Bar.class, 420, 10);
+    // Probe 0 is never removed, and probe 415 belongs to no loaded class
+    assertEquals(0, RemovedProbes.remove(new int[]{0, 415}));
+    assertTrue(retransformed.isEmpty());
+    assertFalse(RemovedProbes.get().get(0));
+    assertTrue(RemovedProbes.get().get(415));
+  }
+
+  @Test
+  public void testRemovedSetIsReplacedNotModified() {
+    register(Bar.class, 500, 10);
+    BitSet before = RemovedProbes.get();
+    int cardinality = before.cardinality();
+    RemovedProbes.remove(new int[]{505});
+    assertEquals(cardinality, before.cardinality());
+    assertNotSame(before, RemovedProbes.get());
+    assertEquals(Arrays.asList(Bar.class), retransformed);
+  }
+}
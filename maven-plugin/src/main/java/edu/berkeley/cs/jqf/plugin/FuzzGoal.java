@@ -36,10 +36,12 @@ import java.net.MalformedURLException;
 import java.net.URLClassLoader;
 import java.time.Duration;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
 import edu.berkeley.cs.jqf.fuzz.ei.ExecutionIndexingGuidance;
+import edu.berkeley.cs.jqf.fuzz.ei.SharedCorpus;
 import edu.berkeley.cs.jqf.fuzz.ei.ZestGuidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.Guidance;
 import edu.berkeley.cs.jqf.fuzz.guidance.GuidanceException;
@@ -300,6 +302,52 @@ public class FuzzGoal extends AbstractMojo {
     @Parameter(property="fixedSize")
     private boolean fixedSizeInputs;
 
+    /**
+     * The number of threads that fuzz the test method in parallel.
+     *
+     * <p>Each worker loads the test class with its own classloader and
+     * keeps its own queue, and inputs that cover new branches are shared
+     * between workers. The first worker writes results to the usual
+     * output directory and runs the seed inputs; worker N writes to a
+     * sibling directory with the suffix <code>-worker-N</code>. Fuzzing with several workers
+     * is not deterministic, even if a random seed is provided.</p>
+     *
+     * <p>Only the "zest" and "zest-predicates" engines support more than
+     * one worker, and only when fuzzing a single test method.</p>
+     *
+     * <p>If not provided, defaults to 1.</p>
+     */
+    @Parameter(property="workers", defaultValue="1")
+    private int workers;
+
+    /**
+     * The directory containing the output directories of other fuzzing
+     * instances of the same test, e.g. in other JVMs or on other hosts
+     * with a shared filesystem.
+     *
+     * <p>If provided, the fuzzer periodically executes the inputs that
+     * other instances have added to their <code>corpus</code> directories
+     * since the last sync, and saves those that add coverage. Each
+     * instance must write to its own sub-directory of the sync directory
+     * (see the <code>out</code> property), e.g.
+     * <code>-Dout=fuzz-results/a -DsyncDir=target/fuzz-results</code>.</p>
+     */
+    @Parameter(property="syncDir")
+    private File syncDirectory;
+
+    /**
+     * The fraction of the fuzzing time to spend on trimming saved inputs.
+     *
+     * <p>Trimming removes chunks of bytes from the saved inputs of the
+     * "zest" engine, keeping a smaller input if it still covers the
+     * branches that the original input is responsible for. Smaller
+     * inputs make their mutants faster to generate and execute.</p>
+     *
+     * <p>If not provided, defaults to 0, i.e. inputs are not trimmed.</p>
+     */
+    @Parameter(property="trimFraction")
+    private Double trimFraction;
+
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
@@ -335,6 +383,12 @@ public class FuzzGoal extends AbstractMojo {
         if (fixedSizeInputs) {
             System.setProperty("jqf.ei.GENERATE_EOF_WHEN_OUT", String.valueOf(true));
         }
+        if (syncDirectory != null) {
+            System.setProperty("jqf.ei.SYNC_DIR", syncDirectory.getPath());
+        }
+        if (trimFraction != null) {
+            System.setProperty("jqf.ei.TRIM_FRACTION", String.valueOf(trimFraction));
+        }
 
         final Duration duration;
         if (time != null && !time.isEmpty()) {
@@ -347,19 +401,15 @@ public class FuzzGoal extends AbstractMojo {
             duration = null;
         }
 
+        if (workers < 1) {
+            throw new MojoExecutionException("Number of workers must be positive: " + workers);
+        }
+
+        String[] classpath;
         try {
             List<String> classpathElements = project.getTestClasspathElements();
-
-            if (disableCoverage) {
-                loader = new URLClassLoader(
-                        stringsToUrls(classpathElements.toArray(new String[0])),
-                        getClass().getClassLoader());
-
-            } else {
-                loader = new InstrumentingClassLoader(
-                        classpathElements.toArray(new String[0]),
-                        getClass().getClassLoader());
-            }
+            classpath = classpathElements.toArray(new String[0]);
+            loader = createLoader(classpath);
         } catch (DependencyResolutionRequiredException|MalformedURLException e) {
             throw new MojoExecutionException("Could not get project classpath", e);
         }
@@ -379,23 +429,50 @@ public class FuzzGoal extends AbstractMojo {
                         new Random(randomSeed ^ testMethod.hashCode()) : new Random();
                     
                     // Create a fresh guidance instance for this method
-                    return createGuidance(testClassName, testMethod, duration, trials, seedsDir, methodRnd);
+                    return createGuidance(testClassName, testMethod, duration, trials,
+                            getResultsDir(testMethod), seedsDir, methodRnd);
                 };
                 
                 // Run all @Fuzz methods with individual guidance instances
                 result = GuidedFuzzing.runAll(testClass, guidanceSupplier, out);
+            } else if (workers > 1) {
+                if (!"zest".equals(engine) && !"zest-predicates".equals(engine)) {
+                    throw new IllegalArgumentException("Engine " + engine + " does not support multiple workers");
+                }
+                SharedCorpus sharedCorpus = new SharedCorpus(workers);
+                List<ClassLoader> loaders = new ArrayList<>();
+                List<Guidance> guidances = new ArrayList<>();
+                File resultsDir = getResultsDir(testMethod);
+                for (int i = 0; i < workers; i++) {
+                    // Each worker gets its own copy of the application's classes
+                    loaders.add(i == 0 ? loader : createLoader(classpath));
+
+                    // Only the first worker runs the seeds; others import them once they add coverage
+                    Random rnd = randomSeed != null ? new Random(randomSeed + i) : new Random();
+                    Long workerTrials = trials == null ? null : trials / workers + (i < trials % workers ? 1 : 0);
+                    ZestGuidance guidance = (ZestGuidance) createGuidance(testClassName, testMethod,
+                            duration, workerTrials, SharedCorpus.getWorkerDirectory(resultsDir, i),
+                            i == 0 ? seedsDir : null, rnd);
+                    guidance.setSharedCorpus(sharedCorpus, i);
+                    guidances.add(guidance);
+                }
+
+                // Run the test method on all workers
+                result = GuidedFuzzing.runParallel(testClassName, testMethod, loaders, guidances, out);
             } else {
                 Random rnd = randomSeed != null ? new Random(randomSeed) : new Random();
 
                 // Create a single guidance instance for the specified method
                 Guidance guidance = createGuidance(testClassName, testMethod,
-                        duration, trials, seedsDir, rnd);
+                        duration, trials, getResultsDir(testMethod), seedsDir, rnd);
                 
                 // Run a specific test method
                 result = GuidedFuzzing.run(testClassName, testMethod, loader, guidance, out);
             }
         } catch (ClassNotFoundException e) {
             throw new MojoExecutionException("Could not load test class", e);
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Could not get project classpath", e);
         } catch (IllegalArgumentException e) {
             throw new MojoExecutionException("Bad request", e);
         } catch (RuntimeException e) {
@@ -419,14 +496,35 @@ public class FuzzGoal extends AbstractMojo {
         }
     }
 
+    /**
+     * Helper method to create a classloader for the test classpath,
+     * which instruments classes unless coverage is disabled
+     */
+    private ClassLoader createLoader(String[] classpath) throws MalformedURLException {
+        if (disableCoverage) {
+            return new URLClassLoader(stringsToUrls(classpath), getClass().getClassLoader());
+        } else {
+            return new InstrumentingClassLoader(classpath, getClass().getClassLoader());
+        }
+    }
+
+    /**
+     * Helper method to get the directory for the results of a test method
+     */
+    private File getResultsDir(String testMethod) {
+        if (outputDirectory != null && !outputDirectory.isEmpty() && !"*".equals(this.testMethod)) {
+            return new File(target, outputDirectory);
+        }
+        // Store results in a folder with the target method name
+        return new File(target, "fuzz-results" + File.separator + testClassName + File.separator + testMethod);
+    }
+
     /**
      * Helper method to create a guidance instance based on the configured engine
      */
     private Guidance createGuidance(String testClassName, String testMethod, Duration duration, Long trials,
-                                 File seedsDir, Random rnd)
+                                 File resultsDir, File seedsDir, Random rnd)
                                  throws IOException {
-        // Store results in a folder with the target method name
-        File resultsDir = new File(target, "fuzz-results" + File.separator + testClassName + File.separator + testMethod);
         String targetName = testClassName + "#" + testMethod;
 
         switch (engine) {
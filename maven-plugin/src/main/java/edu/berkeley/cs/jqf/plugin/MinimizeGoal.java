@@ -0,0 +1,165 @@
+package edu.berkeley.cs.jqf.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.berkeley.cs.jqf.fuzz.repro.CorpusMinimizer;
+import edu.berkeley.cs.jqf.fuzz.util.IOUtils;
+import edu.berkeley.cs.jqf.instrument.InstrumentingClassLoader;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Maven plugin for minimizing a corpus produced by JQF.
+ *
+ * <p>Every input is replayed to collect its coverage, and the smallest
+ * and fastest inputs that together cover everything the corpus covers
+ * are copied to the output directory. See {@link CorpusMinimizer}.</p>
+ */
+@Mojo(name="minimize",
+        requiresDependencyResolution=ResolutionScope.TEST)
+public class MinimizeGoal extends AbstractMojo {
+
+    @Parameter(defaultValue="${project}", required=true, readonly=true)
+    MavenProject project;
+
+    @Parameter(defaultValue="${project.build.directory}", readonly=true)
+    private File target;
+
+    /**
+     * The fully-qualified name of the test class whose corpus to minimize.
+     *
+     * <p>This class will be loaded using the Maven project's test
+     * classpath. It must be annotated with {@code @RunWith(JQF.class)}</p>
+     */
+    @Parameter(property="class", required=true)
+    private String testClassName;
+
+    /**
+     * The name of the fuzzed method.
+     */
+    @Parameter(property="method", required=true)
+    private String testMethod;
+
+    /**
+     * Input directory containing the corpus to minimize.
+     *
+     * <p>If not provided, defaults to the <code>corpus</code> directory
+     * of the results of <code>jqf:fuzz</code> for the same test class
+     * and method.</p>
+     */
+    @Parameter(property="input")
+    private String input;
+
+    /**
+     * Output directory where the minimized corpus will be written.
+     *
+     * <p>If not provided, defaults to <code>corpus-min</code> in the
+     * results directory of the test method.</p>
+     */
+    @Parameter(property="output")
+    private String output;
+
+    /**
+     * The number of threads that replay the corpus in parallel.
+     *
+     * <p>Each worker loads the test class with its own classloader.
+     * Fast coverage instrumentation only supports one worker.</p>
+     *
+     * <p>If not provided, defaults to 1.</p>
+     */
+    @Parameter(property="workers", defaultValue="1")
+    private int workers;
+
+    /**
+     * Whether to ignore hit counts and only preserve the covered edges.
+     *
+     * <p>By default, an input is also kept if it is the best input to
+     * hit an edge a given number of times (bucketed by powers of two).</p>
+     */
+    @Parameter(property="edgesOnly")
+    private boolean edgesOnly;
+
+    /**
+     * Comma-separated list of FQN prefixes to exclude from
+     * coverage instrumentation.
+     *
+     * <p>The semantics are similar to the similarly named
+     * property in the goal <code>jqf:fuzz</code>.</p>
+     */
+    @Parameter(property="excludes")
+    private String excludes;
+
+    /**
+     * Comma-separated list of FQN prefixes to forcibly include,
+     * even if they match an exclude.
+     *
+     * <p>The semantics are similar to the similarly named
+     * property in the goal <code>jqf:fuzz</code>.</p>
+     */
+    @Parameter(property="includes")
+    private String includes;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Log log = getLog();
+
+        // Configure classes to instrument
+        if (excludes != null) {
+            System.setProperty("janala.excludes", excludes);
+        }
+        if (includes != null) {
+            System.setProperty("janala.includes", includes);
+        }
+
+        if (workers < 1) {
+            throw new MojoExecutionException("Number of workers must be positive: " + workers);
+        }
+
+        File resultsDir = new File(target, "fuzz-results" + File.separator + testClassName + File.separator + testMethod);
+        File inputDir = input != null ? new File(input) : new File(resultsDir, "corpus");
+        File outputDir = output != null ? new File(output) : new File(resultsDir, "corpus-min");
+        if (!inputDir.isDirectory()) {
+            throw new MojoExecutionException("Cannot find corpus directory " + inputDir);
+        }
+
+        // Each worker gets its own copy of the application's classes
+        List<ClassLoader> loaders = new ArrayList<>();
+        try {
+            String[] classpath = project.getTestClasspathElements().toArray(new String[0]);
+            for (int i = 0; i < workers; i++) {
+                loaders.add(new InstrumentingClassLoader(classpath, getClass().getClassLoader()));
+            }
+        } catch (DependencyResolutionRequiredException|MalformedURLException e) {
+            throw new MojoExecutionException("Could not get project classpath", e);
+        }
+
+        try {
+            File[] inputFiles = IOUtils.resolveInputFileOrDirectory(inputDir);
+            CorpusMinimizer minimizer = new CorpusMinimizer(inputFiles, edgesOnly);
+            minimizer.replay(testClassName, testMethod, loaders, null);
+            List<File> selected = minimizer.writeMinimizedCorpus(outputDir);
+            log.info(String.format("Replayed %d inputs (%d failing), covering %d features",
+                    inputFiles.length, minimizer.getNumFailures(), minimizer.getNumFeatures()));
+            log.info(String.format("Wrote %d inputs to %s", selected.size(), outputDir));
+        } catch (ClassNotFoundException e) {
+            throw new MojoExecutionException("Could not load test class", e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Bad request", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("I/O error", e);
+        } catch (RuntimeException e) {
+            throw new MojoExecutionException("Internal error", e);
+        }
+    }
+}